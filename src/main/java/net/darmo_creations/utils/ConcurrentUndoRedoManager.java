@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+/**
+ * A thread-safe undo/redo manager. Writers are serialized on this object's monitor while readers
+ * never block: after every modification, the current state is published as an immutable
+ * {@link State} through a single volatile field, which is all {@link #getEdit()},
+ * {@link #canUndo()}, {@link #canRedo()}, {@link #getCurrentNode()} and {@link #size()} read.
+ * <p>
+ * As these methods are independent reads, a reader needing several values from the same state
+ * should use {@link #getState()} instead.
+ * </p>
+ * 
+ * @author Damien Vergnet
+ *
+ * @param <T> type of edits
+ */
+public class ConcurrentUndoRedoManager<T> extends UndoRedoManager<T> {
+  private final State<T> emptyState;
+  private volatile State<T> state;
+
+  /**
+   * Creates an empty manager that discards redoable edits when a new one is added.
+   */
+  public ConcurrentUndoRedoManager() {
+    this(false);
+  }
+
+  /**
+   * Creates an empty manager.
+   * 
+   * @param branching if true, adding an edit after an undo will start a new branch instead of
+   *          discarding the redoable edits
+   */
+  public ConcurrentUndoRedoManager(boolean branching) {
+    super(branching);
+    this.emptyState = new State<>(null, -1, false, false, 0);
+    this.state = this.emptyState;
+  }
+
+  /**
+   * @return the current state
+   */
+  public State<T> getState() {
+    return this.state;
+  }
+
+  @Override
+  public int size() {
+    return this.state.size;
+  }
+
+  @Override
+  public synchronized int getMaxEdits() {
+    return super.getMaxEdits();
+  }
+
+  @Override
+  public synchronized void setMaxEdits(int maxEdits) {
+    super.setMaxEdits(maxEdits);
+    publish();
+  }
+
+  @Override
+  public synchronized void clear() {
+    super.clear();
+    publish();
+  }
+
+  @Override
+  public synchronized void addEdit(T edit) {
+    super.addEdit(edit);
+    publish();
+  }
+
+  @Override
+  public T getEdit() {
+    State<T> s = this.state;
+    if (s.node < 0)
+      throw new IndexOutOfBoundsException("no edits");
+    return s.edit;
+  }
+
+  @Override
+  public synchronized void undo() {
+    super.undo();
+    publish();
+  }
+
+  @Override
+  public synchronized void redo() {
+    super.redo();
+    publish();
+  }
+
+  @Override
+  public boolean canUndo() {
+    return this.state.canUndo;
+  }
+
+  @Override
+  public boolean canRedo() {
+    return this.state.canRedo;
+  }
+
+  @Override
+  public int getCurrentNode() {
+    return this.state.node;
+  }
+
+  @Override
+  public synchronized int getLatestNode() {
+    return super.getLatestNode();
+  }
+
+  @Override
+  public synchronized int getParentNode(int node) {
+    return super.getParentNode(node);
+  }
+
+  @Override
+  public synchronized void jumpTo(int node) {
+    super.jumpTo(node);
+    publish();
+  }
+
+  @Override
+  public synchronized void jumpToLatest() {
+    super.jumpToLatest();
+  }
+
+  @Override
+  synchronized void restore(Object[] edits, int[] parents, int[] redoChildren, int[] ids, int size, int index, int nextId,
+      int maxEdits) {
+    super.restore(edits, parents, redoChildren, ids, size, index, nextId, maxEdits);
+    publish();
+  }
+
+  /**
+   * Publishes the current state. Must be called while holding this object's monitor.
+   */
+  private void publish() {
+    int node = super.getCurrentNode();
+
+    if (node < 0)
+      this.state = this.emptyState;
+    else
+      this.state = new State<>(super.getEdit(), node, super.canUndo(), super.canRedo(), super.size());
+  }
+
+  /**
+   * An immutable snapshot of a manager's state.
+   *
+   * @author Damien Vergnet
+   *
+   * @param <T> type of edits
+   */
+  public static final class State<T> {
+    private final T edit;
+    private final int node;
+    private final boolean canUndo, canRedo;
+    private final int size;
+
+    private State(T edit, int node, boolean canUndo, boolean canRedo, int size) {
+      this.edit = edit;
+      this.node = node;
+      this.canUndo = canUndo;
+      this.canRedo = canRedo;
+      this.size = size;
+    }
+
+    /**
+     * @return the current edit
+     * @throws IndexOutOfBoundsException if the manager was empty
+     */
+    public T getEdit() {
+      if (this.node < 0)
+        throw new IndexOutOfBoundsException("no edits");
+      return this.edit;
+    }
+
+    /**
+     * @return the ID of the current node; -1 if the manager was empty
+     */
+    public int getNode() {
+      return this.node;
+    }
+
+    /**
+     * @return true if the manager could undo an edit
+     */
+    public boolean canUndo() {
+      return this.canUndo;
+    }
+
+    /**
+     * @return true if the manager could restore an edit
+     */
+    public boolean canRedo() {
+      return this.canRedo;
+    }
+
+    /**
+     * @return the number of edits held by the manager
+     */
+    public int size() {
+      return this.size;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An edit codec converts edits to and from bytes so that an undo/redo history can be saved by
+ * {@link UndoRedoManagerIO}.
+ *
+ * @author Damien Vergnet
+ *
+ * @param <T> type of edits
+ */
+public interface EditCodec<T> {
+  /**
+   * Encodes an edit.
+   * 
+   * @param edit the edit
+   * @return a buffer whose remaining bytes represent the edit
+   */
+  ByteBuffer encode(T edit);
+
+  /**
+   * Decodes an edit.
+   * 
+   * @param data a buffer whose remaining bytes are exactly the ones returned by
+   *          {@link #encode(Object)}; it is reused afterwards and must not be kept
+   * @return the edit
+   */
+  T decode(ByteBuffer data);
+}
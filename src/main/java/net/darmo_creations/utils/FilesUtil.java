@@ -19,7 +19,20 @@
 package net.darmo_creations.utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import net.darmo_creations.utils.files.AtomicFileWriter;
+import net.darmo_creations.utils.files.Durability;
+import net.darmo_creations.utils.files.ExtensionMatcher;
+import net.darmo_creations.utils.files.FileHasher;
+import net.darmo_creations.utils.files.FileWalker;
+import net.darmo_creations.utils.files.MetadataCache;
 
 /**
  * This class provides useful methods to handle files.
@@ -38,7 +51,7 @@ public final class FilesUtil {
   }
 
   /**
-   * Returns the extension for the given file.
+   * Returns the extension for the given file. Directories have no extension.
    * 
    * @param file the file
    * @return the extension if any
@@ -46,11 +59,61 @@ public final class FilesUtil {
   public static Optional<String> getExtension(File file) {
     if (file.isDirectory())
       return Optional.empty();
+    return getExtension((CharSequence) file.getName());
+  }
 
-    String name = file.getName();
-    String ext = name.substring(name.lastIndexOf('.') + 1);
+  /**
+   * Returns the extension for the given path. Only the file name is looked at, the file system is not
+   * accessed.
+   * 
+   * @param path the path
+   * @return the extension if any
+   */
+  public static Optional<String> getExtension(Path path) {
+    return getExtension((CharSequence) path.toString());
+  }
 
-    return Optional.of(ext);
+  /**
+   * Returns the extension for the given file. Directories have no extension; whether the file is a
+   * directory is looked up in the given cache.
+   * 
+   * @param path the path
+   * @param cache the metadata cache
+   * @return the extension if any
+   */
+  public static Optional<String> getExtension(Path path, MetadataCache cache) {
+    if (cache.isDirectory(path))
+      return Optional.empty();
+    return getExtension(path);
+  }
+
+  /**
+   * Returns the extension for the given file name or path. The file system is not accessed.
+   * 
+   * @param name the file name or path
+   * @return the extension if any
+   */
+  public static Optional<String> getExtension(CharSequence name) {
+    int i = getExtensionIndex(name);
+    return i < 0 ? Optional.empty() : Optional.of(name.subSequence(i, name.length()).toString());
+  }
+
+  /**
+   * Returns the index of the first character of the extension in the given file name or path, i.e.
+   * the index following the last dot of the file name.
+   * 
+   * @param name the file name or path
+   * @return the index of the extension or -1 if the file name has no dot
+   */
+  public static int getExtensionIndex(CharSequence name) {
+    for (int i = name.length() - 1; i >= 0; i--) {
+      char c = name.charAt(i);
+      if (c == '.')
+        return i + 1;
+      if (c == '/' || c == File.separatorChar)
+        break;
+    }
+    return -1;
   }
 
   /**
@@ -75,5 +138,110 @@ public final class FilesUtil {
     return ext.equalsIgnoreCase(getExtension(file).orElse(""));
   }
 
+  /**
+   * Tells if the given path has the specified extension, ignoring case. The file system is not
+   * accessed.
+   * 
+   * @param path the path
+   * @param ext the extension
+   * @return true if the path has the same extension
+   */
+  public static boolean hasExtension(Path path, CharSequence ext) {
+    return hasExtension((CharSequence) path.toString(), ext);
+  }
+
+  /**
+   * Tells if the given file name or path has the specified extension, ignoring case. The file system
+   * is not accessed and nothing is allocated.
+   * 
+   * @param name the file name or path
+   * @param ext the extension
+   * @return true if the name has the same extension
+   */
+  public static boolean hasExtension(CharSequence name, CharSequence ext) {
+    int start = getExtensionIndex(name);
+    if (start < 0 || name.length() - start != ext.length())
+      return false;
+    for (int i = 0; i < ext.length(); i++) {
+      if (!equalsIgnoreCase(name.charAt(start + i), ext.charAt(i)))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Walks the given tree in parallel and passes each regular file with one of the extensions to the
+   * given action as soon as it is found.
+   * 
+   * @param root the root of the tree
+   * @param matcher the accepted extensions
+   * @param action the action; it is called concurrently and must be thread-safe
+   * @throws IOException if a directory could not be read
+   * @see FileWalker
+   */
+  public static void walk(Path root, ExtensionMatcher matcher, Consumer<? super Path> action) throws IOException {
+    new FileWalker(root).setFilter(matcher).walk(action);
+  }
+
+  /**
+   * Returns a stream of the regular files with one of the extensions in the given tree. The tree is
+   * walked in parallel in the background; closing the stream stops the walk.
+   * 
+   * @param root the root of the tree
+   * @param matcher the accepted extensions
+   * @return the stream
+   * @see FileWalker
+   */
+  public static Stream<Path> find(Path root, ExtensionMatcher matcher) {
+    return new FileWalker(root).setFilter(matcher).stream();
+  }
+
+  /**
+   * Replaces the content of a file atomically with full durability: once this method returns, the new
+   * content survives a power failure. If it fails, the file is left untouched.
+   * 
+   * @param file the file
+   * @param data the new content
+   * @throws IOException if an I/O error occurs
+   * @see AtomicFileWriter
+   */
+  public static void writeAtomically(Path file, byte[] data) throws IOException {
+    writeAtomically(file, data, Durability.FULL);
+  }
+
+  /**
+   * Replaces the content of a file atomically. If this method fails, the file is left untouched.
+   * 
+   * @param file the file
+   * @param data the new content
+   * @param durability the durability level
+   * @throws IOException if an I/O error occurs
+   * @see AtomicFileWriter
+   */
+  public static void writeAtomically(Path file, byte[] data, Durability durability) throws IOException {
+    new AtomicFileWriter(durability).write(file, data);
+  }
+
+  /**
+   * Finds the files that have the same content. Use a {@link FileHasher} directly to keep its hash
+   * cache between calls.
+   * 
+   * @param files the files
+   * @return the groups of identical files; files without duplicates are not included
+   * @throws IOException if a file could not be read
+   */
+  public static List<List<Path>> findDuplicates(Collection<Path> files) throws IOException {
+    try (FileHasher hasher = new FileHasher()) {
+      return hasher.findDuplicates(files);
+    }
+  }
+
+  private static boolean equalsIgnoreCase(char c1, char c2) {
+    if (c1 == c2)
+      return true;
+    char u1 = Character.toUpperCase(c1), u2 = Character.toUpperCase(c2);
+    return u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2);
+  }
+
   private FilesUtil() {}
 }
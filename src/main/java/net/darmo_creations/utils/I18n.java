@@ -20,30 +20,227 @@ package net.darmo_creations.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.MissingResourceException;
-import java.util.PropertyResourceBundle;
-import java.util.ResourceBundle;
+import java.nio.file.Path;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.darmo_creations.utils.events.EventsBus;
+import net.darmo_creations.utils.i18n.Catalog;
+import net.darmo_creations.utils.i18n.CatalogChangedEvent;
+import net.darmo_creations.utils.i18n.CatalogLoader;
+import net.darmo_creations.utils.i18n.CatalogWatcher;
+import net.darmo_creations.utils.i18n.DateFormatTemplate;
+import net.darmo_creations.utils.i18n.KeyTable;
+import net.darmo_creations.utils.i18n.MessageTemplate;
+import net.darmo_creations.utils.i18n.TextCase;
+import net.darmo_creations.utils.profiling.StartupProfiler;
 
 /**
  * This class handles internationalization. Language files should be named 'LOCALE.lang' with LOCALE
  * being the locale's code (e.g.: en_US.lang).
+ * <p>
+ * Each language file is loaded once into an immutable {@link Catalog} and cached by locale. Static
+ * methods use the current catalog, which can be switched atomically without reloading; catalogs of
+ * other locales can be used concurrently from any thread through {@link #getCatalog(Locale)}.
+ * </p>
+ * <p>
+ * During development, language files can be reloaded while the application is running with
+ * {@link #watch(Path, EventsBus)}.
+ * </p>
  * 
  * @author Damien Vergnet
  */
 public final class I18n {
-  private static ResourceBundle resource;
+  private static final Map<Locale, Catalog> catalogs = new ConcurrentHashMap<>();
+  private static volatile Catalog catalog = Catalog.of(Locale.ROOT, Collections.emptyMap());
+  private static volatile CatalogLoader loader;
+  private static volatile KeyTable keyTable;
 
   /**
    * Loads the preferred locale.<br>
-   * <b>This method must be called before any other from this class.</b>
+   * <b>This method must be called before any other from this class.</b> The catalog is associated
+   * with the default locale.
    * 
    * @param stream the input stream
    * @throws IOException if the lang file cannot be openned
    */
   public static void init(InputStream stream) throws IOException {
-    resource = new PropertyResourceBundle(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    init(Locale.getDefault(), stream);
+  }
+
+  /**
+   * Loads the language file of the given locale, caches it and makes it the current one.
+   * 
+   * @param locale the locale
+   * @param stream the input stream
+   * @throws IOException if the lang file cannot be openned
+   */
+  public static void init(Locale locale, InputStream stream) throws IOException {
+    Catalog c;
+    StartupProfiler.Span span = StartupProfiler.begin("I18n.init");
+    try {
+      c = Catalog.load(locale, stream);
+    }
+    finally {
+      span.end();
+    }
+
+    synchronized (I18n.class) {
+      catalogs.put(locale, c);
+      catalog = c;
+    }
+  }
+
+  /**
+   * Replaces the cached catalog for the given catalog's locale. If that locale is the current one,
+   * the current catalog is replaced as well.
+   * 
+   * @param c the new catalog
+   */
+  public static void updateCatalog(Catalog c) {
+    synchronized (I18n.class) {
+      catalogs.put(c.getLocale(), c);
+      if (catalog.getLocale().equals(c.getLocale()))
+        catalog = c;
+    }
+  }
+
+  /**
+   * Opens a watcher that reloads the language files of the given directory when they are modified.
+   * Only locales whose catalog is already cached are reloaded. The watcher must be started.
+   * 
+   * @param directory the directory containing the language files
+   * @param bus the bus on which {@link CatalogChangedEvent}s are dispatched; may be null
+   * @return the watcher
+   * @throws IOException if the directory cannot be watched
+   */
+  public static CatalogWatcher watch(Path directory, @Nullable EventsBus bus) throws IOException {
+    return new CatalogWatcher(directory, bus);
+  }
+
+  /**
+   * Sets the loader used by {@link #getCatalog(Locale)} for locales that were not loaded yet.
+   * 
+   * @param loader the loader
+   */
+  public static void setCatalogLoader(CatalogLoader loader) {
+    I18n.loader = Objects.requireNonNull(loader);
+  }
+
+  /**
+   * Returns the catalog for the given locale. It is loaded by the catalog loader the first time then
+   * cached.
+   * 
+   * @param locale the locale
+   * @return the catalog
+   * @throws IOException if the catalog is not cached and could not be loaded
+   * @see #setCatalogLoader(CatalogLoader)
+   */
+  public static Catalog getCatalog(Locale locale) throws IOException {
+    Catalog c = catalogs.get(locale);
+
+    if (c == null) {
+      CatalogLoader l = loader;
+      if (l == null)
+        throw new IOException("no catalog loader to load locale " + locale);
+      StartupProfiler.Span span = StartupProfiler.begin("I18n.loadCatalog");
+      try {
+        c = l.load(locale);
+      }
+      finally {
+        span.end();
+      }
+      // Another thread may have loaded it in the meantime, only one instance is kept.
+      Catalog previous = catalogs.putIfAbsent(locale, c);
+      if (previous != null)
+        c = previous;
+    }
+    return c;
+  }
+
+  /**
+   * Returns the catalog for the given locale only if it has already been loaded.
+   * 
+   * @param locale the locale
+   * @return the cached catalog if any
+   */
+  public static Optional<Catalog> getCachedCatalog(Locale locale) {
+    return Optional.ofNullable(catalogs.get(locale));
+  }
+
+  /**
+   * @return the current catalog
+   */
+  public static Catalog getCatalog() {
+    return catalog;
+  }
+
+  /**
+   * @return the locale of the current catalog
+   */
+  public static Locale getLocale() {
+    return catalog.getLocale();
+  }
+
+  /**
+   * Sets the current locale. Cached catalogs are not reloaded.
+   * 
+   * @param locale the locale
+   * @throws IOException if the catalog is not cached and could not be loaded
+   */
+  public static void setLocale(Locale locale) throws IOException {
+    getCatalog(locale);
+    synchronized (I18n.class) {
+      // Fetched again in case it was updated in the meantime.
+      catalog = catalogs.get(locale);
+    }
+  }
+
+  /**
+   * Loads the strings of the given namespace of the current catalog in the background, if it loads
+   * its strings lazily.
+   * 
+   * @param namespace the namespace, i.e. the part of the keys before the first dot
+   * @return a future completed once the namespace is loaded
+   * @see CatalogLoader#segmented(net.darmo_creations.utils.i18n.SegmentSource)
+   */
+  public static CompletableFuture<Void> preload(String namespace) {
+    return catalog.preload(namespace);
+  }
+
+  /**
+   * Returns the keys that were looked up but are missing from the current language file, with the
+   * number of lookups for each one. This includes optional keys probed by
+   * {@link #getLocalizedWord(String, boolean, boolean)} and {@link #getLocalizedMnemonic(String)}.
+   * 
+   * @return a sorted snapshot of the missing keys
+   */
+  public static Map<String, Long> getMissingKeys() {
+    return catalog.getMissingKeys();
+  }
+
+  /**
+   * Resets the missing keys counters.
+   */
+  public static void clearMissingKeys() {
+    catalog.clearMissingKeys();
+  }
+
+  /**
+   * Returns the localized date pattern, compiled. The pattern is compiled only once per language
+   * file, callers formatting many dates should use it directly to append to their own buffers.
+   * 
+   * @return the compiled date format
+   * @see DateFormatTemplate
+   */
+  public static DateFormatTemplate getDateFormat() {
+    return catalog.getDateFormat();
   }
 
   /**
@@ -52,7 +249,7 @@ public final class I18n {
    * <li>Y - the year on 4 digits; leading zeroes are added if necessary</li>
    * <li>M - the month on 2 digits; leading zeroes are added if necessary</li>
    * <li>D - the day of the month on 2 digits; leading zeroes are added if necessary</li>
-   * <li>y - the year without leading zeroes</li>
+   * <li>y - the last 2 digits of the year</li>
    * <li>m - the month without leading zeroes</li>
    * <li>d - the day of the month without leading zeroes</li>
    * </ul>
@@ -61,18 +258,34 @@ public final class I18n {
    * @param month the month
    * @param day the day of the month
    * @return the formatted date
+   * @see #getDateFormat()
    */
   public static String getFormattedDate(String year, String month, String day) {
-    String format = getLocalizedString("date.format");
+    return getDateFormat().format(year, month, day);
+  }
 
-    String res = format.replace("Y", String.format("%4s", year).replace(' ', '0'));
-    res = res.replace("M", String.format("%2s", month).replace(' ', '0'));
-    res = res.replace("D", String.format("%2s", day).replace(' ', '0'));
-    res = res.replace("y", String.format("%2s", year.substring(year.length() - 2)).replace(' ', '0'));
-    res = res.replace("m", month);
-    res = res.replace("d", day);
+  /**
+   * Returns a formatted dated with the localized date pattern.
+   * 
+   * @param year the year
+   * @param month the month
+   * @param day the day of the month
+   * @return the formatted date
+   * @see #getDateFormat()
+   */
+  public static String getFormattedDate(int year, int month, int day) {
+    return getDateFormat().format(year, month, day);
+  }
 
-    return res;
+  /**
+   * Returns a formatted dated with the localized date pattern.
+   * 
+   * @param date a date supporting the year, month of year and day of month fields
+   * @return the formatted date
+   * @see #getDateFormat()
+   */
+  public static String getFormattedDate(TemporalAccessor date) {
+    return getDateFormat().format(date);
   }
 
   /**
@@ -83,12 +296,61 @@ public final class I18n {
    * @return the localized string
    */
   public static String getLocalizedString(String unlocalizedString) {
-    try {
-      return resource.getString(unlocalizedString);
-    }
-    catch (MissingResourceException ex) {
-      return unlocalizedString;
-    }
+    return catalog.getLocalizedString(unlocalizedString);
+  }
+
+  /**
+   * Formats the localized message for the given key. Messages are parsed only once per catalog; see
+   * {@link MessageTemplate} for the syntax. If no key was found, the key is returned.
+   * 
+   * @param key the key
+   * @param args the arguments
+   * @return the formatted message
+   * @throws IllegalArgumentException if the localized pattern is malformed
+   */
+  public static String format(String key, Object... args) {
+    return catalog.format(key, args);
+  }
+
+  /**
+   * Appends the localized message for the given key to a builder. Messages are parsed only once per
+   * catalog; see {@link MessageTemplate} for the syntax. If no key was found, the key is appended.
+   * 
+   * @param sb the builder
+   * @param key the key
+   * @param args the arguments
+   * @return the builder
+   * @throws IllegalArgumentException if the localized pattern is malformed
+   */
+  public static StringBuilder format(StringBuilder sb, String key, Object... args) {
+    return catalog.format(sb, key, args);
+  }
+
+  /**
+   * Sets the table used by {@link #getLocalizedString(int)}, usually the one generated by the
+   * "generateLangKeys" Gradle task.
+   * 
+   * @param table the key table
+   */
+  public static void setKeyTable(KeyTable table) {
+    keyTable = Objects.requireNonNull(table);
+  }
+
+  /**
+   * Returns the localized string for the key with the given ID in the current key table. This is a
+   * single array access once the current catalog has indexed the table. If no key was found, the key
+   * is returned.
+   * 
+   * @param id the key's ID
+   * @return the localized string
+   * @throws IllegalStateException if no key table was set
+   * @see #setKeyTable(KeyTable)
+   */
+  public static String getLocalizedString(int id) {
+    KeyTable table = keyTable;
+    if (table == null)
+      throw new IllegalStateException("no key table");
+    return catalog.getLocalizedString(table, id);
   }
 
   /**
@@ -101,7 +363,7 @@ public final class I18n {
    * @return the localized word
    */
   public static String getLocalizedWord(String unlocalizedWord, boolean feminine, boolean plural) {
-    return getLocalizedString("word." + unlocalizedWord + (feminine ? ".feminine" : "") + (plural ? ".plural" : ""));
+    return catalog.getLocalizedWord(unlocalizedWord, feminine, plural);
   }
 
   /**
@@ -112,35 +374,18 @@ public final class I18n {
    * @return the localized mnemonic
    */
   public static char getLocalizedMnemonic(String unlocalizedString) {
-    String s = getLocalizedString(unlocalizedString + ".mnemonic");
-    if (s.length() == 1)
-      return s.charAt(0);
-    return '\0';
+    return catalog.getLocalizedMnemonic(unlocalizedString);
   }
 
   /**
-   * Converts the given string to title case.
+   * Converts the given string to title case. This method is not locale-sensitive.
    * 
    * @param input the string
    * @return the string in title case
+   * @see TextCase
    */
   public static String toTitleCase(String input) {
-    StringBuilder titleCase = new StringBuilder();
-    boolean nextTitleCase = true;
-
-    for (char c : input.toCharArray()) {
-      if (Character.isSpaceChar(c)) {
-        nextTitleCase = true;
-      }
-      else if (nextTitleCase) {
-        c = Character.toTitleCase(c);
-        nextTitleCase = false;
-      }
-
-      titleCase.append(c);
-    }
-
-    return titleCase.toString();
+    return TextCase.toTitleCase(input, Locale.ROOT);
   }
 
   private I18n() {}
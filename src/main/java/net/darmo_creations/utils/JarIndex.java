@@ -0,0 +1,402 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * An index of the entries of a jar. The central directory is read once from a memory-mapped view of
+ * the file and kept in an immutable map; entries are then read straight from the mapping, without
+ * going through the class path. Stored entries are served as read-only views of the mapping and
+ * compressed ones are inflated on demand. Names are also kept sorted so that listing the entries
+ * under a folder costs O(log n + matches).
+ * <p>
+ * ZIP64 archives are not supported. This class is thread-safe.
+ * </p>
+ *
+ * @author Damien Vergnet
+ * @see JarUtil#getIndex()
+ */
+public final class JarIndex {
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int CENTRAL_SIGNATURE = 0x02014b50;
+  private static final int LOCAL_SIGNATURE = 0x04034b50;
+  private static final int END_SIZE = 22;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int STORED = 0, DEFLATED = 8;
+
+  /**
+   * Reads the central directory of a jar.
+   * 
+   * @param jar the jar
+   * @return the index
+   * @throws IOException if the file could not be read or is not a valid jar
+   */
+  public static JarIndex open(Path jar) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new ZipException("jar too large");
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    return new JarIndex(buffer.order(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  private final ByteBuffer buffer;
+  private final Map<String, Entry> entries;
+  private final String[] sortedNames;
+
+  private JarIndex(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+
+    int end = findEnd(buffer);
+    int count = buffer.getShort(end + 10) & 0xffff;
+    long offset = buffer.getInt(end + 16) & 0xffffffffL;
+    if (count == 0xffff || offset == 0xffffffffL)
+      throw new ZipException("ZIP64 is not supported");
+    if (offset > end)
+      throw new ZipException("invalid central directory offset");
+
+    Map<String, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+    int position = (int) offset;
+    for (int i = 0; i < count; i++) {
+      if (position + CENTRAL_HEADER_SIZE > end || buffer.getInt(position) != CENTRAL_SIGNATURE)
+        throw new ZipException("invalid central directory");
+      int method = buffer.getShort(position + 10) & 0xffff;
+      long compressedSize = buffer.getInt(position + 20) & 0xffffffffL;
+      long size = buffer.getInt(position + 24) & 0xffffffffL;
+      int nameLength = buffer.getShort(position + 28) & 0xffff;
+      int extraLength = buffer.getShort(position + 30) & 0xffff;
+      int commentLength = buffer.getShort(position + 32) & 0xffff;
+      long localOffset = buffer.getInt(position + 42) & 0xffffffffL;
+
+      byte[] name = new byte[nameLength];
+      ByteBuffer view = buffer.duplicate();
+      view.position(position + CENTRAL_HEADER_SIZE);
+      view.get(name);
+      Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), method, compressedSize, size, localOffset);
+      entries.put(entry.name, entry);
+      position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+
+    this.entries = Collections.unmodifiableMap(entries);
+    this.sortedNames = entries.keySet().toArray(new String[entries.size()]);
+    Arrays.sort(this.sortedNames);
+  }
+
+  /**
+   * @return the number of entries
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * @return the immutable map of the entries by name
+   */
+  public Map<String, Entry> getEntries() {
+    return this.entries;
+  }
+
+  /**
+   * Returns an entry.
+   * 
+   * @param name the entry's name, e.g. "assets/lang/en_US.lang"
+   * @return the entry if it exists
+   */
+  public Optional<Entry> getEntry(String name) {
+    return Optional.ofNullable(this.entries.get(name));
+  }
+
+  /**
+   * Lists the names starting with the given prefix, in lexicographic order.
+   * 
+   * @param prefix the prefix, e.g. "assets/lang/"
+   * @return the matching names
+   */
+  public List<String> list(String prefix) {
+    int i = Arrays.binarySearch(this.sortedNames, prefix);
+    if (i < 0)
+      i = -i - 1;
+
+    List<String> names = new ArrayList<>();
+    for (; i < this.sortedNames.length && this.sortedNames[i].startsWith(prefix); i++)
+      names.add(this.sortedNames[i]);
+    return names;
+  }
+
+  /**
+   * Lists the names starting with the given prefix and ending with the given suffix, in lexicographic
+   * order.
+   * 
+   * @param prefix the prefix, e.g. "assets/lang/"
+   * @param suffix the suffix, e.g. ".lang"
+   * @return the matching names
+   */
+  public List<String> list(String prefix, String suffix) {
+    List<String> names = list(prefix);
+    names.removeIf(name -> !name.endsWith(suffix));
+    return names;
+  }
+
+  /**
+   * Returns the content of an entry. Stored entries are returned as a read-only view of the jar's
+   * mapping, compressed ones are inflated into a new buffer.
+   * 
+   * @param name the entry's name
+   * @return the content
+   * @throws IOException if the entry does not exist or could not be read
+   */
+  public ByteBuffer getBuffer(String name) throws IOException {
+    Entry entry = require(name);
+    ByteBuffer data = data(entry);
+    if (entry.method == STORED)
+      return data.asReadOnlyBuffer();
+
+    if (entry.size > Integer.MAX_VALUE)
+      throw new ZipException("entry too large: " + name);
+    byte[] compressed = new byte[data.remaining()];
+    data.get(compressed);
+    byte[] content = new byte[(int) entry.size];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(compressed);
+      int n = 0;
+      while (n < content.length && !inflater.finished()) {
+        int read = inflater.inflate(content, n, content.length - n);
+        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new ZipException("truncated entry: " + name);
+        n += read;
+      }
+    }
+    catch (DataFormatException e) {
+      throw new ZipException("invalid entry " + name + ": " + e.getMessage());
+    }
+    finally {
+      inflater.end();
+    }
+    return ByteBuffer.wrap(content);
+  }
+
+  /**
+   * Returns the content of an entry.
+   * 
+   * @param name the entry's name
+   * @return the content
+   * @throws IOException if the entry does not exist or could not be read
+   */
+  public byte[] getBytes(String name) throws IOException {
+    ByteBuffer content = getBuffer(name);
+    if (content.hasArray() && content.arrayOffset() == 0 && content.remaining() == content.array().length)
+      return content.array();
+    byte[] bytes = new byte[content.remaining()];
+    content.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Opens a stream on the content of an entry. The data is read straight from the jar's mapping.
+   * 
+   * @param name the entry's name
+   * @return the stream
+   * @throws IOException if the entry does not exist or could not be read
+   */
+  public InputStream openStream(String name) throws IOException {
+    Entry entry = require(name);
+    InputStream in = new BufferInputStream(data(entry));
+    if (entry.method == STORED)
+      return in;
+
+    Inflater inflater = new Inflater(true);
+    // InflaterInputStream only ends the inflaters it creates itself.
+    return new InflaterInputStream(in, inflater) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        }
+        finally {
+          inflater.end();
+        }
+      }
+    };
+  }
+
+  private Entry require(String name) throws IOException {
+    Entry entry = this.entries.get(name);
+    if (entry == null)
+      throw new ZipException("no entry " + name);
+    if (entry.method != STORED && entry.method != DEFLATED)
+      throw new ZipException("unsupported compression method " + entry.method + " for " + name);
+    return entry;
+  }
+
+  /**
+   * Returns a view of the compressed data of an entry.
+   */
+  private ByteBuffer data(Entry entry) throws IOException {
+    if (entry.localOffset + LOCAL_HEADER_SIZE > this.buffer.limit())
+      throw new ZipException("invalid local header offset for " + entry.name);
+    int local = (int) entry.localOffset;
+    if (this.buffer.getInt(local) != LOCAL_SIGNATURE)
+      throw new ZipException("invalid local header for " + entry.name);
+    long start = local + LOCAL_HEADER_SIZE + (this.buffer.getShort(local + 26) & 0xffff)
+        + (this.buffer.getShort(local + 28) & 0xffff);
+    if (start + entry.compressedSize > this.buffer.limit())
+      throw new ZipException("truncated entry " + entry.name);
+
+    ByteBuffer data = this.buffer.duplicate();
+    data.position((int) start).limit((int) (start + entry.compressedSize));
+    return data.slice();
+  }
+
+  /**
+   * Finds the end of central directory record. It is at the end of the file, followed by a comment of
+   * up to 65535 bytes.
+   */
+  private static int findEnd(ByteBuffer buffer) throws ZipException {
+    int min = Math.max(0, buffer.limit() - END_SIZE - 0xffff);
+    for (int i = buffer.limit() - END_SIZE; i >= min; i--) {
+      if (buffer.getInt(i) == END_SIGNATURE)
+        return i;
+    }
+    throw new ZipException("not a jar file");
+  }
+
+  /**
+   * An entry of a jar.
+   *
+   * @author Damien Vergnet
+   */
+  public static final class Entry {
+    private final String name;
+    private final int method;
+    private final long compressedSize;
+    private final long size;
+    private final long localOffset;
+
+    private Entry(String name, int method, long compressedSize, long size, long localOffset) {
+      this.name = name;
+      this.method = method;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localOffset = localOffset;
+    }
+
+    /**
+     * @return the entry's name
+     */
+    public String getName() {
+      return this.name;
+    }
+
+    /**
+     * @return true if the entry is a directory
+     */
+    public boolean isDirectory() {
+      return this.name.endsWith("/");
+    }
+
+    /**
+     * @return true if the entry is stored without compression
+     */
+    public boolean isStored() {
+      return this.method == STORED;
+    }
+
+    /**
+     * @return the uncompressed size
+     */
+    public long getSize() {
+      return this.size;
+    }
+
+    /**
+     * @return the compressed size
+     */
+    public long getCompressedSize() {
+      return this.compressedSize;
+    }
+
+    @Override
+    public String toString() {
+      return this.name;
+    }
+  }
+
+  /**
+   * An input stream reading a byte buffer.
+   *
+   * @author Damien Vergnet
+   */
+  private static class BufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0)
+        return 0;
+      if (!this.buffer.hasRemaining())
+        return -1;
+      int n = Math.min(len, this.buffer.remaining());
+      this.buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+      this.buffer.position(this.buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return this.buffer.remaining();
+    }
+  }
+}
@@ -20,10 +20,25 @@ package net.darmo_creations.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.darmo_creations.utils.profiling.StartupProfiler;
 
 /**
  * This class provides useful methods to handle the jar, restart the application, etc.
@@ -31,7 +46,21 @@ import java.util.List;
  * @author Damien Vergnet
  */
 public final class JarUtil {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JarUtil.class);
+  /** Set on restarted processes: the time when the restart was requested, in ms since the epoch. */
+  static final String RESTART_TIME_PROPERTY = "net.darmo_creations.restart.time";
+  /** Set on restarted processes: the restart mode, "plain" or "fast". */
+  static final String RESTART_MODE_PROPERTY = "net.darmo_creations.restart.mode";
+  /** Set on pre-warmed processes: the file to create once the first window is shown. */
+  static final String RESTART_READY_PROPERTY = "net.darmo_creations.restart.ready";
+  /** JVM arguments that must not be passed to the new process. */
+  private static final String[] EXCLUDED_ARGUMENTS = {"-agentlib:jdwp", "-Xrunjdwp", "-Xdebug", "-Xshare",
+      "-XX:SharedArchiveFile", "-XX:ArchiveClassesAtExit", "-D" + RESTART_TIME_PROPERTY, "-D" + RESTART_MODE_PROPERTY,
+      "-D" + RESTART_READY_PROPERTY};
+  private static final AtomicBoolean firstWindowShown = new AtomicBoolean();
+
   private static String dir;
+  private static volatile JarIndex index;
 
   /**
    * @return the jar's directory
@@ -55,6 +84,30 @@ public final class JarUtil {
     return JarUtil.class.getProtectionDomain().getCodeSource().getLocation().toURI();
   }
 
+  /**
+   * Returns the index of this jar's entries. It is built on the first call then shared.
+   * 
+   * @return the index
+   * @throws IOException if the classes are not packed in a jar or it could not be read
+   */
+  public static JarIndex getIndex() throws IOException {
+    if (index == null) {
+      synchronized (JarUtil.class) {
+        if (index == null) {
+          Path jar;
+          try {
+            jar = Paths.get(getJar());
+          }
+          catch (URISyntaxException e) {
+            throw new IOException(e);
+          }
+          index = JarIndex.open(jar);
+        }
+      }
+    }
+    return index;
+  }
+
   /**
    * <p>
    * Restarts the application. The method fetches the installed Java binaries and then the jar. Once
@@ -70,22 +123,242 @@ public final class JarUtil {
    * @throws URISyntaxException if the jar path is ill-formed
    */
   public static void restartApplication(String executableExtension) throws IOException, URISyntaxException {
+    restartApplication(executableExtension, new RestartOptions());
+  }
+
+  /**
+   * <p>
+   * Restarts the application with the given options. The method fetches the installed Java binaries
+   * and then the jar. Once all has been found, a new process is created for the new application and
+   * the current one is closed by calling {@code System.exit(0)}, after the new process has shown its
+   * first window if pre-warming is enabled.
+   * </p>
+   * The new process should call {@link #notifyFirstWindow()} once its main window is visible so that
+   * the time to first window is logged.
+   * 
+   * @param executableExtension the extension of the executable file to run. If null, the ".jar"
+   *          extension is used
+   * @param options the restart options
+   * @throws IOException if the executable or Java could not be found
+   * @throws URISyntaxException if the jar path is ill-formed
+   */
+  public static void restartApplication(String executableExtension, RestartOptions options)
+      throws IOException, URISyntaxException {
     String javaBin = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
     File currentJar = new File(JarUtil.getJar());
 
-    // Build command: java -jar <application>.jar
-    List<String> command = new ArrayList<>();
-    command.add(javaBin);
-    command.add("-jar");
-    command.add(currentJar.getPath());
-
     if (!currentJar.getName().endsWith(executableExtension != null ? executableExtension : ".jar"))
       throw new IOException("unable to find executable");
 
+    Path readyFile = options.isPrewarm() ? Files.createTempFile("restart", ".ready") : null;
+    if (readyFile != null)
+      Files.delete(readyFile);
+    List<String> jvmArguments = options.isInheritJvmArguments()
+        ? ManagementFactory.getRuntimeMXBean().getInputArguments()
+        : Collections.emptyList();
+    List<String> command = buildCommand(javaBin, currentJar.toPath(), options, jvmArguments, getJavaVersion(), readyFile);
+
     ProcessBuilder builder = new ProcessBuilder(command);
-    builder.start();
+    Process process = builder.start();
+    if (readyFile != null)
+      awaitFirstWindow(process, readyFile, options.getPrewarmTimeout());
     System.exit(0);
   }
 
+  /**
+   * Signals that the application has shown its first window. If the application was restarted, the
+   * time since the restart was requested is logged, otherwise the time since the JVM started; if the
+   * restart is pre-warmed, the previous process is allowed to exit. The event is also recorded by the
+   * {@link StartupProfiler}. Only the first call has an effect.
+   */
+  public static void notifyFirstWindow() {
+    if (!firstWindowShown.compareAndSet(false, true))
+      return;
+    StartupProfiler.mark("firstWindow");
+
+    long now = System.currentTimeMillis();
+    String restartTime = System.getProperty(RESTART_TIME_PROPERTY);
+    if (restartTime != null) {
+      LOGGER.info("Time to first window after {} restart: {} ms", System.getProperty(RESTART_MODE_PROPERTY, "plain"),
+          now - Long.parseLong(restartTime));
+    }
+    else {
+      LOGGER.info("Time to first window: {} ms", now - ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    String readyFile = System.getProperty(RESTART_READY_PROPERTY);
+    if (readyFile != null) {
+      try {
+        Files.createFile(Paths.get(readyFile));
+      }
+      catch (IOException e) {
+        LOGGER.warn("Could not notify the previous process", e);
+      }
+    }
+  }
+
+  /**
+   * Builds the command starting the new process.
+   * 
+   * @param javaBin the java executable
+   * @param jar the application's jar
+   * @param options the restart options
+   * @param jvmArguments the arguments of the current JVM
+   * @param javaVersion the major version of Java
+   * @param readyFile the file the new process creates once ready, if pre-warming
+   * @return the command
+   */
+  static List<String> buildCommand(String javaBin, Path jar, RestartOptions options, List<String> jvmArguments,
+      int javaVersion, Path readyFile) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(javaBin);
+
+    if (options.isInheritJvmArguments()) {
+      for (String arg : jvmArguments) {
+        if (!isExcluded(arg))
+          command.add(arg);
+      }
+    }
+
+    if (options.isClassDataSharing()) {
+      if (javaVersion >= 13) {
+        Path directory = options.getArchiveDirectory() != null ? options.getArchiveDirectory() : getDefaultArchiveDirectory();
+        Path archive = getArchive(jar, directory);
+        if (Files.exists(archive)) {
+          command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        else if (!isWritableDirectory(directory)) {
+          LOGGER.info("Class-data sharing archive directory {} is not writable, restarting without it", directory);
+        }
+        else {
+          deleteArchives(jar, directory);
+          LOGGER.info("Generating class-data sharing archive {}", archive);
+          command.add("-XX:ArchiveClassesAtExit=" + archive);
+        }
+      }
+      else {
+        LOGGER.info("Class-data sharing requires Java 13 or later, current version is {}", javaVersion);
+      }
+    }
+
+    command.add("-D" + RESTART_TIME_PROPERTY + "=" + System.currentTimeMillis());
+    command.add("-D" + RESTART_MODE_PROPERTY + "=" + (options.isFast() ? "fast" : "plain"));
+    if (readyFile != null)
+      command.add("-D" + RESTART_READY_PROPERTY + "=" + readyFile);
+
+    // Build command: java [options] -jar <application>.jar
+    command.add("-jar");
+    command.add(jar.toString());
+    return command;
+  }
+
+  /**
+   * Returns the class-data sharing archive for a jar. Its name depends on the size and modification
+   * time of the jar so that a new archive is generated whenever the jar changes.
+   */
+  private static Path getArchive(Path jar, Path directory) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+    long version = attributes.size() * 31 + attributes.lastModifiedTime().toMillis();
+    return directory.resolve(getArchivePrefix(jar) + Long.toHexString(version) + ".jsa");
+  }
+
+  private static String getArchivePrefix(Path jar) {
+    String name = jar.getFileName().toString();
+    if (name.endsWith(".jar"))
+      name = name.substring(0, name.length() - 4);
+    return name + "-";
+  }
+
+  /**
+   * Deletes the archives generated for previous versions of a jar.
+   */
+  private static void deleteArchives(Path jar, Path directory) {
+    String prefix = getArchivePrefix(jar);
+
+    try (DirectoryStream<Path> archives = Files.newDirectoryStream(directory, "*.jsa")) {
+      for (Path archive : archives) {
+        String name = archive.getFileName().toString();
+        // Only the version follows the prefix, other jars may share it (e.g. app.jar and app-extra.jar).
+        if (name.startsWith(prefix) && name.substring(prefix.length(), name.length() - 4).matches("[0-9a-f]+"))
+          Files.deleteIfExists(archive);
+      }
+    }
+    catch (IOException e) {
+      LOGGER.warn("Could not delete old class-data sharing archives", e);
+    }
+  }
+
+  /**
+   * Returns the default directory of class-data sharing archives, in the user's cache directory as
+   * the jar's directory is often not writable.
+   */
+  static Path getDefaultArchiveDirectory() {
+    String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+    String home = System.getProperty("user.home");
+    Path cache;
+
+    if (os.startsWith("windows")) {
+      String localAppData = System.getenv("LOCALAPPDATA");
+      cache = localAppData != null ? Paths.get(localAppData) : Paths.get(home, "AppData", "Local");
+    }
+    else if (os.startsWith("mac")) {
+      cache = Paths.get(home, "Library", "Caches");
+    }
+    else {
+      String xdgCache = System.getenv("XDG_CACHE_HOME");
+      cache = xdgCache != null && !xdgCache.isEmpty() ? Paths.get(xdgCache) : Paths.get(home, ".cache");
+    }
+
+    return cache.resolve("darmo_creations").resolve("cds");
+  }
+
+  private static boolean isWritableDirectory(Path directory) {
+    try {
+      Files.createDirectories(directory);
+      return Files.isWritable(directory);
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static boolean isExcluded(String argument) {
+    for (String excluded : EXCLUDED_ARGUMENTS) {
+      if (argument.startsWith(excluded))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Waits until the new process creates the ready file, exits or the timeout expires.
+   */
+  private static void awaitFirstWindow(Process process, Path readyFile, long timeout) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    try {
+      while (!Files.exists(readyFile) && process.isAlive() && deadline - System.nanoTime() > 0)
+        Thread.sleep(20);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!Files.exists(readyFile))
+      LOGGER.warn("New process did not show a window within {} ms", timeout);
+    try {
+      Files.deleteIfExists(readyFile);
+    }
+    catch (IOException e) {
+      // Temporary file, not important
+    }
+  }
+
+  /**
+   * @return the major version of the running Java
+   */
+  static int getJavaVersion() {
+    String version = System.getProperty("java.specification.version");
+    return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+  }
+
   private JarUtil() {}
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import java.nio.file.Path;
+
+/**
+ * Options of {@link JarUtil#restartApplication(String, RestartOptions)}. By default, the application
+ * is restarted with a plain {@code java -jar} command, like
+ * {@link JarUtil#restartApplication(String)}.
+ *
+ * @author Damien Vergnet
+ */
+public final class RestartOptions {
+  /** The default time to wait for the new process to show its first window, in milliseconds. */
+  public static final long DEFAULT_PREWARM_TIMEOUT = 10000;
+
+  /**
+   * Returns options enabling all fast restart features: class-data sharing, inherited JVM arguments
+   * and pre-warming.
+   * 
+   * @return the options
+   */
+  public static RestartOptions fast() {
+    return new RestartOptions().setClassDataSharing(true).setInheritJvmArguments(true).setPrewarm(true);
+  }
+
+  private boolean classDataSharing;
+  private Path archiveDirectory;
+  private boolean inheritJvmArguments;
+  private boolean prewarm;
+  private long prewarmTimeout;
+
+  /**
+   * Creates options for a plain restart.
+   */
+  public RestartOptions() {
+    this.prewarmTimeout = DEFAULT_PREWARM_TIMEOUT;
+  }
+
+  /**
+   * Enables application class-data sharing (Java 13 or later, ignored otherwise). The first restart
+   * dumps the loaded classes into an archive when the new process exits; following restarts map it
+   * instead of loading and verifying the classes again. Archives are specific to a version of the jar.
+   * 
+   * @param classDataSharing true to enable class-data sharing
+   * @return these options
+   */
+  public RestartOptions setClassDataSharing(boolean classDataSharing) {
+    this.classDataSharing = classDataSharing;
+    return this;
+  }
+
+  /**
+   * Sets the directory where class-data sharing archives are stored. Defaults to a directory in the
+   * user's cache directory. Archives of previous versions of the jar are deleted when a new one is
+   * generated. If the directory is not writable, the application is restarted without class-data
+   * sharing.
+   * 
+   * @param archiveDirectory the directory or null for the default
+   * @return these options
+   */
+  public RestartOptions setArchiveDirectory(@Nullable Path archiveDirectory) {
+    this.archiveDirectory = archiveDirectory;
+    return this;
+  }
+
+  /**
+   * Passes the arguments of the current JVM (heap size, GC flags, system properties, etc.) to the new
+   * one. Debugger agents and class-data sharing flags are not passed.
+   * 
+   * @param inheritJvmArguments true to pass the arguments
+   * @return these options
+   */
+  public RestartOptions setInheritJvmArguments(boolean inheritJvmArguments) {
+    this.inheritJvmArguments = inheritJvmArguments;
+    return this;
+  }
+
+  /**
+   * Keeps the current process alive until the new one calls {@link JarUtil#notifyFirstWindow()} or
+   * the pre-warm timeout expires, so that there is no gap without a window.
+   * 
+   * @param prewarm true to wait for the new process
+   * @return these options
+   */
+  public RestartOptions setPrewarm(boolean prewarm) {
+    this.prewarm = prewarm;
+    return this;
+  }
+
+  /**
+   * Sets the maximum time to wait for the new process when pre-warming.
+   * 
+   * @param prewarmTimeout the timeout in milliseconds
+   * @return these options
+   */
+  public RestartOptions setPrewarmTimeout(long prewarmTimeout) {
+    if (prewarmTimeout < 0)
+      throw new IllegalArgumentException("negative timeout " + prewarmTimeout);
+    this.prewarmTimeout = prewarmTimeout;
+    return this;
+  }
+
+  public boolean isClassDataSharing() {
+    return this.classDataSharing;
+  }
+
+  public Path getArchiveDirectory() {
+    return this.archiveDirectory;
+  }
+
+  public boolean isInheritJvmArguments() {
+    return this.inheritJvmArguments;
+  }
+
+  public boolean isPrewarm() {
+    return this.prewarm;
+  }
+
+  public long getPrewarmTimeout() {
+    return this.prewarmTimeout;
+  }
+
+  /**
+   * @return true if any fast restart feature is enabled
+   */
+  public boolean isFast() {
+    return this.classDataSharing || this.inheritJvmArguments || this.prewarm;
+  }
+}
@@ -18,8 +18,7 @@
  */
 package net.darmo_creations.utils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
@@ -27,28 +26,106 @@ import javax.swing.undo.CannotUndoException;
 /**
  * This class is a simple implementation of an undo/redo manager. It can handle edits of a single
  * type only.
+ * <p>
+ * By default, adding an edit after an undo discards the edits that could have been redone. In
+ * branching mode, the manager keeps an undo tree instead: the new edit starts a sibling branch and
+ * the previous edits can still be reached through {@link #jumpTo(int)}. Every edit is identified by
+ * a node ID that stays valid until the edit is discarded.
+ * </p>
+ * <p>
+ * Nodes are stored in parallel arrays in creation order, each node referencing its parent by index.
+ * A parent thus always has a lower index than its children.
+ * </p>
  * 
  * @author Damien Vergnet
  *
  * @param <T> type of edits
  */
 public class UndoRedoManager<T> {
-  private List<T> edits;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final boolean branching;
+  private Object[] edits;
+  /** Index of each node's parent; -1 for the root. */
+  private int[] parents;
+  /** Index of the child each node redoes to; -1 if none. */
+  private int[] redoChildren;
+  /** Node IDs, strictly increasing with the index. */
+  private int[] ids;
+  /** Last time each node was the current one. */
+  private long[] stamps;
+  private int size;
   private int index;
+  private int nextId;
+  private long clock;
+  private int maxEdits;
 
   /**
-   * Creates an empty manager.
+   * Creates an empty manager that discards redoable edits when a new one is added.
    */
   public UndoRedoManager() {
-    this.edits = new ArrayList<>();
+    this(false);
+  }
+
+  /**
+   * Creates an empty manager.
+   * 
+   * @param branching if true, adding an edit after an undo will start a new branch instead of
+   *          discarding the redoable edits
+   */
+  public UndoRedoManager(boolean branching) {
+    this.branching = branching;
+    this.edits = new Object[INITIAL_CAPACITY];
+    this.parents = new int[INITIAL_CAPACITY];
+    this.redoChildren = new int[INITIAL_CAPACITY];
+    this.ids = new int[INITIAL_CAPACITY];
+    this.stamps = new long[INITIAL_CAPACITY];
     this.index = -1;
   }
 
+  /**
+   * @return true if this manager keeps an undo tree
+   */
+  public boolean isBranching() {
+    return this.branching;
+  }
+
+  /**
+   * @return the number of edits held by this manager
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @return the maximum number of edits in branching mode; 0 means no limit
+   */
+  public int getMaxEdits() {
+    return this.maxEdits;
+  }
+
+  /**
+   * Sets the maximum number of edits kept in branching mode. When this limit is exceeded, the
+   * branches that were visited the least recently are discarded until a quarter of the limit is
+   * free again. Edits between the root and the current edit, as well as the ones that can be
+   * redone, are never discarded; the limit may thus be exceeded if the current branch is longer.
+   * 
+   * @param maxEdits the limit; 0 to disable it
+   * @throws IllegalArgumentException if the limit is negative
+   */
+  public void setMaxEdits(int maxEdits) {
+    if (maxEdits < 0)
+      throw new IllegalArgumentException("negative limit " + maxEdits);
+    this.maxEdits = maxEdits;
+    pruneIfNeeded();
+  }
+
   /**
    * Clears all edits.
    */
   public void clear() {
-    this.edits.clear();
+    Arrays.fill(this.edits, 0, this.size, null);
+    this.size = 0;
     this.index = -1;
   }
 
@@ -58,16 +135,32 @@ public class UndoRedoManager<T> {
    * @param edit the new edit
    */
   public void addEdit(T edit) {
-    this.index++;
-    this.edits = this.edits.subList(0, this.index);
-    this.edits.add(edit);
+    if (!this.branching) {
+      Arrays.fill(this.edits, this.index + 1, this.size, null);
+      this.size = this.index + 1;
+    }
+    ensureCapacity(this.size + 1);
+
+    int i = this.size++;
+    this.edits[i] = edit;
+    this.parents[i] = this.index;
+    this.redoChildren[i] = -1;
+    this.ids[i] = this.nextId++;
+    if (this.index >= 0)
+      this.redoChildren[this.index] = i;
+    moveTo(i);
+    pruneIfNeeded();
   }
 
   /**
    * @return the current edit
+   * @throws IndexOutOfBoundsException if this manager is empty
    */
+  @SuppressWarnings("unchecked")
   public T getEdit() {
-    return this.edits.get(this.index);
+    if (this.index < 0)
+      throw new IndexOutOfBoundsException("no edits");
+    return (T) editAt(this.index);
   }
 
   /**
@@ -77,30 +170,254 @@ public class UndoRedoManager<T> {
     if (!canUndo()) {
       throw new CannotUndoException();
     }
-    this.index--;
+    moveTo(this.parents[this.index]);
   }
 
   /**
-   * Restores an edit.
+   * Restores an edit. In branching mode, the branch that was visited last is followed.
    */
   public void redo() {
     if (!canRedo()) {
       throw new CannotRedoException();
     }
-    this.index++;
+    moveTo(this.redoChildren[this.index]);
   }
 
   /**
    * @return true if the manager can undo an edit
    */
   public boolean canUndo() {
-    return this.index > 0;
+    return this.index >= 0 && this.parents[this.index] >= 0;
   }
 
   /**
    * @return true if the manager can restore an edit
    */
   public boolean canRedo() {
-    return this.index >= 0 && this.index < this.edits.size() - 1;
+    return this.index >= 0 && this.redoChildren[this.index] >= 0;
+  }
+
+  /**
+   * @return the ID of the current node; -1 if this manager is empty
+   */
+  public int getCurrentNode() {
+    return this.index >= 0 ? this.ids[this.index] : -1;
+  }
+
+  /**
+   * @return the ID of the node that was added last; -1 if this manager is empty
+   */
+  public int getLatestNode() {
+    return this.size > 0 ? this.ids[this.size - 1] : -1;
+  }
+
+  /**
+   * Returns the parent of the given node.
+   * 
+   * @param node the node ID
+   * @return the ID of the parent node; -1 if the given node is the root
+   * @throws IllegalArgumentException if no node has this ID
+   */
+  public int getParentNode(int node) {
+    int parent = this.parents[indexOf(node)];
+    return parent >= 0 ? this.ids[parent] : -1;
+  }
+
+  /**
+   * Makes the given node the current one. Redoing from the root will then follow the path to this
+   * node. This method runs in time proportional to the depth of the node.
+   * 
+   * @param node the node ID
+   * @throws IllegalArgumentException if no node has this ID
+   */
+  public void jumpTo(int node) {
+    int i = indexOf(node);
+
+    for (int child = i, parent = this.parents[i]; parent >= 0; child = parent, parent = this.parents[parent])
+      this.redoChildren[parent] = child;
+    moveTo(i);
+  }
+
+  /**
+   * Jumps to the node that was added last, i.e. the tip of the most recent branch.
+   * 
+   * @throws IllegalStateException if this manager is empty
+   */
+  public void jumpToLatest() {
+    if (this.size == 0)
+      throw new IllegalStateException("no edits");
+    jumpTo(getLatestNode());
+  }
+
+  /**
+   * Replaces the whole state of this manager. Arrays are used as is. Stamps are reset so that the
+   * most recent nodes are the hottest.
+   */
+  void restore(Object[] edits, int[] parents, int[] redoChildren, int[] ids, int size, int index, int nextId, int maxEdits) {
+    this.edits = edits;
+    this.parents = parents;
+    this.redoChildren = redoChildren;
+    this.ids = ids;
+    this.stamps = new long[edits.length];
+    for (int i = 0; i < size; i++)
+      this.stamps[i] = i + 1;
+    this.clock = size;
+    this.size = size;
+    this.nextId = nextId;
+    this.maxEdits = maxEdits;
+    this.index = -1;
+    if (index >= 0)
+      moveTo(index);
+  }
+
+  /**
+   * @return the index of the current node; -1 if this manager is empty
+   */
+  int currentIndex() {
+    return this.index;
+  }
+
+  int parentIndex(int i) {
+    return this.parents[i];
+  }
+
+  int redoIndex(int i) {
+    return this.redoChildren[i];
+  }
+
+  int nodeId(int i) {
+    return this.ids[i];
+  }
+
+  int nextNodeId() {
+    return this.nextId;
+  }
+
+  /**
+   * Returns the edit at the given index, waiting for it if it is still being loaded.
+   */
+  Object editAt(int i) {
+    Object edit = this.edits[i];
+
+    if (edit instanceof DeferredEdit) {
+      edit = ((DeferredEdit) edit).get();
+      this.edits[i] = edit;
+    }
+    return edit;
+  }
+
+  private void moveTo(int i) {
+    this.index = i;
+    this.stamps[i] = ++this.clock;
+  }
+
+  private int indexOf(int node) {
+    int i = Arrays.binarySearch(this.ids, 0, this.size, node);
+    if (i < 0)
+      throw new IllegalArgumentException("unknown node " + node);
+    return i;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > this.edits.length) {
+      int newCapacity = Math.max(capacity, this.edits.length + (this.edits.length >> 1));
+
+      this.edits = Arrays.copyOf(this.edits, newCapacity);
+      this.parents = Arrays.copyOf(this.parents, newCapacity);
+      this.redoChildren = Arrays.copyOf(this.redoChildren, newCapacity);
+      this.ids = Arrays.copyOf(this.ids, newCapacity);
+      this.stamps = Arrays.copyOf(this.stamps, newCapacity);
+    }
+  }
+
+  /**
+   * Discards the coldest branches if the limit is exceeded. The heat of a node is the most recent
+   * stamp in its subtree; as a node is never hotter than its parent, removing the coldest nodes
+   * first (deepest first on ties) always removes whole subtrees.
+   */
+  private void pruneIfNeeded() {
+    if (!this.branching || this.maxEdits == 0 || this.size <= this.maxEdits)
+      return;
+
+    long[] heats = Arrays.copyOf(this.stamps, this.size);
+    for (int i = this.size - 1; i > 0; i--) {
+      int parent = this.parents[i];
+      if (parent >= 0 && heats[i] > heats[parent])
+        heats[parent] = heats[i];
+    }
+
+    boolean[] active = new boolean[this.size];
+    for (int i = this.index; i >= 0; i = this.parents[i])
+      active[i] = true;
+    for (int i = this.redoChildren[this.index]; i >= 0; i = this.redoChildren[i])
+      active[i] = true;
+
+    Integer[] candidates = new Integer[this.size];
+    int candidatesNb = 0;
+    for (int i = 0; i < this.size; i++) {
+      if (!active[i])
+        candidates[candidatesNb++] = i;
+    }
+    Arrays.sort(candidates, 0, candidatesNb, (i1, i2) -> {
+      int c = Long.compare(heats[i1], heats[i2]);
+      return c != 0 ? c : Integer.compare(i2, i1);
+    });
+
+    int toRemove = Math.min(candidatesNb, this.size - (this.maxEdits - this.maxEdits / 4));
+    boolean[] removed = new boolean[this.size];
+    for (int i = 0; i < toRemove; i++)
+      removed[candidates[i]] = true;
+    compact(removed);
+  }
+
+  private void compact(boolean[] removed) {
+    int[] newIndices = new int[this.size];
+    int newSize = 0;
+
+    for (int i = 0; i < this.size; i++) {
+      if (removed[i]) {
+        newIndices[i] = -1;
+        continue;
+      }
+      int parent = this.parents[i];
+      int redoChild = this.redoChildren[i];
+
+      this.edits[newSize] = this.edits[i];
+      this.parents[newSize] = parent >= 0 ? newIndices[parent] : -1;
+      // Children come after their parent, their new index is not known yet.
+      this.redoChildren[newSize] = redoChild >= 0 && !removed[redoChild] ? redoChild : -1;
+      this.ids[newSize] = this.ids[i];
+      this.stamps[newSize] = this.stamps[i];
+      newIndices[i] = newSize++;
+    }
+    for (int i = 0; i < newSize; i++) {
+      if (this.redoChildren[i] >= 0)
+        this.redoChildren[i] = newIndices[this.redoChildren[i]];
+    }
+    // Nodes whose redo branch was removed now redo to their latest remaining child.
+    for (int i = newSize - 1; i > 0; i--) {
+      int parent = this.parents[i];
+      if (this.redoChildren[parent] < 0)
+        this.redoChildren[parent] = i;
+    }
+
+    Arrays.fill(this.edits, newSize, this.size, null);
+    this.index = newIndices[this.index];
+    this.size = newSize;
+  }
+
+  /**
+   * An edit that is still being loaded in the background.
+   *
+   * @author Damien Vergnet
+   */
+  abstract static class DeferredEdit {
+    /**
+     * Waits for the edit then returns it.
+     * 
+     * @return the loaded edit
+     * @throws java.io.UncheckedIOException if the edit could not be loaded
+     */
+    abstract Object get();
   }
 }
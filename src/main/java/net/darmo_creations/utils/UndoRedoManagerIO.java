@@ -0,0 +1,413 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class saves and loads undo/redo histories using a compact binary format. All values are
+ * big-endian.
+ * 
+ * <pre>
+ * int     magic number ("DUUR")
+ * byte    format version
+ * byte    flags (bit 0: branching)
+ * int     size, current index, next node ID, max edits
+ * int[]   parent indices
+ * int[]   redo indices
+ * int[]   node IDs
+ * records {int index, int length, byte[length] edit}
+ * </pre>
+ * 
+ * The current edit is the first record, followed by its ancestors, nearest first, then the edits
+ * that can be redone and finally all others, newest first. This lets {@link #load} return as soon
+ * as the current edit has been read; other records are read by a background thread. Until then,
+ * moving to an edit that has not been read yet blocks.
+ *
+ * @author Damien Vergnet
+ */
+public final class UndoRedoManagerIO {
+  private static final int MAGIC = 0x44555552;
+  private static final byte VERSION = 1;
+  private static final int FLAG_BRANCHING = 1;
+  private static final int HEADER_SIZE = 22;
+  private static final int BUFFER_SIZE = 1 << 16;
+  /** Maximum number of buffers per gathering write. */
+  private static final int BATCH_SIZE = 64;
+
+  /**
+   * Saves the history of a manager to a file. The file is overwritten.
+   * 
+   * @param manager the manager
+   * @param codec the codec for edits
+   * @param file the file
+   * @throws IOException if an I/O error occurs
+   */
+  public static <T> void save(UndoRedoManager<T> manager, EditCodec<? super T> codec, Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      save(manager, codec, channel);
+    }
+  }
+
+  /**
+   * Saves the history of a manager to a channel. The channel is not closed.
+   * 
+   * @param manager the manager
+   * @param codec the codec for edits
+   * @param channel the channel
+   * @throws IOException if an I/O error occurs
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> void save(UndoRedoManager<T> manager, EditCodec<? super T> codec, WritableByteChannel channel)
+      throws IOException {
+    synchronized (manager) {
+      int size = manager.size();
+      int index = manager.currentIndex();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 12 * size);
+
+      header.putInt(MAGIC).put(VERSION).put((byte) (manager.isBranching() ? FLAG_BRANCHING : 0));
+      header.putInt(size).putInt(index).putInt(manager.nextNodeId()).putInt(manager.getMaxEdits());
+      for (int i = 0; i < size; i++)
+        header.putInt(manager.parentIndex(i));
+      for (int i = 0; i < size; i++)
+        header.putInt(manager.redoIndex(i));
+      for (int i = 0; i < size; i++)
+        header.putInt(manager.nodeId(i));
+      header.flip();
+      writeFully(channel, new ByteBuffer[]{header}, 1);
+
+      ByteBuffer[] batch = new ByteBuffer[2 * BATCH_SIZE];
+      int batchSize = 0;
+      for (int i : recordsOrder(manager)) {
+        ByteBuffer data = codec.encode((T) manager.editAt(i));
+        ByteBuffer recordHeader = ByteBuffer.allocate(8).putInt(i).putInt(data.remaining());
+        recordHeader.flip();
+        batch[batchSize++] = recordHeader;
+        batch[batchSize++] = data;
+        if (batchSize == batch.length) {
+          writeFully(channel, batch, batchSize);
+          batchSize = 0;
+        }
+      }
+      writeFully(channel, batch, batchSize);
+    }
+  }
+
+  /**
+   * Loads a history from a file into the given manager, replacing its current history. This method
+   * returns once the current edit has been read; the file is closed once all edits have been read.
+   * 
+   * @param manager the manager; it must have the same mode as the saved one
+   * @param codec the codec for edits
+   * @param file the file
+   * @return the manager
+   * @throws IOException if an I/O error occurs, the data is invalid or the manager's mode does not
+   *           match
+   */
+  public static <T, M extends UndoRedoManager<T>> M load(M manager, EditCodec<? extends T> codec, Path file) throws IOException {
+    return load(manager, codec, FileChannel.open(file, StandardOpenOption.READ));
+  }
+
+  /**
+   * Loads a history from a channel into the given manager, replacing its current history. This
+   * method returns once the current edit has been read. Remaining edits are read by a background
+   * thread which closes the channel once done or if an error occurs.
+   * 
+   * @param manager the manager; it must have the same mode as the saved one
+   * @param codec the codec for edits
+   * @param channel the channel
+   * @return the manager
+   * @throws IOException if an I/O error occurs, the data is invalid or the manager's mode does not
+   *           match; the channel is closed in this case
+   */
+  public static <T, M extends UndoRedoManager<T>> M load(M manager, EditCodec<? extends T> codec, ReadableByteChannel channel)
+      throws IOException {
+    try {
+      ChannelReader reader = new ChannelReader(channel);
+      ByteBuffer header = reader.require(HEADER_SIZE);
+
+      if (header.getInt() != MAGIC)
+        throw new IOException("not an undo history");
+      byte version = header.get();
+      if (version != VERSION)
+        throw new IOException("unsupported undo history version " + version);
+      if (((header.get() & FLAG_BRANCHING) != 0) != manager.isBranching())
+        throw new IOException("undo history mode mismatch");
+      int size = header.getInt();
+      int index = header.getInt();
+      int nextId = header.getInt();
+      int maxEdits = header.getInt();
+      if (size < 0 || index < -1 || index >= size || size > 0 && index < 0 || maxEdits < 0)
+        throw new IOException("corrupted undo history");
+
+      int capacity = Math.max(size, 16);
+      int[] parents = readIndices(reader, size, capacity, false);
+      int[] redoChildren = readIndices(reader, size, capacity, true);
+      int[] ids = new int[capacity];
+      ByteBuffer data = reader.require(4 * size);
+      for (int i = 0; i < size; i++) {
+        ids[i] = data.getInt();
+        if (i > 0 && ids[i] <= ids[i - 1] || ids[i] >= nextId)
+          throw new IOException("corrupted undo history");
+      }
+
+      Object[] edits = new Object[capacity];
+      if (size > 0) {
+        Loader loader = new Loader(reader, codec, size);
+        loader.readRecord(index);
+        for (int i = 0; i < size; i++)
+          edits[i] = i == index ? loader.await(index) : new PendingEdit(loader, i);
+        Thread thread = new Thread(loader, "undo-history-loader");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      else {
+        channel.close();
+      }
+      manager.restore(edits, parents, redoChildren, ids, size, index, nextId, maxEdits);
+
+      return manager;
+    }
+    catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private static int[] readIndices(ChannelReader reader, int size, int capacity, boolean children) throws IOException {
+    ByteBuffer data = reader.require(4 * size);
+    int[] indices = new int[capacity];
+
+    for (int i = 0; i < size; i++) {
+      int j = data.getInt();
+      if (j < -1 || (children ? j != -1 && (j <= i || j >= size) : j >= i || i > 0 && j == -1))
+        throw new IOException("corrupted undo history");
+      indices[i] = j;
+    }
+    return indices;
+  }
+
+  /**
+   * Returns the order in which records are written: current edit, its ancestors, the redoable edits
+   * then the others from the newest to the oldest.
+   */
+  private static int[] recordsOrder(UndoRedoManager<?> manager) {
+    int size = manager.size();
+    int[] order = new int[size];
+    boolean[] done = new boolean[size];
+    int n = 0;
+
+    if (size == 0)
+      return order;
+    for (int i = manager.currentIndex(); i >= 0; i = manager.parentIndex(i)) {
+      order[n++] = i;
+      done[i] = true;
+    }
+    for (int i = manager.redoIndex(manager.currentIndex()); i >= 0; i = manager.redoIndex(i)) {
+      order[n++] = i;
+      done[i] = true;
+    }
+    for (int i = size - 1; i >= 0; i--) {
+      if (!done[i])
+        order[n++] = i;
+    }
+    return order;
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer[] buffers, int length) throws IOException {
+    if (channel instanceof GatheringByteChannel) {
+      GatheringByteChannel c = (GatheringByteChannel) channel;
+      for (int i = 0; i < length; i++) {
+        while (buffers[i].hasRemaining())
+          c.write(buffers, i, length - i);
+      }
+    }
+    else {
+      for (int i = 0; i < length; i++) {
+        while (buffers[i].hasRemaining())
+          channel.write(buffers[i]);
+      }
+    }
+  }
+
+  /**
+   * Reads data from a channel through a reusable buffer.
+   */
+  private static class ChannelReader {
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+
+    ChannelReader(ReadableByteChannel channel) {
+      this.channel = channel;
+      this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      this.buffer.flip();
+    }
+
+    /**
+     * Ensures that the given number of bytes are available then returns the buffer. These bytes
+     * are consumed by the caller.
+     */
+    ByteBuffer require(int n) throws IOException {
+      if (this.buffer.remaining() < n) {
+        if (this.buffer.capacity() < n) {
+          ByteBuffer b = ByteBuffer.allocate(Math.max(n, BUFFER_SIZE));
+          b.put(this.buffer);
+          this.buffer = b;
+        }
+        else {
+          this.buffer.compact();
+        }
+        while (this.buffer.position() < n) {
+          if (this.channel.read(this.buffer) < 0)
+            throw new EOFException("truncated undo history");
+        }
+        this.buffer.flip();
+      }
+      return this.buffer;
+    }
+  }
+
+  /**
+   * Reads the records and makes them available to pending edits.
+   */
+  private static class Loader implements Runnable {
+    private final ChannelReader reader;
+    private final EditCodec<?> codec;
+    private final Object[] values;
+    private final boolean[] loaded;
+    private int remaining;
+    private IOException error;
+
+    Loader(ChannelReader reader, EditCodec<?> codec, int size) {
+      this.reader = reader;
+      this.codec = codec;
+      this.values = new Object[size];
+      this.loaded = new boolean[size];
+      this.remaining = size;
+    }
+
+    /**
+     * Reads the next record and checks that it has the expected index, if any.
+     */
+    void readRecord(int expectedIndex) throws IOException {
+      ByteBuffer data = this.reader.require(8);
+      int index = data.getInt();
+      int length = data.getInt();
+
+      if (index < 0 || index >= this.values.length || expectedIndex >= 0 && index != expectedIndex || length < 0)
+        throw new IOException("corrupted undo history");
+      data = this.reader.require(length);
+      ByteBuffer record = data.slice();
+      record.limit(length);
+      data.position(data.position() + length);
+      Object value = this.codec.decode(record);
+
+      synchronized (this) {
+        if (this.loaded[index])
+          throw new IOException("corrupted undo history");
+        this.values[index] = value;
+        this.loaded[index] = true;
+        this.remaining--;
+        notifyAll();
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        try {
+          while (true) {
+            synchronized (this) {
+              if (this.remaining == 0)
+                break;
+            }
+            readRecord(-1);
+          }
+        }
+        finally {
+          this.reader.channel.close();
+        }
+      }
+      catch (IOException ex) {
+        synchronized (this) {
+          this.error = ex;
+          notifyAll();
+        }
+      }
+      catch (RuntimeException ex) {
+        synchronized (this) {
+          this.error = new IOException(ex);
+          notifyAll();
+        }
+      }
+    }
+
+    synchronized Object await(int index) {
+      boolean interrupted = false;
+
+      try {
+        while (!this.loaded[index]) {
+          if (this.error != null)
+            throw new UncheckedIOException("edit could not be loaded", this.error);
+          try {
+            wait();
+          }
+          catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        Object value = this.values[index];
+        // Release the reference, the manager keeps the edit.
+        this.values[index] = null;
+        return value;
+      }
+      finally {
+        if (interrupted)
+          Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static class PendingEdit extends UndoRedoManager.DeferredEdit {
+    private final Loader loader;
+    private final int index;
+
+    PendingEdit(Loader loader, int index) {
+      this.loader = loader;
+      this.index = index;
+    }
+
+    @Override
+    Object get() {
+      return this.loader.await(this.index);
+    }
+  }
+
+  private UndoRedoManagerIO() {}
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.events;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class reads the listener methods of a class straight from its class file, without loading it.
+ * The constant pool is walked first and the methods are skipped right away if it does not reference
+ * the {@link SubscribeEvent} descriptor, which is the case of almost every class. Otherwise the
+ * runtime-visible annotations of each method are checked.
+ *
+ * @author Damien Vergnet
+ */
+final class ClassFileReader {
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_INTERFACE = 0x0200;
+  private static final int ACC_ABSTRACT = 0x0400;
+  private static final int ACC_ANNOTATION = 0x2000;
+  private static final int ACC_ENUM = 0x4000;
+  private static final int ACC_MODULE = 0x8000;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+  private static final int CONSTANT_METHOD_TYPE = 16;
+  private static final int CONSTANT_DYNAMIC = 17;
+  private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+  private static final int CONSTANT_MODULE = 19;
+  private static final int CONSTANT_PACKAGE = 20;
+
+  private static final byte[] SUBSCRIBE_EVENT = ("L" + SubscribeEvent.class.getName().replace('.', '/') + ";")
+      .getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ANNOTATIONS_ATTRIBUTE = "RuntimeVisibleAnnotations".getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * Reads the name, super class and listener methods of a class.
+   * 
+   * @param classFile the content of the class file; its position is not modified
+   * @return the class' information
+   * @throws IllegalArgumentException if the buffer does not hold a valid class file
+   */
+  static ClassInfo read(ByteBuffer classFile) {
+    ByteBuffer buffer = classFile.duplicate().order(ByteOrder.BIG_ENDIAN);
+
+    try {
+      return read0(buffer);
+    }
+    catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("truncated class file", e);
+    }
+  }
+
+  private static ClassInfo read0(ByteBuffer buffer) {
+    if (buffer.getInt() != MAGIC)
+      throw new IllegalArgumentException("not a class file");
+    skip(buffer, 4); // Minor and major versions.
+
+    int count = unsignedShort(buffer);
+    // Position of the payload of each constant pool entry, right after its tag.
+    int[] offsets = new int[count];
+    boolean[] subscribe = null;
+
+    for (int i = 1; i < count; i++) {
+      int tag = buffer.get();
+      offsets[i] = buffer.position();
+
+      switch (tag) {
+        case CONSTANT_UTF8:
+          int length = unsignedShort(buffer);
+          if (equals(buffer, buffer.position(), length, SUBSCRIBE_EVENT)) {
+            if (subscribe == null)
+              subscribe = new boolean[count];
+            subscribe[i] = true;
+          }
+          skip(buffer, length);
+          break;
+        case CONSTANT_LONG:
+        case CONSTANT_DOUBLE:
+          skip(buffer, 8);
+          i++; // These entries take two slots.
+          break;
+        case CONSTANT_INTEGER:
+        case CONSTANT_FLOAT:
+        case CONSTANT_FIELDREF:
+        case CONSTANT_METHODREF:
+        case CONSTANT_INTERFACE_METHODREF:
+        case CONSTANT_NAME_AND_TYPE:
+        case CONSTANT_DYNAMIC:
+        case CONSTANT_INVOKE_DYNAMIC:
+          skip(buffer, 4);
+          break;
+        case CONSTANT_METHOD_HANDLE:
+          skip(buffer, 3);
+          break;
+        case CONSTANT_CLASS:
+        case CONSTANT_STRING:
+        case CONSTANT_METHOD_TYPE:
+        case CONSTANT_MODULE:
+        case CONSTANT_PACKAGE:
+          skip(buffer, 2);
+          break;
+        default:
+          throw new IllegalArgumentException("unknown constant pool tag " + tag);
+      }
+    }
+
+    int access = unsignedShort(buffer);
+    String className = className(buffer, offsets, unsignedShort(buffer));
+    int superClass = unsignedShort(buffer);
+    String superName = superClass != 0 ? className(buffer, offsets, superClass) : null;
+    boolean instantiable = (access & ACC_PUBLIC) != 0
+        && (access & (ACC_INTERFACE | ACC_ABSTRACT | ACC_ANNOTATION | ACC_ENUM | ACC_MODULE)) == 0;
+
+    if (subscribe == null || (access & (ACC_INTERFACE | ACC_MODULE)) != 0)
+      return new ClassInfo(className, superName, instantiable, Collections.emptyList());
+    skip(buffer, 2 * unsignedShort(buffer)); // Interfaces.
+
+    int fieldsCount = unsignedShort(buffer);
+    for (int i = 0; i < fieldsCount; i++) {
+      skip(buffer, 6);
+      skipAttributes(buffer);
+    }
+
+    List<String> methods = new ArrayList<>();
+    int methodsCount = unsignedShort(buffer);
+
+    for (int i = 0; i < methodsCount; i++) {
+      int methodAccess = unsignedShort(buffer);
+      int name = unsignedShort(buffer);
+      int descriptor = unsignedShort(buffer);
+      int attributesCount = unsignedShort(buffer);
+      boolean annotated = false;
+
+      for (int j = 0; j < attributesCount; j++) {
+        int attributeName = unsignedShort(buffer);
+        int length = buffer.getInt();
+        int end = buffer.position() + length;
+
+        if (!annotated && (methodAccess & ACC_PUBLIC) != 0 && isUtf8(buffer, offsets, attributeName, ANNOTATIONS_ATTRIBUTE))
+          annotated = hasAnnotation(buffer, subscribe);
+        buffer.position(end);
+      }
+
+      if (annotated)
+        methods.add(utf8(buffer, offsets, name) + utf8(buffer, offsets, descriptor));
+    }
+
+    return new ClassInfo(className, superName, instantiable, methods);
+  }
+
+  /**
+   * Tells if a RuntimeVisibleAnnotations attribute contains one of the given types. The buffer must
+   * be positioned at the start of the attribute's content.
+   */
+  private static boolean hasAnnotation(ByteBuffer buffer, boolean[] types) {
+    int count = unsignedShort(buffer);
+
+    for (int i = 0; i < count; i++) {
+      if (types[unsignedShort(buffer, buffer.position())])
+        return true;
+      skipAnnotation(buffer);
+    }
+
+    return false;
+  }
+
+  private static void skipAnnotation(ByteBuffer buffer) {
+    skip(buffer, 2); // Type.
+    int pairs = unsignedShort(buffer);
+    for (int i = 0; i < pairs; i++) {
+      skip(buffer, 2); // Element name.
+      skipElementValue(buffer);
+    }
+  }
+
+  private static void skipElementValue(ByteBuffer buffer) {
+    char tag = (char) buffer.get();
+
+    switch (tag) {
+      case 'e':
+        skip(buffer, 4);
+        break;
+      case '@':
+        skipAnnotation(buffer);
+        break;
+      case '[':
+        int count = unsignedShort(buffer);
+        for (int i = 0; i < count; i++)
+          skipElementValue(buffer);
+        break;
+      default:
+        skip(buffer, 2);
+    }
+  }
+
+  private static void skipAttributes(ByteBuffer buffer) {
+    int count = unsignedShort(buffer);
+    for (int i = 0; i < count; i++) {
+      skip(buffer, 2);
+      skip(buffer, buffer.getInt());
+    }
+  }
+
+  private static boolean isUtf8(ByteBuffer buffer, int[] offsets, int index, byte[] expected) {
+    int offset = offsets[index];
+    return buffer.get(offset - 1) == CONSTANT_UTF8 && equals(buffer, offset + 2, unsignedShort(buffer, offset), expected);
+  }
+
+  private static boolean equals(ByteBuffer buffer, int offset, int length, byte[] expected) {
+    if (length != expected.length)
+      return false;
+    for (int i = 0; i < length; i++) {
+      if (buffer.get(offset + i) != expected[i])
+        return false;
+    }
+    return true;
+  }
+
+  private static String className(ByteBuffer buffer, int[] offsets, int index) {
+    return utf8(buffer, offsets, unsignedShort(buffer, offsets[index])).replace('/', '.');
+  }
+
+  /**
+   * Decodes a UTF-8 constant. Modified UTF-8 only differs for null and supplementary characters,
+   * which do not appear in names and descriptors of compiled Java code.
+   */
+  private static String utf8(ByteBuffer buffer, int[] offsets, int index) {
+    int offset = offsets[index];
+    if (buffer.get(offset - 1) != CONSTANT_UTF8)
+      throw new IllegalArgumentException("constant " + index + " is not a UTF-8 entry");
+
+    byte[] bytes = new byte[unsignedShort(buffer, offset)];
+    for (int i = 0; i < bytes.length; i++)
+      bytes[i] = buffer.get(offset + 2 + i);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int unsignedShort(ByteBuffer buffer) {
+    return buffer.getShort() & 0xffff;
+  }
+
+  private static int unsignedShort(ByteBuffer buffer, int offset) {
+    return buffer.getShort(offset) & 0xffff;
+  }
+
+  private static void skip(ByteBuffer buffer, int length) {
+    buffer.position(buffer.position() + length);
+  }
+
+  private ClassFileReader() {}
+
+  /**
+   * What is read from a class file.
+   *
+   * @author Damien Vergnet
+   */
+  static final class ClassInfo {
+    /** The binary name of the class. */
+    final String name;
+    /** The binary name of the super class; null for {@code java.lang.Object}. */
+    final String superName;
+    /** True if the class is public and concrete, i.e. it can be instantiated to be registered. */
+    final boolean instantiable;
+    /**
+     * The public annotated methods declared by the class, as their name followed by their descriptor,
+     * like {@code "onEvent(Lcom/example/MyEvent;)V"}.
+     */
+    final List<String> methods;
+
+    ClassInfo(String name, String superName, boolean instantiable, List<String> methods) {
+      this.name = name;
+      this.superName = superName;
+      this.instantiable = instantiable;
+      this.methods = methods;
+    }
+  }
+}
@@ -25,6 +25,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import net.darmo_creations.utils.profiling.StartupProfiler;
+
 /**
  * This class acts as a bus for events inheriting {@link AbstractEvent} class.
  *
@@ -48,27 +50,55 @@ public final class EventsBus {
    * @see SubscribeEvent
    */
   public void register(Object o) {
-    List<Method> methods = new ArrayList<>();
-    Method[] publicMethods = o.getClass().getMethods();
-
-    for (Method m : publicMethods) {
-      if (m.isAnnotationPresent(SubscribeEvent.class)) {
-        Class<?>[] c = m.getParameterTypes();
+    StartupProfiler.Span span = StartupProfiler.begin("EventsBus.register");
+    try {
+      List<Method> methods = new ArrayList<>();
+      Method[] publicMethods = o.getClass().getMethods();
 
-        if (c.length == 1 && AbstractEvent.class.isAssignableFrom(c[0])) {
+      for (Method m : publicMethods) {
+        if (m.isAnnotationPresent(SubscribeEvent.class)) {
+          checkListenerMethod(m);
           methods.add(m);
         }
-        else {
-          String msg = String.format("annotated method '%s' argument does not extend AbstractEvent or has more than 1 argument.",
-              m.getName());
-          throw new RuntimeException(msg);
-        }
       }
+
+      this.listeners.put(o, methods);
+    }
+    finally {
+      span.end();
     }
+  }
 
+  /**
+   * Registers the given methods of an object. They must have been checked by
+   * {@link #checkListenerMethod(Method)} beforehand.
+   * 
+   * @param o the object
+   * @param methods its listener methods
+   */
+  void register(Object o, List<Method> methods) {
     this.listeners.put(o, methods);
   }
 
+  /**
+   * Checks that a method can receive events.
+   * 
+   * @param m the method
+   * @throws RuntimeException if the method does not have a single argument extending AbstractEvent
+   */
+  static void checkListenerMethod(Method m) {
+    Class<?>[] c = m.getParameterTypes();
+
+    if (c.length != 1 || !AbstractEvent.class.isAssignableFrom(c[0]))
+      throw invalidListener(m.getName());
+  }
+
+  static RuntimeException invalidListener(String methodName) {
+    String msg = String.format("annotated method '%s' argument does not extend AbstractEvent or has more than 1 argument.",
+        methodName);
+    return new RuntimeException(msg);
+  }
+
   /**
    * Sends an event onto the bus.
    * 
@@ -0,0 +1,442 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.events;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import net.darmo_creations.utils.JarIndex;
+import net.darmo_creations.utils.JarUtil;
+import net.darmo_creations.utils.files.AtomicFileWriter;
+import net.darmo_creations.utils.files.Durability;
+import net.darmo_creations.utils.files.ExtensionMatcher;
+import net.darmo_creations.utils.files.FileHasher;
+import net.darmo_creations.utils.files.FileWalker;
+import net.darmo_creations.utils.profiling.StartupProfiler;
+
+/**
+ * <p>
+ * A listener index lists the classes having methods annotated by {@link SubscribeEvent}. Class files
+ * are scanned in parallel and parsed directly so no class is loaded during the scan. Once built for a
+ * jar, the index can be cached on disk under the jar's hash so next startups skip the scan.
+ * </p>
+ * Only public concrete classes are indexed. The listener methods they inherit from super classes are
+ * merged in as long as the super classes are among the scanned classes; those of super classes
+ * coming from another jar are not seen. Instances of this class are immutable and thread-safe.
+ *
+ * @author Damien Vergnet
+ */
+public final class ListenerIndex {
+  private static final String HEADER = "# listener index v2";
+  private static final String CACHE_PREFIX = "listeners-";
+  private static final String CACHE_SUFFIX = ".idx";
+
+  /**
+   * Returns the index of the application. If the classes are packed in a jar, the index is loaded
+   * from the given cache directory or built and cached there. If they are in a directory, like when
+   * running in an IDE, it is scanned every time.
+   * 
+   * @param cacheDirectory the cache directory
+   * @return the index
+   * @throws IOException if the classes or the cache could not be read
+   */
+  public static ListenerIndex forApplication(Path cacheDirectory) throws IOException {
+    Path location;
+    try {
+      location = Paths.get(JarUtil.getJar());
+    }
+    catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+
+    if (Files.isDirectory(location))
+      return scanDirectory(location);
+    return load(location, cacheDirectory);
+  }
+
+  /**
+   * Returns the index of a jar. It is read from the cache directory if it has already been built for
+   * this exact jar, otherwise the jar is scanned and the index is cached, replacing the indexes of
+   * other versions of the jar.
+   * 
+   * @param jar the jar
+   * @param cacheDirectory the cache directory
+   * @return the index
+   * @throws IOException if the jar or the cache could not be read
+   */
+  public static ListenerIndex load(Path jar, Path cacheDirectory) throws IOException {
+    StartupProfiler.Span span = StartupProfiler.begin("ListenerIndex.load");
+    try {
+      byte[] hash;
+      try (FileHasher hasher = new FileHasher(FileHasher.DEFAULT_ALGORITHM, 1)) {
+        hash = hasher.hash(jar);
+      }
+      Path cacheFile = cacheDirectory.resolve(getCachePrefix(jar) + toHex(hash) + CACHE_SUFFIX);
+
+      ListenerIndex index = read(cacheFile);
+      if (index == null) {
+        index = scanJar(JarIndex.open(jar));
+        Files.createDirectories(cacheDirectory);
+        deleteCaches(jar, cacheDirectory);
+        index.write(cacheFile);
+      }
+      return index;
+    }
+    finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Scans all class files of a jar.
+   * 
+   * @param jar the jar's index
+   * @return the listener index
+   * @throws IOException if a class file could not be read or is invalid
+   */
+  public static ListenerIndex scanJar(JarIndex jar) throws IOException {
+    StartupProfiler.Span span = StartupProfiler.begin("ListenerIndex.scan");
+    try {
+      Map<String, ClassFileReader.ClassInfo> classes = new ConcurrentHashMap<>();
+
+      try {
+        jar.list("", ".class").parallelStream().forEach(name -> {
+          try {
+            scan(jar.getBuffer(name), name, classes);
+          }
+          catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+      catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+
+      return new ListenerIndex(resolve(classes));
+    }
+    finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Scans all class files of a directory tree.
+   * 
+   * @param root the root directory, holding the default package
+   * @return the listener index
+   * @throws IOException if the tree or a class file could not be read or if one is invalid
+   */
+  public static ListenerIndex scanDirectory(Path root) throws IOException {
+    StartupProfiler.Span span = StartupProfiler.begin("ListenerIndex.scan");
+    try {
+      Map<String, ClassFileReader.ClassInfo> classes = new ConcurrentHashMap<>();
+      ExtensionMatcher matcher = ExtensionMatcher.of("class");
+      FileWalker walker = new FileWalker(root).setFilter((path, attributes) -> attributes.isRegularFile() && matcher.matches(path));
+
+      try {
+        walker.walk(path -> {
+          try {
+            scan(ByteBuffer.wrap(Files.readAllBytes(path)), path.toString(), classes);
+          }
+          catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+      catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+
+      return new ListenerIndex(resolve(classes));
+    }
+    finally {
+      span.end();
+    }
+  }
+
+  private static void scan(ByteBuffer classFile, String name, Map<String, ClassFileReader.ClassInfo> classes) throws IOException {
+    ClassFileReader.ClassInfo info;
+    try {
+      info = ClassFileReader.read(classFile);
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException("invalid class file " + name, e);
+    }
+    classes.put(info.name, info);
+  }
+
+  /**
+   * Merges the listener methods of each instantiable class with those of its scanned super classes.
+   * Methods overridden without the annotation are filtered out at registration.
+   * 
+   * @return the listener methods of each class having any
+   */
+  private static Map<String, List<String>> resolve(Map<String, ClassFileReader.ClassInfo> classes) {
+    Map<String, List<String>> listeners = new HashMap<>();
+
+    for (ClassFileReader.ClassInfo info : classes.values()) {
+      if (!info.instantiable)
+        continue;
+      Set<String> methods = new LinkedHashSet<>();
+      Set<String> visited = new HashSet<>();
+      ClassFileReader.ClassInfo c = info;
+      // Invalid class files may form a cycle.
+      while (c != null && visited.add(c.name)) {
+        methods.addAll(c.methods);
+        c = c.superName != null ? classes.get(c.superName) : null;
+      }
+      if (!methods.isEmpty())
+        listeners.put(info.name, new ArrayList<>(methods));
+    }
+
+    return listeners;
+  }
+
+  /**
+   * Reads a cached index.
+   * 
+   * @return the index or null if the file does not exist or is not an index
+   */
+  private static ListenerIndex read(Path file) throws IOException {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+
+    if (lines.isEmpty() || !lines.get(0).equals(HEADER))
+      return null;
+
+    Map<String, List<String>> classes = new TreeMap<>();
+    for (String line : lines.subList(1, lines.size())) {
+      String[] parts = line.split(" ");
+      if (parts.length < 2)
+        return null;
+      classes.put(parts[0], Arrays.asList(parts).subList(1, parts.length));
+    }
+
+    return new ListenerIndex(classes);
+  }
+
+  private static String getCachePrefix(Path jar) {
+    String name = jar.getFileName().toString();
+    if (name.endsWith(".jar"))
+      name = name.substring(0, name.length() - 4);
+    return CACHE_PREFIX + name + "-";
+  }
+
+  /**
+   * Deletes the indexes cached for previous versions of a jar.
+   */
+  private static void deleteCaches(Path jar, Path directory) throws IOException {
+    String prefix = getCachePrefix(jar);
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + CACHE_SUFFIX)) {
+      for (Path file : stream) {
+        String name = file.getFileName().toString();
+        // Only the hash follows the prefix, other jars may share it (e.g. app.jar and app-extra.jar).
+        if (name.startsWith(prefix) && name.substring(prefix.length(), name.length() - CACHE_SUFFIX.length()).matches("[0-9a-f]+"))
+          Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    char[] digits = "0123456789abcdef".toCharArray();
+    char[] chars = new char[bytes.length * 2];
+
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+      chars[2 * i + 1] = digits[bytes[i] & 0xf];
+    }
+
+    return new String(chars);
+  }
+
+  private final Map<String, List<String>> classes;
+
+  private ListenerIndex(Map<String, List<String>> classes) {
+    Map<String, List<String>> sorted = new TreeMap<>();
+    classes.forEach((name, methods) -> sorted.put(name, Collections.unmodifiableList(new ArrayList<>(methods))));
+    this.classes = Collections.unmodifiableMap(sorted);
+  }
+
+  /**
+   * @return the binary names of the indexed classes, sorted
+   */
+  public Set<String> getClassNames() {
+    return this.classes.keySet();
+  }
+
+  /**
+   * Returns the listener methods of a class, as their name followed by their descriptor, like
+   * {@code "onEvent(Lcom/example/MyEvent;)V"}.
+   * 
+   * @param className the binary name of the class
+   * @return the methods or an empty list if the class is not indexed
+   */
+  public List<String> getMethods(String className) {
+    return this.classes.getOrDefault(className, Collections.emptyList());
+  }
+
+  /**
+   * Instantiates all indexed classes through their public no-argument constructor and registers the
+   * instances on the bus.
+   * 
+   * @param bus the bus
+   * @param loader the class loader used to load the indexed classes
+   * @return the registered instances
+   * @throws RuntimeException if a class or a method could not be found, if a class could not be
+   *           instantiated or if a method does not fulfill the requirements of {@link SubscribeEvent}
+   */
+  public List<Object> registerAll(EventsBus bus, ClassLoader loader) {
+    return registerAll(bus, loader, type -> {
+      try {
+        return type.getConstructor().newInstance();
+      }
+      catch (ReflectiveOperationException e) {
+        throw new RuntimeException("could not instantiate listener " + type.getName(), e);
+      }
+    });
+  }
+
+  /**
+   * Creates an instance of all indexed classes and registers them on the bus. The methods to register
+   * are looked up directly from the index instead of going through all public methods of each class.
+   * 
+   * @param bus the bus
+   * @param loader the class loader used to load the indexed classes
+   * @param factory the function creating the instance of a class; if it returns null, the class is
+   *          not registered
+   * @return the registered instances
+   * @throws RuntimeException if a class or a method could not be found or if a method does not
+   *           fulfill the requirements of {@link SubscribeEvent}
+   */
+  public List<Object> registerAll(EventsBus bus, ClassLoader loader, Function<Class<?>, Object> factory) {
+    StartupProfiler.Span span = StartupProfiler.begin("ListenerIndex.registerAll");
+    try {
+      List<Object> instances = new ArrayList<>();
+
+      for (Map.Entry<String, List<String>> entry : this.classes.entrySet()) {
+        Class<?> type = loadClass(entry.getKey(), loader);
+        Object instance = factory.apply(type);
+        if (instance == null)
+          continue;
+
+        List<Method> methods = new ArrayList<>(entry.getValue().size());
+        for (String method : entry.getValue()) {
+          Method m = getMethod(type, method, loader);
+          if (m != null)
+            methods.add(m);
+        }
+
+        bus.register(instance, methods);
+        instances.add(instance);
+      }
+
+      return instances;
+    }
+    finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Returns the public method of a class matching an indexed method.
+   * 
+   * @return the method or null if it is overridden by a method that is not a listener
+   */
+  private static Method getMethod(Class<?> type, String method, ClassLoader loader) {
+    int start = method.indexOf('(');
+    int end = method.indexOf(')');
+    String name = method.substring(0, start);
+
+    // Only a single object argument is valid.
+    if (method.charAt(start + 1) != 'L' || method.indexOf(';') != end - 1)
+      throw EventsBus.invalidListener(name);
+
+    Class<?> argumentType = loadClass(method.substring(start + 2, end - 1).replace('/', '.'), loader);
+    Method m;
+    try {
+      m = type.getMethod(name, argumentType);
+    }
+    catch (NoSuchMethodException e) {
+      throw new RuntimeException("indexed listener method " + type.getName() + "." + method + " not found", e);
+    }
+    // Like EventsBus.register(Object), which only sees the annotations of the most derived method.
+    if (!m.isAnnotationPresent(SubscribeEvent.class))
+      return null;
+    EventsBus.checkListenerMethod(m);
+
+    return m;
+  }
+
+  private static Class<?> loadClass(String name, ClassLoader loader) {
+    try {
+      return Class.forName(name, true, loader);
+    }
+    catch (ClassNotFoundException e) {
+      throw new RuntimeException("indexed class " + name + " not found", e);
+    }
+  }
+
+  /**
+   * Writes this index atomically to the given file.
+   */
+  private void write(Path file) throws IOException {
+    StringBuilder sb = new StringBuilder(HEADER).append('\n');
+
+    this.classes.forEach((name, methods) -> {
+      sb.append(name);
+      methods.forEach(m -> sb.append(' ').append(m));
+      sb.append('\n');
+    });
+
+    new AtomicFileWriter(Durability.NONE).write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public String toString() {
+    return "ListenerIndex" + this.classes;
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class replaces files atomically. The new content is written to a temporary file next to the
+ * target, forced to the disk depending on the {@link Durability} level, then renamed over the target
+ * with {@link StandardCopyOption#ATOMIC_MOVE}. A crash during the write leaves the original file
+ * untouched.
+ * <p>
+ * Many small files can be written together in a {@link Batch}: all temporary files are written first,
+ * then forced in parallel and renamed. Java offers no way to sync several files in one call, but syncs
+ * issued concurrently overlap and journaling file systems commit them together, so a batch waits for
+ * about one sync instead of one per file. The directory sync of {@link Durability#FULL} is done once
+ * per directory.
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public class AtomicFileWriter {
+  private static final int BUFFER_SIZE = 64 << 10;
+
+  private final Durability durability;
+
+  /**
+   * Creates a writer.
+   * 
+   * @param durability the durability level
+   */
+  public AtomicFileWriter(Durability durability) {
+    this.durability = Objects.requireNonNull(durability);
+  }
+
+  /**
+   * @return the durability level
+   */
+  public Durability getDurability() {
+    return this.durability;
+  }
+
+  /**
+   * Replaces the content of a file.
+   * 
+   * @param target the file
+   * @param data the new content
+   * @throws IOException if an I/O error occurs; the file is left untouched
+   */
+  public void write(Path target, byte[] data) throws IOException {
+    write(target, ByteBuffer.wrap(data));
+  }
+
+  /**
+   * Replaces the content of a file with the remaining bytes of a buffer.
+   * 
+   * @param target the file
+   * @param data the new content
+   * @throws IOException if an I/O error occurs; the file is left untouched
+   */
+  public void write(Path target, ByteBuffer data) throws IOException {
+    try (Batch batch = newBatch()) {
+      batch.add(target, data);
+      batch.commit();
+    }
+  }
+
+  /**
+   * Replaces the content of a file with what the given function writes. The stream is buffered.
+   * 
+   * @param target the file
+   * @param content the function writing the content
+   * @throws IOException if an I/O error occurs; the file is left untouched
+   */
+  public void write(Path target, ContentWriter content) throws IOException {
+    try (Batch batch = newBatch()) {
+      batch.add(target, content);
+      batch.commit();
+    }
+  }
+
+  /**
+   * Starts a batch of writes that are committed together.
+   * 
+   * @return the batch
+   */
+  public Batch newBatch() {
+    return new Batch();
+  }
+
+  /**
+   * Writes the content of a file.
+   *
+   * @author Damien Vergnet
+   */
+  @FunctionalInterface
+  public interface ContentWriter {
+    /**
+     * Writes the content. The stream must not be closed.
+     * 
+     * @param out the stream
+     * @throws IOException if an I/O error occurs
+     */
+    void write(OutputStream out) throws IOException;
+  }
+
+  /**
+   * A batch of files replaced together. Files are written to temporary files as they are added; none
+   * of the targets is modified until {@link #commit()}. Closing a batch that was not committed deletes
+   * the temporary files.
+   *
+   * @author Damien Vergnet
+   */
+  public class Batch implements Closeable {
+    private final List<Path> targets;
+    private final List<Path> temporaryFiles;
+    private final List<FileChannel> channels;
+    private boolean committed;
+
+    private Batch() {
+      this.targets = new ArrayList<>();
+      this.temporaryFiles = new ArrayList<>();
+      this.channels = new ArrayList<>();
+    }
+
+    /**
+     * Adds a file to the batch.
+     * 
+     * @param target the file
+     * @param data the new content
+     * @throws IOException if the temporary file could not be written
+     */
+    public void add(Path target, ByteBuffer data) throws IOException {
+      FileChannel channel = newTemporaryFile(target);
+      while (data.hasRemaining())
+        channel.write(data);
+    }
+
+    /**
+     * Adds a file to the batch.
+     * 
+     * @param target the file
+     * @param content the function writing the new content
+     * @throws IOException if the temporary file could not be written
+     */
+    public void add(Path target, ContentWriter content) throws IOException {
+      FileChannel channel = newTemporaryFile(target);
+      OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+      content.write(out);
+      out.flush();
+    }
+
+    /**
+     * Forces the temporary files to the disk in parallel if needed then renames them over their
+     * targets. With {@link Durability#FULL}, each directory is then forced once for all its files.
+     * 
+     * @throws IOException if an I/O error occurs; targets that were already renamed keep their new
+     *           content, the others are left untouched
+     */
+    public void commit() throws IOException {
+      if (this.committed)
+        throw new IllegalStateException("batch already committed");
+      this.committed = true;
+
+      try {
+        if (AtomicFileWriter.this.durability != Durability.NONE)
+          forceAll(this.channels);
+        for (FileChannel channel : this.channels)
+          channel.close();
+
+        Set<Path> directories = new LinkedHashSet<>();
+        for (int i = 0; i < this.targets.size(); i++) {
+          Path target = this.targets.get(i);
+          Files.move(this.temporaryFiles.get(i), target, StandardCopyOption.ATOMIC_MOVE);
+          directories.add(target.toAbsolutePath().getParent());
+        }
+        this.temporaryFiles.clear();
+
+        if (AtomicFileWriter.this.durability == Durability.FULL) {
+          for (Path directory : directories)
+            forceDirectory(directory);
+        }
+      }
+      finally {
+        close();
+      }
+    }
+
+    /**
+     * Deletes the remaining temporary files.
+     */
+    @Override
+    public void close() throws IOException {
+      IOException error = null;
+      for (FileChannel channel : this.channels) {
+        try {
+          channel.close();
+        }
+        catch (IOException e) {
+          error = e;
+        }
+      }
+      this.channels.clear();
+      for (Path file : this.temporaryFiles) {
+        try {
+          Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+          error = e;
+        }
+      }
+      this.temporaryFiles.clear();
+      if (error != null)
+        throw error;
+    }
+
+    /**
+     * Creates a temporary file next to the target. It gets the target's permissions if it exists. The
+     * returned channel is closed by the batch.
+     */
+    FileChannel newTemporaryFile(Path target) throws IOException {
+      if (this.committed)
+        throw new IllegalStateException("batch already committed");
+
+      Path absolute = target.toAbsolutePath();
+      String name = "." + absolute.getFileName() + ".";
+      while (true) {
+        Path file = absolute.resolveSibling(name + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        FileChannel channel;
+        try {
+          channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+        }
+        catch (FileAlreadyExistsException e) {
+          continue;
+        }
+
+        this.targets.add(target);
+        this.temporaryFiles.add(file);
+        this.channels.add(channel);
+        try {
+          Files.setPosixFilePermissions(file, Files.getPosixFilePermissions(target));
+        }
+        catch (UnsupportedOperationException | NoSuchFileException e) {
+          // Not a POSIX file system or new file
+        }
+        return channel;
+      }
+    }
+  }
+
+  /**
+   * Forces files to the disk, in parallel when there are several.
+   */
+  private static void forceAll(List<FileChannel> channels) throws IOException {
+    if (channels.size() == 1) {
+      channels.get(0).force(true);
+      return;
+    }
+
+    try {
+      channels.parallelStream().forEach(channel -> {
+        try {
+          channel.force(true);
+        }
+        catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Forces a directory entry to the disk. Some platforms cannot open directories, they are ignored.
+   */
+  private static void forceDirectory(Path directory) throws IOException {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+    catch (AccessDeniedException e) {
+      // Windows does not allow opening directories
+    }
+  }
+}
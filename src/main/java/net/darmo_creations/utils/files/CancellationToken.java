@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+/**
+ * A cancellation token lets a thread ask a long running file operation to stop. Operations check the
+ * token between units of work (directory entries, buffers, files) and return early once it has been
+ * cancelled.
+ *
+ * @author Damien Vergnet
+ */
+public final class CancellationToken {
+  private volatile boolean cancelled;
+
+  /**
+   * Requests the cancellation of the operations using this token.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * @return true if the token has been cancelled
+   */
+  public boolean isCancelled() {
+    return this.cancelled;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct byte buffers of a fixed size. Direct buffers are expensive to allocate and are
+ * only freed by the garbage collector, so I/O helpers borrow them from a pool instead. This class is
+ * thread-safe.
+ *
+ * @author Damien Vergnet
+ */
+public final class DirectBufferPool {
+  private final int bufferSize;
+  private final int capacity;
+  private final Queue<ByteBuffer> buffers;
+  private final AtomicInteger pooled;
+
+  /**
+   * Creates a pool.
+   * 
+   * @param bufferSize the size of the buffers
+   * @param capacity the maximum number of idle buffers kept in the pool
+   */
+  public DirectBufferPool(int bufferSize, int capacity) {
+    if (bufferSize <= 0)
+      throw new IllegalArgumentException("buffer size must be positive");
+    if (capacity < 0)
+      throw new IllegalArgumentException("negative capacity");
+    this.bufferSize = bufferSize;
+    this.capacity = capacity;
+    this.buffers = new ConcurrentLinkedQueue<>();
+    this.pooled = new AtomicInteger();
+  }
+
+  /**
+   * @return the size of the buffers
+   */
+  public int getBufferSize() {
+    return this.bufferSize;
+  }
+
+  /**
+   * Returns a cleared buffer, allocating one if the pool is empty.
+   * 
+   * @return the buffer
+   */
+  public ByteBuffer acquire() {
+    ByteBuffer buffer = this.buffers.poll();
+    if (buffer == null)
+      return ByteBuffer.allocateDirect(this.bufferSize);
+    this.pooled.decrementAndGet();
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Gives a buffer back to the pool. It must not be used afterwards. Buffers that were not acquired
+   * from this pool or that would exceed its capacity are dropped.
+   * 
+   * @param buffer the buffer
+   */
+  public void release(ByteBuffer buffer) {
+    if (!buffer.isDirect() || buffer.capacity() != this.bufferSize)
+      return;
+    if (this.pooled.incrementAndGet() <= this.capacity)
+      this.buffers.offer(buffer);
+    else
+      this.pooled.decrementAndGet();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+import net.darmo_creations.utils.events.AbstractEvent;
+
+/**
+ * This event is fired by a {@link DirectoryWatcher} when files have changed. Changes are
+ * consolidated: a file created then modified is only listed as created, a file created then deleted
+ * is not listed at all.
+ *
+ * @author Damien Vergnet
+ */
+public class DirectoryChangedEvent extends AbstractEvent {
+  private final Path directory;
+  private final Set<Path> created, modified, deleted;
+
+  /**
+   * Creates an event.
+   * 
+   * @param directory the watched directory
+   * @param created the created paths
+   * @param modified the modified paths
+   * @param deleted the deleted paths
+   */
+  public DirectoryChangedEvent(Path directory, Set<Path> created, Set<Path> modified, Set<Path> deleted) {
+    super(false);
+    this.directory = directory;
+    this.created = Collections.unmodifiableSet(created);
+    this.modified = Collections.unmodifiableSet(modified);
+    this.deleted = Collections.unmodifiableSet(deleted);
+  }
+
+  /**
+   * @return the watched directory
+   */
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  public Set<Path> getCreated() {
+    return this.created;
+  }
+
+  public Set<Path> getModified() {
+    return this.modified;
+  }
+
+  public Set<Path> getDeleted() {
+    return this.deleted;
+  }
+}
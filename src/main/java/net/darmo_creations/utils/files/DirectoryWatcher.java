@@ -0,0 +1,392 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import net.darmo_creations.utils.events.EventsBus;
+
+/**
+ * This class watches a directory tree and dispatches a {@link DirectoryChangedEvent} on an
+ * {@link EventsBus} when files are created, modified or deleted. Subdirectories are registered as
+ * they appear.
+ * <p>
+ * Events are debounced per path: a path is reported once it has not changed for a while. The watcher
+ * keeps the size and modification time of each file and compares them with the file system when a
+ * path is reported, so bursts of events are consolidated into a single change. When the watch service
+ * loses events ({@link StandardWatchEventKinds#OVERFLOW}), only the affected directory is rescanned.
+ * </p>
+ * <p>
+ * Events are dispatched on the watcher thread by default. As {@link EventsBus} is not thread-safe,
+ * Swing applications should provide an executor such as {@code SwingUtilities::invokeLater}.
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public class DirectoryWatcher implements Closeable {
+  /** The default debounce delay in milliseconds. */
+  public static final long DEFAULT_DELAY = 200;
+
+  private final Path root;
+  private final EventsBus bus;
+  private final WatchService watchService;
+  /** Watched directories; only accessed by the watcher thread once started. */
+  private final Map<WatchKey, Path> directories;
+  private final Set<Path> watchedDirectories;
+  /** Known files and directories; only accessed by the watcher thread once started. */
+  private final Map<Path, FileState> snapshot;
+  private Executor executor;
+  private long delay;
+  private Predicate<Path> filter;
+  private Thread thread;
+
+  /**
+   * Creates a watcher and registers the whole tree. Events are dispatched on the watcher thread.
+   * 
+   * @param root the root of the tree
+   * @param bus the bus on which events are dispatched
+   * @throws IOException if the root cannot be watched
+   */
+  public DirectoryWatcher(Path root, EventsBus bus) throws IOException {
+    if (!Files.isDirectory(root))
+      throw new IOException(root + " is not a directory");
+    this.root = root;
+    this.bus = Objects.requireNonNull(bus);
+    this.watchService = root.getFileSystem().newWatchService();
+    this.directories = new HashMap<>();
+    this.watchedDirectories = new HashSet<>();
+    this.snapshot = new HashMap<>();
+    this.executor = Runnable::run;
+    this.delay = DEFAULT_DELAY;
+    this.filter = path -> true;
+    try {
+      scan(root, null);
+    }
+    catch (IOException | RuntimeException e) {
+      try {
+        this.watchService.close();
+      }
+      catch (IOException e1) {
+        e.addSuppressed(e1);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Sets the executor used to dispatch events. Must be called before {@link #start()}.
+   * 
+   * @param executor the executor
+   * @return this watcher
+   */
+  public DirectoryWatcher setExecutor(Executor executor) {
+    this.executor = Objects.requireNonNull(executor);
+    return this;
+  }
+
+  /**
+   * Sets the debounce delay. Must be called before {@link #start()}.
+   * 
+   * @param delay the delay in milliseconds
+   * @return this watcher
+   */
+  public DirectoryWatcher setDelay(long delay) {
+    if (delay < 0)
+      throw new IllegalArgumentException("negative delay " + delay);
+    this.delay = delay;
+    return this;
+  }
+
+  /**
+   * Sets the filter of the reported paths, e.g. an {@link ExtensionMatcher}. Directories are watched
+   * whatever it returns. Must be called before {@link #start()}.
+   * 
+   * @param filter the filter
+   * @return this watcher
+   */
+  public DirectoryWatcher setFilter(Predicate<Path> filter) {
+    this.filter = Objects.requireNonNull(filter);
+    return this;
+  }
+
+  /**
+   * Starts watching in a daemon thread.
+   * 
+   * @return this watcher
+   * @throws IllegalStateException if this watcher has already been started
+   */
+  public synchronized DirectoryWatcher start() {
+    if (this.thread != null)
+      throw new IllegalStateException("watcher already started");
+    this.thread = new Thread(this::run, "directory-watcher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+    return this;
+  }
+
+  /**
+   * Stops watching.
+   */
+  @Override
+  public void close() throws IOException {
+    this.watchService.close();
+  }
+
+  private void run() {
+    // Changed paths and the time when they should be reported.
+    Map<Path, Long> pending = new HashMap<>();
+
+    try {
+      while (true) {
+        WatchKey key;
+        if (pending.isEmpty()) {
+          key = this.watchService.take();
+        }
+        else {
+          long next = pending.values().stream().min(Long::compare).get();
+          key = this.watchService.poll(Math.max(0, next - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        if (key != null) {
+          handleEvents(key, pending);
+          if (!key.reset())
+            this.watchedDirectories.remove(this.directories.remove(key));
+        }
+
+        long now = System.nanoTime();
+        List<Path> due = new ArrayList<>();
+        for (Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator(); it.hasNext();) {
+          Map.Entry<Path, Long> entry = it.next();
+          if (entry.getValue() - now <= 0) {
+            it.remove();
+            due.add(entry.getKey());
+          }
+        }
+        if (!due.isEmpty())
+          report(due);
+      }
+    }
+    catch (InterruptedException | ClosedWatchServiceException ex) {
+      // Watcher closed.
+    }
+  }
+
+  private void handleEvents(WatchKey key, Map<Path, Long> pending) {
+    Path directory = this.directories.get(key);
+    if (directory == null) {
+      key.pollEvents();
+      return;
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.delay);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        // Events were lost, compare the directory's subtree with the snapshot.
+        Set<Path> changed = new HashSet<>();
+        for (Path path : this.snapshot.keySet()) {
+          if (path.startsWith(directory) && !path.equals(directory))
+            changed.add(path);
+        }
+        tryScan(directory, changed);
+        changed.forEach(path -> pending.put(path, deadline));
+      }
+      else {
+        Path path = directory.resolve((Path) event.context());
+        pending.put(path, deadline);
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+          // The directory may replace a deleted one that was not reported yet.
+          forgetDirectories(path);
+          // Files may have been created before the directory was registered.
+          Set<Path> created = new HashSet<>();
+          tryScan(path, created);
+          created.forEach(p -> pending.put(p, deadline));
+        }
+      }
+    }
+  }
+
+  /**
+   * Registers the directories of a subtree that are not watched yet.
+   * 
+   * @param directory the root of the subtree
+   * @param found if not null, all paths of the subtree are added to it; otherwise they are added to
+   *          the snapshot
+   * @throws IOException if a directory could not be registered
+   */
+  private void scan(Path directory, Set<Path> found) throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        if (!DirectoryWatcher.this.watchedDirectories.contains(dir)) {
+          WatchKey key = dir.register(DirectoryWatcher.this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+          DirectoryWatcher.this.directories.put(key, dir);
+          DirectoryWatcher.this.watchedDirectories.add(dir);
+        }
+        visit(dir, attrs);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        visit(file, attrs);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        return FileVisitResult.CONTINUE;
+      }
+
+      private void visit(Path path, BasicFileAttributes attrs) {
+        if (found == null)
+          DirectoryWatcher.this.snapshot.put(path, new FileState(attrs));
+        else if (!path.equals(directory))
+          found.add(path);
+      }
+    });
+  }
+
+  /**
+   * Cancels the watch keys of a subtree so that its directories are registered again if they are
+   * recreated.
+   */
+  private void forgetDirectories(Path directory) {
+    this.watchedDirectories.removeIf(path -> path.startsWith(directory));
+    for (Iterator<Map.Entry<WatchKey, Path>> it = this.directories.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<WatchKey, Path> entry = it.next();
+      if (entry.getValue().startsWith(directory)) {
+        entry.getKey().cancel();
+        it.remove();
+      }
+    }
+  }
+
+  private void tryScan(Path directory, Set<Path> found) {
+    try {
+      scan(directory, found);
+    }
+    catch (IOException ex) {
+      // Directory deleted in the meantime, its deletion will be reported.
+    }
+  }
+
+  /**
+   * Compares the given paths with the snapshot, updates it and dispatches the changes.
+   */
+  private void report(List<Path> paths) {
+    Set<Path> created = new HashSet<>();
+    Set<Path> modified = new HashSet<>();
+    Set<Path> deleted = new HashSet<>();
+
+    for (Path path : paths) {
+      FileState oldState = this.snapshot.get(path);
+      FileState newState;
+      try {
+        newState = new FileState(Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+      }
+      catch (IOException ex) {
+        newState = null;
+      }
+
+      if (newState != null) {
+        this.snapshot.put(path, newState);
+        if (oldState == null)
+          created.add(path);
+        else if (!newState.directory && !newState.equals(oldState))
+          modified.add(path);
+      }
+      else if (oldState != null) {
+        this.snapshot.remove(path);
+        deleted.add(path);
+        if (oldState.directory) {
+          for (Iterator<Path> it = this.snapshot.keySet().iterator(); it.hasNext();) {
+            Path p = it.next();
+            if (p.startsWith(path)) {
+              it.remove();
+              deleted.add(p);
+            }
+          }
+          forgetDirectories(path);
+        }
+      }
+    }
+
+    created.removeIf(this.filter.negate());
+    modified.removeIf(this.filter.negate());
+    deleted.removeIf(this.filter.negate());
+    if (!created.isEmpty() || !modified.isEmpty() || !deleted.isEmpty()) {
+      DirectoryChangedEvent event = new DirectoryChangedEvent(this.root, created, modified, deleted);
+      this.executor.execute(() -> this.bus.dispatchEvent(event));
+    }
+  }
+
+  /**
+   * The attributes of a file used to detect modifications.
+   *
+   * @author Damien Vergnet
+   */
+  private static class FileState {
+    final boolean directory;
+    final long size;
+    final long modified;
+
+    FileState(BasicFileAttributes attributes) {
+      this.directory = attributes.isDirectory();
+      this.size = attributes.size();
+      this.modified = attributes.lastModifiedTime().toMillis();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof FileState))
+        return false;
+      FileState state = (FileState) o;
+      return this.directory == state.directory && this.size == state.size && this.modified == state.modified;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.directory, this.size, this.modified);
+    }
+  }
+}
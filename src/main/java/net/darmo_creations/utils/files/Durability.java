@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+/**
+ * Durability levels of {@link AtomicFileWriter}. Whatever the level, readers see either the old or
+ * the new content of a file, never a mix of both; higher levels also survive power failures at the
+ * cost of latency.
+ *
+ * @author Damien Vergnet
+ */
+public enum Durability {
+  /**
+   * Nothing is forced to the disk. Files survive a crash of the application but may be lost or empty
+   * after a power failure.
+   */
+  NONE,
+  /**
+   * The new content is forced to the disk before it replaces the old one. After a power failure, the
+   * file holds either the old or the new content.
+   */
+  CONTENT,
+  /**
+   * The content and the directory entry are forced to the disk. Once the write returns, the new
+   * content survives a power failure.
+   */
+  FULL;
+}
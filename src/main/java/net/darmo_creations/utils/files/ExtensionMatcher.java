@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+import net.darmo_creations.utils.FilesUtil;
+
+/**
+ * An extension matcher checks a file name against a set of extensions in a single pass, ignoring
+ * case. Extensions are stored in an open-addressing hash table so matching neither accesses the file
+ * system nor allocates anything. Instances are immutable and thread-safe.
+ *
+ * @author Damien Vergnet
+ */
+public final class ExtensionMatcher implements Predicate<Path>, DirectoryStream.Filter<Path> {
+  /**
+   * Compiles a matcher for the given extensions. An extension is what follows the last dot of a file
+   * name so they must not contain dots.
+   * 
+   * @param extensions the accepted extensions
+   * @return the matcher
+   */
+  public static ExtensionMatcher of(String... extensions) {
+    return of(Arrays.asList(extensions));
+  }
+
+  /**
+   * Compiles a matcher for the given extensions. An extension is what follows the last dot of a file
+   * name so they must not contain dots.
+   * 
+   * @param extensions the accepted extensions
+   * @return the matcher
+   */
+  public static ExtensionMatcher of(Collection<String> extensions) {
+    return new ExtensionMatcher(extensions);
+  }
+
+  /** Case-folded extensions; null for empty slots. */
+  private final char[][] table;
+  private final int mask;
+  private final int maxLength;
+
+  private ExtensionMatcher(Collection<String> extensions) {
+    int capacity = Integer.highestOneBit(Math.max(1, extensions.size()) * 2 - 1) << 1;
+    this.table = new char[capacity][];
+    this.mask = capacity - 1;
+    int max = 0;
+
+    for (String ext : extensions) {
+      char[] folded = new char[ext.length()];
+      for (int i = 0; i < folded.length; i++)
+        folded[i] = fold(ext.charAt(i));
+      int h = hash(folded) & this.mask;
+      while (this.table[h] != null && !Arrays.equals(this.table[h], folded))
+        h = (h + 1) & this.mask;
+      this.table[h] = folded;
+      max = Math.max(max, folded.length);
+    }
+    this.maxLength = max;
+  }
+
+  /**
+   * Tells if the given file name or path has one of the extensions.
+   * 
+   * @param name the file name or path
+   * @return true if the extension matches
+   */
+  public boolean matches(CharSequence name) {
+    int start = FilesUtil.getExtensionIndex(name);
+    if (start < 0)
+      return false;
+    int length = name.length() - start;
+    if (length > this.maxLength)
+      return false;
+
+    int h = 0;
+    for (int i = start; i < name.length(); i++)
+      h = 31 * h + fold(name.charAt(i));
+    for (h = mix(h) & this.mask; this.table[h] != null; h = (h + 1) & this.mask) {
+      char[] ext = this.table[h];
+      if (ext.length == length && regionMatches(ext, name, start))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Tells if the given path has one of the extensions.
+   * 
+   * @param path the path
+   * @return true if the extension matches
+   */
+  public boolean matches(Path path) {
+    return matches(path.toString());
+  }
+
+  @Override
+  public boolean test(Path path) {
+    return matches(path);
+  }
+
+  @Override
+  public boolean accept(Path path) {
+    return matches(path);
+  }
+
+  private static boolean regionMatches(char[] ext, CharSequence name, int start) {
+    for (int i = 0; i < ext.length; i++) {
+      if (ext[i] != fold(name.charAt(start + i)))
+        return false;
+    }
+    return true;
+  }
+
+  private static int hash(char[] chars) {
+    int h = 0;
+    for (char c : chars)
+      h = 31 * h + c;
+    return mix(h);
+  }
+
+  private static int mix(int h) {
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Folds the case of a character the same way {@link String#equalsIgnoreCase(String)} compares them.
+   */
+  private static char fold(char c) {
+    if (c < 128)
+      return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class hashes files and finds duplicates. Files are hashed on a bounded pool of threads so that
+ * the disk is not thrashed; large files are memory-mapped, small ones read through pooled direct
+ * buffers. Hashes are kept in a bounded LRU cache by path and recomputed only when the size or the
+ * modification time of a file changes, so keep the same instance to avoid rehashing files on later
+ * calls.
+ * <p>
+ * This class is thread-safe. It must be closed to stop its threads.
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public class FileHasher implements Closeable {
+  /** The default hash algorithm. */
+  public static final String DEFAULT_ALGORITHM = "SHA-256";
+  /** The default maximum number of paths kept in the cache. */
+  public static final int DEFAULT_CACHE_SIZE = 4096;
+
+  /** Files at least this large are memory-mapped. */
+  private static final long MAP_THRESHOLD = 1 << 20;
+  private static final long MAP_SIZE = 64 << 20;
+  private static final DirectBufferPool BUFFERS = new DirectBufferPool(256 << 10, 8);
+
+  private final String algorithm;
+  private final ExecutorService executor;
+  private final Map<Path, CachedHash> cache;
+
+  /**
+   * Creates a hasher using {@link #DEFAULT_ALGORITHM} and at most 4 threads.
+   */
+  public FileHasher() {
+    this(DEFAULT_ALGORITHM, Math.min(4, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Creates a hasher with a cache of {@link #DEFAULT_CACHE_SIZE} paths.
+   * 
+   * @param algorithm the name of the {@link MessageDigest} algorithm
+   * @param parallelism the maximum number of files hashed at the same time
+   * @throws IllegalArgumentException if the algorithm is not available
+   */
+  public FileHasher(String algorithm, int parallelism) {
+    this(algorithm, parallelism, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a hasher.
+   * 
+   * @param algorithm the name of the {@link MessageDigest} algorithm
+   * @param parallelism the maximum number of files hashed at the same time
+   * @param cacheSize the maximum number of paths kept in the cache
+   * @throws IllegalArgumentException if the algorithm is not available or the cache size is not
+   *           positive
+   */
+  public FileHasher(String algorithm, int parallelism, int cacheSize) {
+    if (cacheSize <= 0)
+      throw new IllegalArgumentException("size must be positive");
+    try {
+      MessageDigest.getInstance(algorithm);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException(e);
+    }
+    this.algorithm = algorithm;
+    this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "FileHasher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.cache = new LinkedHashMap<Path, CachedHash>(16, 0.75f, true) {
+      private static final long serialVersionUID = -3473165424436541718L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Path, CachedHash> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Hashes a file in the calling thread.
+   * 
+   * @param file the file
+   * @return the hash
+   * @throws IOException if the file could not be read
+   */
+  public byte[] hash(Path file) throws IOException {
+    return hash(file, Files.readAttributes(file, BasicFileAttributes.class)).clone();
+  }
+
+  /**
+   * Hashes several files in parallel.
+   * 
+   * @param files the files
+   * @return the hash of each file, in the order of the collection
+   * @throws IOException if a file could not be read
+   */
+  public Map<Path, byte[]> hashAll(Collection<Path> files) throws IOException {
+    Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+    for (Path file : files)
+      attributes.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+
+    Map<Path, byte[]> hashes = new LinkedHashMap<>();
+    for (Map.Entry<Path, ByteBuffer> e : hashAll(attributes, false).entrySet())
+      hashes.put(e.getKey(), e.getValue().array().clone());
+    return hashes;
+  }
+
+  /**
+   * Finds the files that have the same content. Files are first grouped by size and only those
+   * sharing their size with another file are hashed. Directories and other special files are ignored,
+   * as well as missing files, like dangling links or files deleted during the search.
+   * 
+   * @param files the files
+   * @return the groups of identical files, in the order of the collection; files without duplicates
+   *         are not included
+   * @throws IOException if a file could not be read
+   */
+  public List<List<Path>> findDuplicates(Collection<Path> files) throws IOException {
+    Map<Long, List<Path>> bySize = new LinkedHashMap<>();
+    Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+    for (Path file : files) {
+      BasicFileAttributes attrs;
+      try {
+        attrs = Files.readAttributes(file, BasicFileAttributes.class);
+      }
+      catch (NoSuchFileException e) {
+        continue;
+      }
+      if (attrs.isRegularFile() && attributes.putIfAbsent(file, attrs) == null)
+        bySize.computeIfAbsent(attrs.size(), size -> new ArrayList<>()).add(file);
+    }
+
+    Map<Path, BasicFileAttributes> candidates = new LinkedHashMap<>();
+    for (List<Path> group : bySize.values()) {
+      if (group.size() > 1)
+        group.forEach(file -> candidates.put(file, attributes.get(file)));
+    }
+
+    // Hashes are wrapped in byte buffers as they compare by content
+    Map<ByteBuffer, List<Path>> byHash = new LinkedHashMap<>();
+    for (Map.Entry<Path, ByteBuffer> e : hashAll(candidates, true).entrySet())
+      byHash.computeIfAbsent(e.getValue(), hash -> new ArrayList<>()).add(e.getKey());
+
+    List<List<Path>> duplicates = new ArrayList<>();
+    for (List<Path> group : byHash.values()) {
+      if (group.size() > 1)
+        duplicates.add(group);
+    }
+    return duplicates;
+  }
+
+  /**
+   * Empties the cache.
+   */
+  public void clearCache() {
+    synchronized (this.cache) {
+      this.cache.clear();
+    }
+  }
+
+  /**
+   * Stops the threads. Running hashes are completed.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdown();
+  }
+
+  /**
+   * Hashes files on the pool.
+   * 
+   * @param skipMissing if true, files that no longer exist are left out instead of failing
+   */
+  private Map<Path, ByteBuffer> hashAll(Map<Path, BasicFileAttributes> files, boolean skipMissing) throws IOException {
+    Map<Path, Future<byte[]>> futures = new LinkedHashMap<>();
+    for (Map.Entry<Path, BasicFileAttributes> e : files.entrySet()) {
+      futures.put(e.getKey(), this.executor.submit(() -> {
+        try {
+          return hash(e.getKey(), e.getValue());
+        }
+        catch (NoSuchFileException ex) {
+          if (skipMissing)
+            return null;
+          throw ex;
+        }
+      }));
+    }
+
+    Map<Path, ByteBuffer> hashes = new LinkedHashMap<>();
+    try {
+      for (Map.Entry<Path, Future<byte[]>> e : futures.entrySet()) {
+        byte[] hash = e.getValue().get();
+        if (hash != null)
+          hashes.put(e.getKey(), ByteBuffer.wrap(hash));
+      }
+    }
+    catch (ExecutionException e) {
+      futures.values().forEach(future -> future.cancel(false));
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      throw new IOException(e.getCause());
+    }
+    catch (InterruptedException e) {
+      futures.values().forEach(future -> future.cancel(false));
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted", e);
+    }
+    return hashes;
+  }
+
+  /**
+   * Returns the cached hash of a file or computes it. The returned array must not be modified.
+   */
+  private byte[] hash(Path file, BasicFileAttributes attributes) throws IOException {
+    long size = attributes.size();
+    long modified = attributes.lastModifiedTime().toMillis();
+    CachedHash cached;
+    synchronized (this.cache) {
+      cached = this.cache.get(file);
+    }
+    if (cached != null && cached.size == size && cached.modified == modified)
+      return cached.hash;
+
+    byte[] hash = compute(file, size);
+    synchronized (this.cache) {
+      this.cache.put(file, new CachedHash(size, modified, hash));
+    }
+    return hash;
+  }
+
+  private byte[] compute(Path file, long size) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(this.algorithm);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (size >= MAP_THRESHOLD) {
+        for (long position = 0; position < size; position += MAP_SIZE)
+          digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position)));
+      }
+      else {
+        ByteBuffer buffer = BUFFERS.acquire();
+        try {
+          while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+          }
+        }
+        finally {
+          BUFFERS.release(buffer);
+        }
+      }
+    }
+    return digest.digest();
+  }
+
+  /**
+   * A hash along with the attributes of the file it was computed for.
+   *
+   * @author Damien Vergnet
+   */
+  private static class CachedHash {
+    final long size;
+    final long modified;
+    final byte[] hash;
+
+    CachedHash(long size, long modified, byte[] hash) {
+      this.size = size;
+      this.modified = modified;
+      this.hash = hash;
+    }
+  }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.darmo_creations.utils.Nullable;
+
+/**
+ * This class copies, moves and concatenates files. Data is moved with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} and
+ * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)} so that the kernel can copy it
+ * without going through the Java heap; pooled direct buffers are used when a transfer makes no
+ * progress. Transfers are split into chunks so that progress can be reported and cancellation
+ * noticed.
+ * <p>
+ * A cancelled operation throws a {@link CancellationException}. A failed or cancelled operation deletes
+ * the file it created. Existing files that are replaced are written through {@link AtomicFileWriter}:
+ * the new content goes to a temporary file renamed over the target only once complete, so the original
+ * file is left untouched on failure. Instances are thread-safe once configured.
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public class FileTransfer {
+  /** The default minimum delay between two progress notifications in milliseconds. */
+  public static final long DEFAULT_PROGRESS_INTERVAL = 100;
+  /** Files up to this size are copied in parallel by {@link #copyAll(Map)}. */
+  public static final long SMALL_FILE_SIZE = 1 << 20;
+
+  private static final long CHUNK_SIZE = 8 << 20;
+  private static final DirectBufferPool DEFAULT_BUFFERS = new DirectBufferPool(64 << 10, 16);
+
+  private ProgressListener listener;
+  private long progressInterval;
+  private CancellationToken token;
+  private DirectBufferPool buffers;
+  private ForkJoinPool pool;
+  private boolean replaceExisting;
+
+  /**
+   * Creates a file transfer that reports no progress and does not replace existing files.
+   */
+  public FileTransfer() {
+    this.progressInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_PROGRESS_INTERVAL);
+    this.token = new CancellationToken();
+    this.buffers = DEFAULT_BUFFERS;
+    this.pool = ForkJoinPool.commonPool();
+  }
+
+  /**
+   * Sets the progress listener.
+   * 
+   * @param listener the listener or null
+   * @return this object
+   */
+  public FileTransfer setProgressListener(@Nullable ProgressListener listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  /**
+   * Sets the minimum delay between two progress notifications. The last one is always sent.
+   * 
+   * @param interval the delay in milliseconds
+   * @return this object
+   */
+  public FileTransfer setProgressInterval(long interval) {
+    this.progressInterval = TimeUnit.MILLISECONDS.toNanos(interval);
+    return this;
+  }
+
+  /**
+   * Sets the token that cancels the operations.
+   * 
+   * @param token the token
+   * @return this object
+   */
+  public FileTransfer setCancellationToken(CancellationToken token) {
+    this.token = Objects.requireNonNull(token);
+    return this;
+  }
+
+  /**
+   * Sets the pool of buffers used when channels cannot transfer data directly.
+   * 
+   * @param buffers the pool
+   * @return this object
+   */
+  public FileTransfer setBufferPool(DirectBufferPool buffers) {
+    this.buffers = Objects.requireNonNull(buffers);
+    return this;
+  }
+
+  /**
+   * Sets the pool used by {@link #copyAll(Map)}. Defaults to the common pool.
+   * 
+   * @param pool the pool
+   * @return this object
+   */
+  public FileTransfer setPool(ForkJoinPool pool) {
+    this.pool = Objects.requireNonNull(pool);
+    return this;
+  }
+
+  /**
+   * Sets whether existing target files are replaced. Defaults to false.
+   * 
+   * @param replaceExisting true to replace existing files
+   * @return this object
+   */
+  public FileTransfer setReplaceExisting(boolean replaceExisting) {
+    this.replaceExisting = replaceExisting;
+    return this;
+  }
+
+  /**
+   * Copies a file.
+   * 
+   * @param source the file to copy
+   * @param target the copy
+   * @return the number of bytes copied
+   * @throws IOException if an I/O error occurs
+   * @throws CancellationException if the operation was cancelled
+   */
+  public long copy(Path source, Path target) throws IOException {
+    Progress progress = new Progress(Files.size(source));
+    copy(source, target, progress);
+    progress.finish();
+    return progress.done.get();
+  }
+
+  /**
+   * Copies the content of a stream into a file. The stream is not closed.
+   * 
+   * @param in the stream
+   * @param target the file
+   * @param size the number of bytes expected, for progress reporting; -1 if unknown
+   * @return the number of bytes copied
+   * @throws IOException if an I/O error occurs
+   * @throws CancellationException if the operation was cancelled
+   */
+  public long copy(InputStream in, Path target, long size) throws IOException {
+    Progress progress = new Progress(size);
+    ReadableByteChannel channel = Channels.newChannel(in);
+
+    write(target, out -> {
+      long position = 0, n;
+      do {
+        checkCancelled();
+        n = out.transferFrom(channel, position, CHUNK_SIZE);
+        position += n;
+        progress.add(n);
+      } while (n > 0);
+    });
+
+    progress.finish();
+    return progress.done.get();
+  }
+
+  /**
+   * Moves a file. The file is renamed if possible; otherwise it is copied then deleted. When existing
+   * files are not replaced, the file is hard-linked to the target then unlinked from the source, as a
+   * rename may overwrite the target; the link fails if the target exists, even if it is created
+   * concurrently.
+   * 
+   * @param source the file to move
+   * @param target the new path
+   * @return the number of bytes copied, 0 if the file was renamed
+   * @throws IOException if an I/O error occurs
+   * @throws CancellationException if the operation was cancelled
+   */
+  public long move(Path source, Path target) throws IOException {
+    if (!this.replaceExisting)
+      return link(source, target);
+
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      return 0;
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      return copyAndDelete(source, target);
+    }
+  }
+
+  private long link(Path source, Path target) throws IOException {
+    try {
+      Files.createLink(target, source);
+    }
+    catch (FileAlreadyExistsException e) {
+      throw e;
+    }
+    catch (UnsupportedOperationException | IOException e) {
+      // No hard links across file systems or on some of them (e.g. FAT); the copy does not replace the target either.
+      return copyAndDelete(source, target);
+    }
+
+    try {
+      Files.delete(source);
+    }
+    catch (IOException e) {
+      Files.deleteIfExists(target);
+      throw e;
+    }
+    return 0;
+  }
+
+  private long copyAndDelete(Path source, Path target) throws IOException {
+    long n = copy(source, target);
+    Files.delete(source);
+    return n;
+  }
+
+  /**
+   * Concatenates files into a single one.
+   * 
+   * @param sources the files to concatenate
+   * @param target the resulting file
+   * @return the number of bytes copied
+   * @throws IOException if an I/O error occurs
+   * @throws CancellationException if the operation was cancelled
+   */
+  public long concat(List<Path> sources, Path target) throws IOException {
+    long total = 0;
+    for (Path source : sources)
+      total += Files.size(source);
+    Progress progress = new Progress(total);
+
+    write(target, out -> {
+      for (Path source : sources) {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+          transfer(in, out, progress);
+        }
+      }
+    });
+
+    progress.finish();
+    return progress.done.get();
+  }
+
+  /**
+   * Copies several files. Small files are copied in parallel, large ones one at a time afterwards so
+   * that they do not compete for the disk. Progress is reported for all the files together. The first
+   * error cancels the remaining copies.
+   * 
+   * @param copies the target of each source file
+   * @return the number of bytes copied
+   * @throws IOException if an I/O error occurs
+   * @throws CancellationException if the operation was cancelled
+   */
+  public long copyAll(Map<Path, Path> copies) throws IOException {
+    List<Map.Entry<Path, Path>> small = new ArrayList<>();
+    List<Map.Entry<Path, Path>> large = new ArrayList<>();
+    long total = 0;
+    for (Map.Entry<Path, Path> copy : copies.entrySet()) {
+      long size = Files.size(copy.getKey());
+      total += size;
+      (size <= SMALL_FILE_SIZE ? small : large).add(copy);
+    }
+
+    Progress progress = new Progress(total);
+    AtomicReference<IOException> error = new AtomicReference<>();
+    this.pool.invoke(ForkJoinTask.adapt(() -> small.parallelStream().forEach(copy -> {
+      if (error.get() == null) {
+        try {
+          copy(copy.getKey(), copy.getValue(), progress);
+        }
+        catch (IOException e) {
+          error.compareAndSet(null, e);
+        }
+      }
+    })));
+    if (error.get() != null)
+      throw error.get();
+
+    for (Map.Entry<Path, Path> copy : large)
+      copy(copy.getKey(), copy.getValue(), progress);
+    progress.finish();
+    return progress.done.get();
+  }
+
+  private void copy(Path source, Path target, Progress progress) throws IOException {
+    write(target, out -> {
+      try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+        transfer(in, out, progress);
+      }
+    });
+  }
+
+  /**
+   * Writes a file. If existing files are replaced, the content is written to a temporary file renamed
+   * over the target on success. Otherwise the target is created and deleted on failure.
+   */
+  private void write(Path target, ChannelWriter writer) throws IOException {
+    if (this.replaceExisting) {
+      try (AtomicFileWriter.Batch batch = new AtomicFileWriter(Durability.NONE).newBatch()) {
+        writer.write(batch.newTemporaryFile(target));
+        batch.commit();
+      }
+      return;
+    }
+
+    // Fails if the target exists, it is only deleted once created.
+    FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+    boolean completed = false;
+    try {
+      try (FileChannel o = out) {
+        writer.write(o);
+      }
+      completed = true;
+    }
+    finally {
+      if (!completed)
+        Files.deleteIfExists(target);
+    }
+  }
+
+  /**
+   * Appends the whole content of a channel to another one.
+   */
+  private void transfer(FileChannel in, FileChannel out, Progress progress) throws IOException {
+    long size = in.size();
+    long position = 0;
+
+    while (position < size) {
+      checkCancelled();
+      long n = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+      if (n <= 0)
+        break;
+      position += n;
+      progress.add(n);
+    }
+
+    if (position < size) {
+      ByteBuffer buffer = this.buffers.acquire();
+      try {
+        int n;
+        while ((n = in.read(buffer, position)) >= 0) {
+          checkCancelled();
+          buffer.flip();
+          while (buffer.hasRemaining())
+            out.write(buffer);
+          buffer.clear();
+          position += n;
+          progress.add(n);
+        }
+      }
+      finally {
+        this.buffers.release(buffer);
+      }
+    }
+  }
+
+  private void checkCancelled() {
+    if (this.token.isCancelled())
+      throw new CancellationException();
+  }
+
+  /**
+   * Writes the content of a file.
+   *
+   * @author Damien Vergnet
+   */
+  @FunctionalInterface
+  private interface ChannelWriter {
+    void write(FileChannel out) throws IOException;
+  }
+
+  /**
+   * Counts the bytes of an operation and throttles the notifications.
+   *
+   * @author Damien Vergnet
+   */
+  private class Progress {
+    private final long total;
+    private final AtomicLong done;
+    private final AtomicLong lastNotification;
+    private final ProgressListener listener;
+    private final long interval;
+
+    Progress(long total) {
+      this.total = total;
+      this.done = new AtomicLong();
+      this.listener = FileTransfer.this.listener;
+      this.interval = FileTransfer.this.progressInterval;
+      this.lastNotification = new AtomicLong(System.nanoTime() - this.interval);
+    }
+
+    void add(long n) {
+      long done = this.done.addAndGet(n);
+      if (this.listener != null) {
+        long now = System.nanoTime();
+        long last = this.lastNotification.get();
+        if (now - last >= this.interval && this.lastNotification.compareAndSet(last, now))
+          report(done);
+      }
+    }
+
+    void finish() {
+      if (this.listener != null)
+        report(this.done.get());
+    }
+
+    private synchronized void report(long done) {
+      this.listener.progress(done, this.total);
+    }
+  }
+}
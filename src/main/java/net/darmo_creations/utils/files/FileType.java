@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A file type identified by its content or its extension.
+ *
+ * @author Damien Vergnet
+ * @see FileTypeDetector
+ */
+public final class FileType {
+  public static final FileType PNG = new FileType("PNG", "image/png", "png");
+  public static final FileType JPEG = new FileType("JPEG", "image/jpeg", "jpg", "jpeg");
+  public static final FileType GIF = new FileType("GIF", "image/gif", "gif");
+  public static final FileType BMP = new FileType("BMP", "image/bmp", "bmp");
+  public static final FileType WEBP = new FileType("WebP", "image/webp", "webp");
+  public static final FileType ICO = new FileType("ICO", "image/x-icon", "ico");
+  public static final FileType PDF = new FileType("PDF", "application/pdf", "pdf");
+  public static final FileType ZIP = new FileType("ZIP", "application/zip", "zip", "jar");
+  public static final FileType GZIP = new FileType("GZIP", "application/gzip", "gz");
+  public static final FileType CLASS = new FileType("Java class", "application/java-vm", "class");
+  public static final FileType XML = new FileType("XML", "application/xml", "xml");
+  public static final FileType TEXT = new FileType("Text", "text/plain", "txt", "lang");
+
+  private final String name;
+  private final String mimeType;
+  private final List<String> extensions;
+
+  /**
+   * Creates a file type.
+   * 
+   * @param name the name
+   * @param mimeType the MIME type
+   * @param extensions the usual extensions, without dots
+   */
+  public FileType(String name, String mimeType, String... extensions) {
+    this.name = Objects.requireNonNull(name);
+    this.mimeType = Objects.requireNonNull(mimeType);
+    this.extensions = Collections.unmodifiableList(Arrays.asList(extensions.clone()));
+  }
+
+  /**
+   * @return the name
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * @return the MIME type
+   */
+  public String getMimeType() {
+    return this.mimeType;
+  }
+
+  /**
+   * @return the usual extensions
+   */
+  public List<String> getExtensions() {
+    return this.extensions;
+  }
+
+  @Override
+  public String toString() {
+    return this.name + " (" + this.mimeType + ")";
+  }
+}
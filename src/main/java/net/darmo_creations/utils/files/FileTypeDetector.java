@@ -0,0 +1,328 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import net.darmo_creations.utils.FilesUtil;
+
+/**
+ * This class detects the type of files from their first bytes. Magic numbers are compiled into a
+ * trie that is walked directly over the header, read into a small pooled direct buffer. When no magic
+ * number matches, the type is guessed from the extension. Results are kept in a bounded LRU cache by
+ * path and invalidated when the size or the modification time of the file changes.
+ * <p>
+ * Types and magic numbers should be registered before the detector is shared; detection itself is
+ * thread-safe.
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public class FileTypeDetector {
+  /** The number of bytes read from each file. Magic numbers cannot be longer. */
+  public static final int HEADER_SIZE = 64;
+  /** The default maximum number of paths kept in the cache. */
+  public static final int DEFAULT_CACHE_SIZE = 4096;
+
+  /**
+   * Creates a detector that knows the types declared in {@link FileType}.
+   * 
+   * @return the detector
+   */
+  public static FileTypeDetector withDefaults() {
+    return new FileTypeDetector() //
+        .addMagic(FileType.PNG, "89 50 4E 47 0D 0A 1A 0A") //
+        .addMagic(FileType.JPEG, "FF D8 FF") //
+        .addMagic(FileType.GIF, "47 49 46 38 ?? 61") //
+        .addMagic(FileType.BMP, "42 4D") //
+        .addMagic(FileType.WEBP, "52 49 46 46 ?? ?? ?? ?? 57 45 42 50") //
+        .addMagic(FileType.ICO, "00 00 01 00") //
+        .addMagic(FileType.PDF, "25 50 44 46 2D") //
+        .addMagic(FileType.ZIP, "50 4B 03 04") //
+        .addMagic(FileType.ZIP, "50 4B 05 06") //
+        .addMagic(FileType.GZIP, "1F 8B") //
+        .addMagic(FileType.CLASS, "CA FE BA BE") //
+        .addMagic(FileType.XML, "3C 3F 78 6D 6C 20") //
+        .addType(FileType.TEXT);
+  }
+
+  private final Node root;
+  private final Map<String, FileType> extensions;
+  private final Map<Path, CacheEntry> cache;
+  private final DirectBufferPool buffers;
+  private ForkJoinPool pool;
+
+  /**
+   * Creates a detector that knows no types, with a cache of {@link #DEFAULT_CACHE_SIZE} paths.
+   */
+  public FileTypeDetector() {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a detector that knows no types.
+   * 
+   * @param cacheSize the maximum number of paths kept in the cache
+   */
+  public FileTypeDetector(int cacheSize) {
+    if (cacheSize <= 0)
+      throw new IllegalArgumentException("size must be positive");
+    this.root = new Node(0);
+    this.extensions = new ConcurrentHashMap<>();
+    this.cache = new LinkedHashMap<Path, CacheEntry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 6009164419702417535L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Path, CacheEntry> eldest) {
+        return size() > cacheSize;
+      }
+    };
+    this.buffers = new DirectBufferPool(HEADER_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+    this.pool = ForkJoinPool.commonPool();
+  }
+
+  /**
+   * Registers the extensions of a type.
+   * 
+   * @param type the type
+   * @return this detector
+   */
+  public synchronized FileTypeDetector addType(FileType type) {
+    for (String ext : type.getExtensions())
+      this.extensions.putIfAbsent(ext.toLowerCase(Locale.ROOT), type);
+    return this;
+  }
+
+  /**
+   * Registers a magic number and the extensions of a type. The pattern is a sequence of hexadecimal
+   * bytes separated by spaces; "??" matches any byte. When several patterns match, the longest one
+   * wins.
+   * 
+   * @param type the type
+   * @param pattern the pattern, e.g. "52 49 46 46 ?? ?? ?? ?? 57 45 42 50"
+   * @return this detector
+   * @throws IllegalArgumentException if the pattern is invalid or longer than {@link #HEADER_SIZE}
+   */
+  public synchronized FileTypeDetector addMagic(FileType type, String pattern) {
+    String[] bytes = pattern.trim().split("\\s+");
+    if (bytes.length > HEADER_SIZE)
+      throw new IllegalArgumentException("pattern too long: " + pattern);
+
+    Node node = this.root;
+    for (String b : bytes) {
+      if (b.equals("??")) {
+        if (node.any == null)
+          node.any = new Node(node.depth + 1);
+        node = node.any;
+      }
+      else {
+        if (b.length() != 2)
+          throw new IllegalArgumentException("invalid byte '" + b + "' in pattern " + pattern);
+        int value = Integer.parseInt(b, 16);
+        if (node.children == null)
+          node.children = new Node[256];
+        if (node.children[value] == null)
+          node.children[value] = new Node(node.depth + 1);
+        node = node.children[value];
+      }
+    }
+    node.type = Objects.requireNonNull(type);
+    return addType(type);
+  }
+
+  /**
+   * Sets the pool used by {@link #detectAll(Collection)}. Defaults to the common pool.
+   * 
+   * @param pool the pool
+   * @return this detector
+   */
+  public FileTypeDetector setPool(ForkJoinPool pool) {
+    this.pool = Objects.requireNonNull(pool);
+    return this;
+  }
+
+  /**
+   * Detects the type of a file from its content, falling back to its extension.
+   * 
+   * @param path the file
+   * @return the type if it could be determined
+   * @throws IOException if the file could not be read
+   */
+  public Optional<FileType> detect(Path path) throws IOException {
+    return detect(path, Files.readAttributes(path, BasicFileAttributes.class));
+  }
+
+  /**
+   * Detects the type of a file from its content, falling back to its extension. Use this method when
+   * the attributes are already known, e.g. from a {@link FileWalker} filter.
+   * 
+   * @param path the file
+   * @param attributes the file's attributes
+   * @return the type if it could be determined
+   * @throws IOException if the file could not be read
+   */
+  public Optional<FileType> detect(Path path, BasicFileAttributes attributes) throws IOException {
+    long size = attributes.size();
+    long modified = attributes.lastModifiedTime().toMillis();
+    CacheEntry entry;
+    synchronized (this.cache) {
+      entry = this.cache.get(path);
+    }
+
+    if (entry == null || entry.size != size || entry.modified != modified) {
+      FileType type = attributes.isRegularFile() && size > 0 ? sniff(path) : null;
+      if (type == null)
+        type = detectByExtension(path).orElse(null);
+      entry = new CacheEntry(size, modified, type);
+      synchronized (this.cache) {
+        this.cache.put(path, entry);
+      }
+    }
+
+    return Optional.ofNullable(entry.type);
+  }
+
+  /**
+   * Detects the types of several files in parallel. Files that could not be read or whose type is
+   * unknown are absent from the result.
+   * 
+   * @param paths the files
+   * @return the types of the files
+   */
+  public Map<Path, FileType> detectAll(Collection<? extends Path> paths) {
+    Map<Path, FileType> types = new ConcurrentHashMap<>();
+    this.pool.invoke(ForkJoinTask.adapt(() -> paths.parallelStream().forEach(path -> {
+      try {
+        detect(path).ifPresent(type -> types.put(path, type));
+      }
+      catch (IOException e) {
+        // Unreadable files are left out
+      }
+    })));
+    return types;
+  }
+
+  /**
+   * Guesses the type of a file from its extension only. The file system is not accessed.
+   * 
+   * @param path the file
+   * @return the type if the extension is known
+   */
+  public Optional<FileType> detectByExtension(Path path) {
+    return FilesUtil.getExtension(path).map(ext -> this.extensions.get(ext.toLowerCase(Locale.ROOT)));
+  }
+
+  /**
+   * Empties the cache.
+   */
+  public void clearCache() {
+    synchronized (this.cache) {
+      this.cache.clear();
+    }
+  }
+
+  /**
+   * Reads the header of a file and matches it against the magic numbers.
+   */
+  private FileType sniff(Path path) throws IOException {
+    ByteBuffer header = this.buffers.acquire();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      while (header.hasRemaining() && channel.read(header) >= 0)
+        continue;
+      header.flip();
+      Node node = match(this.root, header, 0);
+      return node != null ? node.type : null;
+    }
+    finally {
+      this.buffers.release(header);
+    }
+  }
+
+  /**
+   * Returns the deepest node having a type that matches the header from the given index, or null.
+   * Both the exact byte and the wildcard branches are explored; on a tie, the exact byte wins.
+   */
+  private static Node match(Node node, ByteBuffer header, int i) {
+    Node best = node.type != null ? node : null;
+    if (i < header.limit()) {
+      Node[] children = node.children;
+      if (children != null && children[header.get(i) & 0xff] != null)
+        best = deeper(best, match(children[header.get(i) & 0xff], header, i + 1));
+      if (node.any != null)
+        best = deeper(best, match(node.any, header, i + 1));
+    }
+    return best;
+  }
+
+  private static Node deeper(Node a, Node b) {
+    return b != null && (a == null || b.depth > a.depth) ? b : a;
+  }
+
+  /**
+   * A node of the magic number trie.
+   *
+   * @author Damien Vergnet
+   */
+  private static class Node {
+    /** The length of the patterns ending here. */
+    final int depth;
+    /** Children by byte value; null if there are none. */
+    Node[] children;
+    /** The child matching any byte. */
+    Node any;
+    /** The type whose pattern ends here. */
+    FileType type;
+
+    Node(int depth) {
+      this.depth = depth;
+    }
+  }
+
+  /**
+   * A detection result along with the attributes it was computed for.
+   *
+   * @author Damien Vergnet
+   */
+  private static class CacheEntry {
+    final long size;
+    final long modified;
+    final FileType type;
+
+    CacheEntry(long size, long modified, FileType type) {
+      this.size = size;
+      this.modified = modified;
+      this.type = type;
+    }
+  }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import net.darmo_creations.utils.Nullable;
+
+/**
+ * A file walker visits a file tree in parallel. Each directory is listed by a fork-join task and
+ * subdirectories are forked as soon as they are found so that idle workers can steal them. The
+ * attributes of each entry are read once and passed to the filter; no other file system access is
+ * made per entry.
+ * <p>
+ * Matching paths are handed out as they are found, in no particular order. Actions passed to
+ * {@link #walk(Consumer)} are called concurrently from the pool's threads and must be thread-safe.
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public class FileWalker {
+  private static final LinkOption[] NO_LINK_OPTIONS = {};
+  private static final LinkOption[] NOFOLLOW_LINKS = {LinkOption.NOFOLLOW_LINKS};
+  /** Marks the end of the walk in stream queues. */
+  private static final Object END = new Object();
+
+  private final Path root;
+  private BiPredicate<Path, BasicFileAttributes> filter;
+  private int maxDepth;
+  private boolean followLinks;
+  private ForkJoinPool pool;
+  private BiConsumer<Path, IOException> errorHandler;
+
+  /**
+   * Creates a walker that accepts all regular files under the given root.
+   * 
+   * @param root the root of the tree
+   */
+  public FileWalker(Path root) {
+    this.root = Objects.requireNonNull(root);
+    this.filter = (path, attributes) -> attributes.isRegularFile();
+    this.maxDepth = Integer.MAX_VALUE;
+    this.pool = ForkJoinPool.commonPool();
+  }
+
+  /**
+   * Sets the filter. Paths are accepted when it returns true; directories are walked whatever it
+   * returns. Defaults to all regular files.
+   * 
+   * @param filter the filter
+   * @return this walker
+   */
+  public FileWalker setFilter(BiPredicate<Path, BasicFileAttributes> filter) {
+    this.filter = Objects.requireNonNull(filter);
+    return this;
+  }
+
+  /**
+   * Accepts the regular files whose extension matches. The extension is checked first so that the
+   * filter stays cheap for large listings.
+   * 
+   * @param matcher the extension matcher
+   * @return this walker
+   */
+  public FileWalker setFilter(ExtensionMatcher matcher) {
+    return setFilter((path, attributes) -> matcher.matches(path) && attributes.isRegularFile());
+  }
+
+  /**
+   * Sets the maximum number of directory levels to visit. 0 means only the root is visited. Defaults
+   * to {@link Integer#MAX_VALUE}.
+   * 
+   * @param maxDepth the maximum depth
+   * @return this walker
+   */
+  public FileWalker setMaxDepth(int maxDepth) {
+    if (maxDepth < 0)
+      throw new IllegalArgumentException("negative depth");
+    this.maxDepth = maxDepth;
+    return this;
+  }
+
+  /**
+   * Sets whether symbolic links are followed. Loops are reported as {@link FileSystemLoopException}s.
+   * Defaults to false.
+   * 
+   * @param followLinks true to follow links
+   * @return this walker
+   */
+  public FileWalker setFollowLinks(boolean followLinks) {
+    this.followLinks = followLinks;
+    return this;
+  }
+
+  /**
+   * Sets the pool the directories are listed in. Defaults to the common pool.
+   * 
+   * @param pool the pool
+   * @return this walker
+   */
+  public FileWalker setPool(ForkJoinPool pool) {
+    this.pool = Objects.requireNonNull(pool);
+    return this;
+  }
+
+  /**
+   * Sets the handler called when an entry cannot be read. It may be called concurrently. By default,
+   * the first error stops the walk and is thrown by {@link #walk(Consumer)}.
+   * 
+   * @param errorHandler the handler or null to stop on the first error
+   * @return this walker
+   */
+  public FileWalker setErrorHandler(@Nullable BiConsumer<Path, IOException> errorHandler) {
+    this.errorHandler = errorHandler;
+    return this;
+  }
+
+  /**
+   * Walks the tree and passes each accepted path to the given action. This method returns once the
+   * whole tree has been visited.
+   * 
+   * @param action the action; it must be thread-safe
+   * @throws IOException if the root cannot be read or if an entry could not be read and there is no
+   *           error handler
+   */
+  public void walk(Consumer<? super Path> action) throws IOException {
+    walk(action, new CancellationToken());
+  }
+
+  /**
+   * Walks the tree and passes each accepted path to the given action. This method returns once the
+   * whole tree has been visited or as soon as the running tasks notice the cancellation.
+   * 
+   * @param action the action; it must be thread-safe
+   * @param token the cancellation token
+   * @throws IOException if the root cannot be read or if an entry could not be read and there is no
+   *           error handler
+   */
+  public void walk(Consumer<? super Path> action, CancellationToken token) throws IOException {
+    Walk walk = new Walk(action, token);
+    BasicFileAttributes attributes = Files.readAttributes(this.root, BasicFileAttributes.class, linkOptions());
+
+    if (this.filter.test(this.root, attributes))
+      action.accept(this.root);
+    if (attributes.isDirectory() && this.maxDepth > 0)
+      this.pool.invoke(new DirectoryTask(walk, null, this.root, attributes.fileKey(), 0));
+
+    IOException error = walk.error.get();
+    if (error != null)
+      throw error;
+  }
+
+  /**
+   * Returns a stream of the accepted paths. The tree is walked in the background and paths are
+   * available as soon as they are found. Closing the stream cancels the walk, so it should be used in
+   * a try-with-resources statement.
+   * 
+   * @return the stream
+   * @throws UncheckedIOException when the stream is consumed, if the walk failed
+   */
+  public Stream<Path> stream() {
+    CancellationToken token = new CancellationToken();
+    BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+    this.pool.execute(() -> {
+      try {
+        walk(queue::add, token);
+        queue.add(END);
+      }
+      catch (IOException e) {
+        queue.add(new UncheckedIOException(e));
+      }
+      catch (RuntimeException | Error e) {
+        queue.add(e);
+      }
+    });
+
+    Spliterator<Path> spliterator = new Spliterators.AbstractSpliterator<Path>(Long.MAX_VALUE,
+        Spliterator.DISTINCT | Spliterator.NONNULL) {
+      private boolean done;
+
+      @Override
+      public boolean tryAdvance(Consumer<? super Path> action) {
+        if (this.done)
+          return false;
+
+        Object next;
+        try {
+          next = queue.take();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          token.cancel();
+          next = END;
+        }
+
+        if (next instanceof Path) {
+          action.accept((Path) next);
+          return true;
+        }
+        this.done = true;
+        if (next instanceof RuntimeException)
+          throw (RuntimeException) next;
+        if (next instanceof Error)
+          throw (Error) next;
+        return false;
+      }
+    };
+
+    return StreamSupport.stream(spliterator, false).onClose(token::cancel);
+  }
+
+  private LinkOption[] linkOptions() {
+    return this.followLinks ? NO_LINK_OPTIONS : NOFOLLOW_LINKS;
+  }
+
+  /**
+   * The state of a single walk.
+   *
+   * @author Damien Vergnet
+   */
+  private class Walk {
+    private final Consumer<? super Path> action;
+    private final CancellationToken token;
+    private final AtomicReference<IOException> error;
+    private final BiPredicate<Path, BasicFileAttributes> filter;
+    private final BiConsumer<Path, IOException> errorHandler;
+    private final LinkOption[] linkOptions;
+    private final int maxDepth;
+
+    Walk(Consumer<? super Path> action, CancellationToken token) {
+      this.action = action;
+      this.token = token;
+      this.error = new AtomicReference<>();
+      // Settings are copied so that the walker can be reconfigured while walking
+      this.filter = FileWalker.this.filter;
+      this.errorHandler = FileWalker.this.errorHandler;
+      this.linkOptions = linkOptions();
+      this.maxDepth = FileWalker.this.maxDepth;
+    }
+
+    boolean isStopped() {
+      return this.token.isCancelled() || this.error.get() != null;
+    }
+
+    void error(Path path, IOException e) {
+      if (this.errorHandler != null)
+        this.errorHandler.accept(path, e);
+      else
+        this.error.compareAndSet(null, e);
+    }
+  }
+
+  /**
+   * Lists a single directory and forks a task for each subdirectory.
+   *
+   * @author Damien Vergnet
+   */
+  private static class DirectoryTask extends RecursiveAction {
+    private static final long serialVersionUID = 4219628564218453710L;
+
+    private final transient Walk walk;
+    private final transient DirectoryTask parent;
+    private final transient Path directory;
+    /** Used to detect loops when links are followed. */
+    private final transient Object fileKey;
+    private final int depth;
+
+    DirectoryTask(Walk walk, DirectoryTask parent, Path directory, Object fileKey, int depth) {
+      this.walk = walk;
+      this.parent = parent;
+      this.directory = directory;
+      this.fileKey = fileKey;
+      this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+      Walk walk = this.walk;
+      List<DirectoryTask> subtasks = null;
+
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(this.directory)) {
+        for (Path entry : entries) {
+          if (walk.isStopped())
+            break;
+
+          BasicFileAttributes attributes;
+          try {
+            attributes = Files.readAttributes(entry, BasicFileAttributes.class, walk.linkOptions);
+          }
+          catch (IOException e) {
+            walk.error(entry, e);
+            continue;
+          }
+
+          if (walk.filter.test(entry, attributes))
+            walk.action.accept(entry);
+          if (attributes.isDirectory() && this.depth + 1 < walk.maxDepth) {
+            Object key = attributes.fileKey();
+            if (walk.linkOptions.length == 0 && isAncestor(key)) {
+              walk.error(entry, new FileSystemLoopException(entry.toString()));
+              continue;
+            }
+            DirectoryTask task = new DirectoryTask(walk, this, entry, key, this.depth + 1);
+            task.fork();
+            if (subtasks == null)
+              subtasks = new ArrayList<>();
+            subtasks.add(task);
+          }
+        }
+      }
+      catch (IOException e) {
+        walk.error(this.directory, e);
+      }
+      catch (DirectoryIteratorException e) {
+        walk.error(this.directory, e.getCause());
+      }
+
+      if (subtasks != null) {
+        for (int i = subtasks.size() - 1; i >= 0; i--)
+          subtasks.get(i).join();
+      }
+    }
+
+    private boolean isAncestor(Object key) {
+      if (key == null)
+        return false;
+      for (DirectoryTask task = this; task != null; task = task.parent) {
+        if (key.equals(task.fileKey))
+          return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.darmo_creations.utils.events.SubscribeEvent;
+
+/**
+ * This class caches the {@link BasicFileAttributes} of files so that repeated queries on the same
+ * paths do not hit the file system. Attributes are read in a single call and kept in a bounded LRU
+ * cache for a limited time; missing files are cached too. Registering the cache on the bus of a
+ * {@link DirectoryWatcher} invalidates the changed paths as soon as they are reported. Paths are made
+ * absolute and normalized, before being read, so that different spellings of a path share the same
+ * entry; {@code ..} is therefore resolved lexically rather than through symbolic links.
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public class MetadataCache {
+  private final Map<Path, CachedAttributes> entries;
+  private final long expiry;
+  private final LongAdder hits, misses, evictions;
+  /** Incremented by each invalidation, guarded by the entries' lock. */
+  private long generation;
+
+  /**
+   * Creates a cache.
+   * 
+   * @param maxSize the maximum number of paths kept in the cache
+   * @param expiry how long attributes are kept, in milliseconds
+   */
+  public MetadataCache(int maxSize, long expiry) {
+    if (maxSize <= 0)
+      throw new IllegalArgumentException("size must be positive");
+    if (expiry < 0)
+      throw new IllegalArgumentException("negative expiry " + expiry);
+    this.expiry = TimeUnit.MILLISECONDS.toNanos(expiry);
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.evictions = new LongAdder();
+    this.entries = new LinkedHashMap<Path, CachedAttributes>(16, 0.75f, true) {
+      private static final long serialVersionUID = -1582310372541957462L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Path, CachedAttributes> eldest) {
+        boolean remove = size() > maxSize;
+        if (remove)
+          MetadataCache.this.evictions.increment();
+        return remove;
+      }
+    };
+  }
+
+  /**
+   * Returns the attributes of a file. Links are followed.
+   * 
+   * @param path the file
+   * @return the attributes
+   * @throws NoSuchFileException if the file does not exist
+   * @throws IOException if the attributes could not be read
+   */
+  public BasicFileAttributes getAttributes(Path path) throws IOException {
+    Path key = key(path);
+    long now = System.nanoTime();
+    CachedAttributes entry;
+    long generation;
+    synchronized (this.entries) {
+      entry = this.entries.get(key);
+      generation = this.generation;
+    }
+
+    if (entry != null && now - entry.loaded < this.expiry) {
+      this.hits.increment();
+    }
+    else {
+      this.misses.increment();
+      try {
+        entry = new CachedAttributes(Files.readAttributes(key, BasicFileAttributes.class), now);
+      }
+      catch (NoSuchFileException e) {
+        entry = new CachedAttributes(null, now);
+      }
+      synchronized (this.entries) {
+        // Attributes read before a concurrent invalidation may be stale, they are not cached.
+        if (this.generation == generation)
+          this.entries.put(key, entry);
+      }
+    }
+
+    if (entry.attributes == null)
+      throw new NoSuchFileException(path.toString());
+    return entry.attributes;
+  }
+
+  /**
+   * @param path the path
+   * @return true if the file exists
+   */
+  public boolean exists(Path path) {
+    try {
+      getAttributes(path);
+      return true;
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @param path the path
+   * @return true if the file is a directory; false if it is not or it could not be read
+   */
+  public boolean isDirectory(Path path) {
+    try {
+      return getAttributes(path).isDirectory();
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @param path the path
+   * @return true if the file is a regular file; false if it is not or it could not be read
+   */
+  public boolean isRegularFile(Path path) {
+    try {
+      return getAttributes(path).isRegularFile();
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @param path the path
+   * @return the size of the file in bytes
+   * @throws IOException if the attributes could not be read
+   */
+  public long size(Path path) throws IOException {
+    return getAttributes(path).size();
+  }
+
+  /**
+   * @param path the path
+   * @return the last modification time of the file in milliseconds since the epoch
+   * @throws IOException if the attributes could not be read
+   */
+  public long lastModified(Path path) throws IOException {
+    return getAttributes(path).lastModifiedTime().toMillis();
+  }
+
+  /**
+   * Removes a path from the cache.
+   * 
+   * @param path the path
+   */
+  public void invalidate(Path path) {
+    synchronized (this.entries) {
+      this.generation++;
+      this.entries.remove(key(path));
+    }
+  }
+
+  /**
+   * Empties the cache.
+   */
+  public void invalidateAll() {
+    synchronized (this.entries) {
+      this.generation++;
+      this.entries.clear();
+    }
+  }
+
+  /**
+   * Invalidates the paths reported by a {@link DirectoryWatcher} along with their parent directories.
+   * 
+   * @param e the event
+   */
+  @SubscribeEvent
+  public void onDirectoryChanged(DirectoryChangedEvent e) {
+    synchronized (this.entries) {
+      this.generation++;
+      for (Path path : e.getModified())
+        this.entries.remove(key(path));
+      for (Path path : e.getCreated()) {
+        Path key = key(path);
+        this.entries.remove(key);
+        this.entries.remove(key.getParent());
+      }
+      for (Path path : e.getDeleted()) {
+        Path key = key(path);
+        this.entries.remove(key);
+        this.entries.remove(key.getParent());
+      }
+    }
+  }
+
+  private static Path key(Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+
+  /**
+   * @return the number of queries answered from the cache
+   */
+  public long getHitCount() {
+    return this.hits.sum();
+  }
+
+  /**
+   * @return the number of queries that read the file system
+   */
+  public long getMissCount() {
+    return this.misses.sum();
+  }
+
+  /**
+   * @return the number of paths evicted because the cache was full
+   */
+  public long getEvictionCount() {
+    return this.evictions.sum();
+  }
+
+  /**
+   * @return the ratio of queries answered from the cache; 0 if there were none
+   */
+  public double getHitRate() {
+    long hits = getHitCount(), total = hits + getMissCount();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * Resets the statistics.
+   */
+  public void resetStats() {
+    this.hits.reset();
+    this.misses.reset();
+    this.evictions.reset();
+  }
+
+  /**
+   * Cached attributes along with the time they were read.
+   *
+   * @author Damien Vergnet
+   */
+  private static class CachedAttributes {
+    /** The attributes; null if the file does not exist. */
+    final BasicFileAttributes attributes;
+    final long loaded;
+
+    CachedAttributes(BasicFileAttributes attributes, long loaded) {
+      this.attributes = attributes;
+      this.loaded = loaded;
+    }
+  }
+}
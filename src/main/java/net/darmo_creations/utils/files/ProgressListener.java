@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+/**
+ * A progress listener is notified of the progress of a long running file operation.
+ *
+ * @author Damien Vergnet
+ */
+@FunctionalInterface
+public interface ProgressListener {
+  /**
+   * Called when some progress has been made. Calls are throttled by the operation and may come from
+   * several threads, though never concurrently.
+   * 
+   * @param done the number of bytes processed so far
+   * @param total the total number of bytes
+   */
+  void progress(long done, long total);
+}
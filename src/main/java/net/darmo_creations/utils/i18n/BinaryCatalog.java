@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A catalog reading a binary catalog in place. The format is the following, all values being
+ * big-endian:
+ * 
+ * <pre>
+ * int    magic number ("DULC")
+ * byte   format version
+ * int    number of entries
+ * int[]  hash of each key ({@link String#hashCode()}), sorted
+ * int[4] for each entry: key offset, key length, value offset, value length
+ * byte[] UTF-8 pool, offsets are relative to its start
+ * </pre>
+ *
+ * @author Damien Vergnet
+ */
+final class BinaryCatalog extends Catalog {
+  static final int MAGIC = 0x44554C43;
+  static final byte VERSION = 1;
+  static final int HEADER_SIZE = 9;
+  static final int ENTRY_SIZE = 16;
+
+  /**
+   * Reads a binary catalog from a stream into a heap buffer.
+   * 
+   * @param locale the catalog's locale
+   * @param stream the stream; it is not closed
+   * @return the catalog
+   * @throws IOException if the stream could not be read or the data is invalid
+   */
+  static BinaryCatalog read(Locale locale, InputStream stream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+    byte[] buffer = new byte[8192];
+    int n;
+
+    while ((n = stream.read(buffer)) >= 0)
+      out.write(buffer, 0, n);
+    return new BinaryCatalog(locale, ByteBuffer.wrap(out.toByteArray()));
+  }
+
+  private final ByteBuffer data;
+  private final int count;
+  private final int entriesOffset;
+  private final int poolOffset;
+  /** Decoded values; a value may be decoded twice by concurrent threads, which is harmless. */
+  private final String[] values;
+  private volatile Set<String> keys;
+
+  /**
+   * Creates a catalog.
+   * 
+   * @param locale the catalog's locale
+   * @param data the binary catalog, starting at index 0
+   * @throws IOException if the header is invalid
+   */
+  BinaryCatalog(Locale locale, ByteBuffer data) throws IOException {
+    super(locale);
+    this.data = data.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+    if (this.data.limit() < HEADER_SIZE || this.data.getInt(0) != MAGIC)
+      throw new IOException("not a binary catalog");
+    if (this.data.get(4) != VERSION)
+      throw new IOException("unsupported binary catalog version " + this.data.get(4));
+    this.count = this.data.getInt(5);
+    this.entriesOffset = HEADER_SIZE + 4 * this.count;
+    this.poolOffset = this.entriesOffset + ENTRY_SIZE * this.count;
+    if (this.count < 0 || this.poolOffset < 0 || this.poolOffset > this.data.limit())
+      throw new IOException("corrupted binary catalog");
+    this.values = new String[this.count];
+  }
+
+  @Override
+  public int size() {
+    return this.count;
+  }
+
+  @Override
+  public Set<String> keys() {
+    Set<String> k = this.keys;
+
+    if (k == null) {
+      Set<String> set = new HashSet<>((int) (this.count / 0.75f) + 1);
+      for (int i = 0; i < this.count; i++) {
+        int entry = this.entriesOffset + i * ENTRY_SIZE;
+        set.add(decode(this.data.getInt(entry), this.data.getInt(entry + 4)));
+      }
+      this.keys = k = Collections.unmodifiableSet(set);
+    }
+    return k;
+  }
+
+  @Override
+  public String get(String key) {
+    int i = indexOf(key);
+    if (i < 0)
+      return null;
+
+    String value = this.values[i];
+    if (value == null) {
+      int entry = this.entriesOffset + i * ENTRY_SIZE;
+      this.values[i] = value = decode(this.data.getInt(entry + 8), this.data.getInt(entry + 12));
+    }
+    return value;
+  }
+
+  /**
+   * Returns the index of the given key by binary searching the hashes then comparing the keys
+   * sharing the same hash. No objects are created.
+   */
+  private int indexOf(String key) {
+    int hash = key.hashCode();
+    int low = 0, high = this.count - 1;
+
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int h = hashAt(mid);
+
+      if (h < hash) {
+        low = mid + 1;
+      }
+      else if (h > hash) {
+        high = mid - 1;
+      }
+      else {
+        int first = mid;
+        while (first > 0 && hashAt(first - 1) == hash)
+          first--;
+        for (int i = first; i < this.count && hashAt(i) == hash; i++) {
+          int entry = this.entriesOffset + i * ENTRY_SIZE;
+          if (keyEquals(this.data.getInt(entry), this.data.getInt(entry + 4), key))
+            return i;
+        }
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private int hashAt(int i) {
+    return this.data.getInt(HEADER_SIZE + 4 * i);
+  }
+
+  private String decode(int offset, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer b = this.data.duplicate();
+    b.position(this.poolOffset + offset);
+    b.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compares UTF-8 bytes from the pool with the UTF-16 chars of a string.
+   */
+  private boolean keyEquals(int offset, int length, String key) {
+    int p = this.poolOffset + offset;
+    int end = p + length;
+    int i = 0;
+
+    while (p < end) {
+      int b = this.data.get(p++) & 0xff;
+      int cp;
+
+      if (b < 0x80) {
+        cp = b;
+      }
+      else if (b < 0xe0) {
+        cp = (b & 0x1f) << 6 | this.data.get(p++) & 0x3f;
+      }
+      else if (b < 0xf0) {
+        cp = (b & 0x0f) << 12 | (this.data.get(p++) & 0x3f) << 6 | this.data.get(p++) & 0x3f;
+      }
+      else {
+        cp = (b & 0x07) << 18 | (this.data.get(p++) & 0x3f) << 12 | (this.data.get(p++) & 0x3f) << 6 | this.data.get(p++) & 0x3f;
+      }
+
+      if (Character.isBmpCodePoint(cp)) {
+        if (i >= key.length() || key.charAt(i++) != cp)
+          return false;
+      }
+      else {
+        if (i + 1 >= key.length() || key.charAt(i++) != Character.highSurrogate(cp) || key.charAt(i++) != Character.lowSurrogate(cp))
+          return false;
+      }
+    }
+    return i == key.length();
+  }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A catalog holds the localized strings of a single locale. Catalogs are immutable and can be used
+ * from any thread without locking. The only mutable parts are the missing keys counters and lazily
+ * compiled formats, which are thread-safe.
+ * <p>
+ * Catalogs are either loaded from language files, which are fully parsed, mapped from binary
+ * catalogs produced by {@link CatalogCompiler}, whose strings are decoded on first access, or split
+ * into segments loaded on demand (see {@link SegmentSource}).
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public abstract class Catalog {
+  /**
+   * Loads a catalog from a language file.
+   * 
+   * @param locale the catalog's locale
+   * @param stream the input stream; it is not closed
+   * @return the catalog
+   * @throws IOException if the stream could not be read
+   */
+  public static Catalog load(Locale locale, InputStream stream) throws IOException {
+    Properties properties = new Properties();
+    properties.load(new InputStreamReader(stream, StandardCharsets.UTF_8));
+
+    Map<String, String> map = new HashMap<>((int) (properties.size() / 0.75f) + 1);
+    for (String key : properties.stringPropertyNames())
+      map.put(key, properties.getProperty(key));
+
+    return new MapCatalog(locale, map);
+  }
+
+  /**
+   * Creates a catalog from the given strings.
+   * 
+   * @param locale the catalog's locale
+   * @param strings the strings; the map is copied
+   * @return the catalog
+   */
+  public static Catalog of(Locale locale, Map<String, String> strings) {
+    return new MapCatalog(locale, new HashMap<>(strings));
+  }
+
+  /**
+   * Maps a binary catalog file in memory. Only the header is read; keys are looked up directly in
+   * the mapped file and strings are decoded on first access. As the file is mapped read-only, its
+   * pages are shared by all processes mapping it.
+   * 
+   * @param locale the catalog's locale
+   * @param file the binary catalog
+   * @return the catalog
+   * @throws IOException if the file could not be mapped or is not a valid catalog
+   * @see CatalogCompiler
+   */
+  public static Catalog map(Locale locale, Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new BinaryCatalog(locale, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Wraps a binary catalog held in a buffer. The buffer must not be modified afterwards.
+   * 
+   * @param locale the catalog's locale
+   * @param data the binary catalog, from its position to its limit
+   * @return the catalog
+   * @throws IOException if the data is not a valid catalog
+   * @see CatalogCompiler
+   */
+  public static Catalog wrap(Locale locale, ByteBuffer data) throws IOException {
+    return new BinaryCatalog(locale, data.slice());
+  }
+
+  private final Locale locale;
+  /** Number of lookups for each missing key. */
+  private final Map<String, AtomicLong> missingKeys;
+  private final Map<String, MessageTemplate> templates;
+  private final PluralRules pluralRules;
+  private volatile DateFormatTemplate dateFormat;
+  /** Strings indexed by ID for each key table used with this catalog. */
+  private volatile IndexedStrings[] indexed;
+
+  /**
+   * Creates a catalog.
+   * 
+   * @param locale the catalog's locale
+   */
+  protected Catalog(Locale locale) {
+    this.locale = Objects.requireNonNull(locale);
+    this.missingKeys = new ConcurrentHashMap<>();
+    this.templates = new ConcurrentHashMap<>();
+    this.pluralRules = PluralRules.forLocale(locale);
+    this.indexed = new IndexedStrings[0];
+  }
+
+  /**
+   * @return this catalog's locale
+   */
+  public final Locale getLocale() {
+    return this.locale;
+  }
+
+  /**
+   * @return the number of keys
+   */
+  public abstract int size();
+
+  /**
+   * @return all keys of this catalog
+   */
+  public abstract Set<String> keys();
+
+  /**
+   * Returns the string for the given key. Unlike {@link #getLocalizedString(String)}, misses are not
+   * counted.
+   * 
+   * @param key the key
+   * @return the string or null if the key is missing
+   */
+  public abstract String get(String key);
+
+  /**
+   * Loads the strings of the given namespace in the background if this catalog loads its strings
+   * lazily. Other catalogs do nothing.
+   * 
+   * @param namespace the namespace, i.e. the part of the keys before the first dot
+   * @return a future completed once the namespace is loaded
+   * @see SegmentSource
+   */
+  public CompletableFuture<Void> preload(String namespace) {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Returns the localized string corresponding to the given key. If no key was found, the key is
+   * returned.
+   * 
+   * @param unlocalizedString the unlocalized string
+   * @return the localized string
+   */
+  public final String getLocalizedString(String unlocalizedString) {
+    String s = get(unlocalizedString);
+
+    if (s == null) {
+      this.missingKeys.computeIfAbsent(unlocalizedString, k -> new AtomicLong()).incrementAndGet();
+      return unlocalizedString;
+    }
+    return s;
+  }
+
+  /**
+   * Returns the localized string for the key with the given ID. Each key is looked up the first time
+   * its ID is used, following lookups are a single array access. Only the strings that are used are
+   * kept so lazy catalogs do not load the segments of other keys. If no key was found, the key is
+   * returned.
+   * 
+   * @param table the key table
+   * @param id the key's ID
+   * @return the localized string
+   * @throws ArrayIndexOutOfBoundsException if the ID is invalid
+   */
+  public final String getLocalizedString(KeyTable table, int id) {
+    String[] values = getIndexedStrings(table);
+    String s = values[id];
+
+    if (s == null) {
+      s = get(table.getKey(id));
+      // Concurrent lookups store the same string, the race is harmless.
+      values[id] = s != null ? s : IndexedStrings.MISSING;
+    }
+    return s != null && s != IndexedStrings.MISSING ? s : getLocalizedString(table.getKey(id));
+  }
+
+  private String[] getIndexedStrings(KeyTable table) {
+    for (IndexedStrings strings : this.indexed) {
+      if (strings.table == table)
+        return strings.values;
+    }
+
+    synchronized (this) {
+      IndexedStrings[] tables = this.indexed;
+      for (IndexedStrings strings : tables) {
+        if (strings.table == table)
+          return strings.values;
+      }
+
+      IndexedStrings strings = new IndexedStrings(table);
+      tables = Arrays.copyOf(tables, tables.length + 1);
+      tables[tables.length - 1] = strings;
+      this.indexed = tables;
+      return strings.values;
+    }
+  }
+
+  /**
+   * Returns the localized word corresponding to the given key. If no key was found, the key is
+   * returned. No need to specify "word." at the beginning.
+   * 
+   * @param unlocalizedWord the unlocalized word
+   * @param feminine if true, the feminine will be returned
+   * @param plural if true, the plural will be returned
+   * @return the localized word
+   */
+  public final String getLocalizedWord(String unlocalizedWord, boolean feminine, boolean plural) {
+    return getLocalizedString("word." + unlocalizedWord + (feminine ? ".feminine" : "") + (plural ? ".plural" : ""));
+  }
+
+  /**
+   * Returns the localized mnemonic for the given key. If no key was found, '\0' (null character)
+   * will be returned. No need to specify ".mnemonic" in the key.
+   * 
+   * @param unlocalizedString the key
+   * @return the localized mnemonic
+   */
+  public final char getLocalizedMnemonic(String unlocalizedString) {
+    String s = getLocalizedString(unlocalizedString + ".mnemonic");
+    if (s.length() == 1)
+      return s.charAt(0);
+    return '\0';
+  }
+
+  /**
+   * @return the plural rules of this catalog's locale
+   */
+  public final PluralRules getPluralRules() {
+    return this.pluralRules;
+  }
+
+  /**
+   * Returns the message template for the given key. Templates are compiled only once then cached.
+   * If the key is missing, a template returning the key is returned.
+   * 
+   * @param key the key
+   * @return the template
+   * @throws IllegalArgumentException if the localized pattern is malformed
+   * @see MessageTemplate
+   */
+  public final MessageTemplate getTemplate(String key) {
+    MessageTemplate template = this.templates.get(key);
+
+    if (template == null) {
+      String pattern = get(key);
+      if (pattern == null) {
+        // Not cached so that every lookup is counted.
+        getLocalizedString(key);
+        return MessageTemplate.literal(key);
+      }
+      template = MessageTemplate.compile(pattern);
+      MessageTemplate previous = this.templates.putIfAbsent(key, template);
+      if (previous != null)
+        template = previous;
+    }
+    return template;
+  }
+
+  /**
+   * Formats the localized message for the given key.
+   * 
+   * @param key the key
+   * @param args the arguments
+   * @return the formatted message
+   * @throws IllegalArgumentException if the localized pattern is malformed
+   * @see MessageTemplate
+   */
+  public final String format(String key, Object... args) {
+    return getTemplate(key).format(this.pluralRules, args);
+  }
+
+  /**
+   * Appends the localized message for the given key to a builder.
+   * 
+   * @param sb the builder
+   * @param key the key
+   * @param args the arguments
+   * @return the builder
+   * @throws IllegalArgumentException if the localized pattern is malformed
+   * @see MessageTemplate
+   */
+  public final StringBuilder format(StringBuilder sb, String key, Object... args) {
+    return getTemplate(key).appendTo(sb, this.pluralRules, args);
+  }
+
+  /**
+   * @return the compiled "date.format" pattern; it is compiled only once
+   */
+  public final DateFormatTemplate getDateFormat() {
+    DateFormatTemplate format = this.dateFormat;
+    if (format == null)
+      this.dateFormat = format = DateFormatTemplate.compile(getLocalizedString("date.format"));
+    return format;
+  }
+
+  /**
+   * Returns a formatted dated with the localized date pattern.
+   * 
+   * @param date a date supporting the year, month of year and day of month fields
+   * @return the formatted date
+   * @see DateFormatTemplate
+   */
+  public final String getFormattedDate(TemporalAccessor date) {
+    return getDateFormat().format(date);
+  }
+
+  /**
+   * Returns the keys that were looked up but are missing from this catalog, with the number of
+   * lookups for each one.
+   * 
+   * @return a sorted snapshot of the missing keys
+   */
+  public final Map<String, Long> getMissingKeys() {
+    Map<String, Long> snapshot = new TreeMap<>();
+    this.missingKeys.forEach((key, count) -> snapshot.put(key, count.get()));
+    return snapshot;
+  }
+
+  /**
+   * Resets the missing keys counters.
+   */
+  public final void clearMissingKeys() {
+    this.missingKeys.clear();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + this.locale + ", " + size() + " keys]";
+  }
+
+  /**
+   * The strings of a catalog indexed by key ID.
+   *
+   * @author Damien Vergnet
+   */
+  private static final class IndexedStrings {
+    /** Marks missing keys, compared by reference. */
+    static final String MISSING = new String();
+
+    private final KeyTable table;
+    /** Strings by ID; null for keys not looked up yet. */
+    private final String[] values;
+
+    IndexedStrings(KeyTable table) {
+      this.table = table;
+      this.values = new String[table.size()];
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+import net.darmo_creations.utils.events.AbstractEvent;
+
+/**
+ * This event is fired when a catalog has been reloaded. It lists the keys whose strings changed so
+ * that only the affected components need to be updated.
+ *
+ * @author Damien Vergnet
+ */
+public class CatalogChangedEvent extends AbstractEvent {
+  private final Catalog oldCatalog, newCatalog;
+  private final Set<String> addedKeys, removedKeys, modifiedKeys;
+
+  /**
+   * Creates an event.
+   * 
+   * @param oldCatalog the replaced catalog
+   * @param newCatalog the new catalog
+   * @param addedKeys the keys only present in the new catalog
+   * @param removedKeys the keys only present in the old catalog
+   * @param modifiedKeys the keys whose string changed
+   */
+  public CatalogChangedEvent(Catalog oldCatalog, Catalog newCatalog, Set<String> addedKeys, Set<String> removedKeys,
+      Set<String> modifiedKeys) {
+    super(false);
+    this.oldCatalog = oldCatalog;
+    this.newCatalog = newCatalog;
+    this.addedKeys = Collections.unmodifiableSet(addedKeys);
+    this.removedKeys = Collections.unmodifiableSet(removedKeys);
+    this.modifiedKeys = Collections.unmodifiableSet(modifiedKeys);
+  }
+
+  /**
+   * @return the locale of the catalog
+   */
+  public Locale getLocale() {
+    return this.newCatalog.getLocale();
+  }
+
+  public Catalog getOldCatalog() {
+    return this.oldCatalog;
+  }
+
+  public Catalog getNewCatalog() {
+    return this.newCatalog;
+  }
+
+  public Set<String> getAddedKeys() {
+    return this.addedKeys;
+  }
+
+  public Set<String> getRemovedKeys() {
+    return this.removedKeys;
+  }
+
+  public Set<String> getModifiedKeys() {
+    return this.modifiedKeys;
+  }
+
+  /**
+   * Tells if the string for the given key changed.
+   * 
+   * @param key the key
+   * @return true if the key was added, removed or modified
+   */
+  public boolean hasChanged(String key) {
+    return this.modifiedKeys.contains(key) || this.addedKeys.contains(key) || this.removedKeys.contains(key);
+  }
+}
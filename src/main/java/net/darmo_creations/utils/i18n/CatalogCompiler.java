@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class compiles language files into binary catalogs that can be mapped in memory by
+ * {@link Catalog#map(Locale, Path)} without any parsing. It is meant to be run at build time, see
+ * the "compileCatalogs" Gradle task.
+ *
+ * @author Damien Vergnet
+ */
+public final class CatalogCompiler {
+  /** The extension of binary catalogs. */
+  public static final String EXTENSION = ".langc";
+
+  /**
+   * Compiles all language files in a directory and its subdirectories. Binary catalogs are written
+   * in the output directory with the same relative paths.
+   * 
+   * @param args the source and output directories
+   * @throws IOException if a file could not be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: CatalogCompiler <source directory> <output directory>");
+      System.exit(1);
+    }
+    Path source = Paths.get(args[0]);
+    Path output = Paths.get(args[1]);
+
+    if (Files.isDirectory(source)) {
+      List<Path> files;
+      try (Stream<Path> stream = Files.walk(source)) {
+        files = stream.filter(p -> p.getFileName().toString().endsWith(".lang")).collect(Collectors.toList());
+      }
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        Path target = output.resolve(source.relativize(file)).resolveSibling(name.substring(0, name.length() - 5) + EXTENSION);
+        Files.createDirectories(target.getParent());
+        try (InputStream in = Files.newInputStream(file)) {
+          compile(Catalog.load(Locale.ROOT, in), target);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tells if a binary catalog can be used instead of its language file, i.e. if the language file
+   * does not exist or was not modified after the catalog was compiled.
+   * 
+   * @param compiled the binary catalog
+   * @param source the language file
+   * @return true if the binary catalog is up to date
+   * @throws IOException if the modification times could not be read
+   */
+  static boolean isUpToDate(Path compiled, Path source) throws IOException {
+    if (!Files.exists(source))
+      return true;
+    return Files.getLastModifiedTime(source).compareTo(Files.getLastModifiedTime(compiled)) <= 0;
+  }
+
+  /**
+   * Compiles a catalog to a file. The file is overwritten.
+   * 
+   * @param catalog the catalog
+   * @param file the output file
+   * @throws IOException if the file could not be written
+   */
+  public static void compile(Catalog catalog, Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      compile(catalog, channel);
+    }
+  }
+
+  /**
+   * Compiles a catalog to a channel. The channel is not closed.
+   * 
+   * @param catalog the catalog
+   * @param channel the output channel
+   * @throws IOException if the data could not be written
+   */
+  public static void compile(Catalog catalog, WritableByteChannel channel) throws IOException {
+    ByteBuffer data = compile(catalog);
+    while (data.hasRemaining())
+      channel.write(data);
+  }
+
+  /**
+   * Compiles a catalog in memory.
+   * 
+   * @param catalog the catalog
+   * @return a buffer containing the binary catalog
+   */
+  public static ByteBuffer compile(Catalog catalog) {
+    List<String> keys = new ArrayList<>(catalog.keys());
+    keys.sort(Comparator.comparingInt(String::hashCode).thenComparing(Comparator.naturalOrder()));
+
+    int count = keys.size();
+    byte[][] pool = new byte[2 * count][];
+    int poolSize = 0;
+    for (int i = 0; i < count; i++) {
+      String key = keys.get(i);
+      pool[2 * i] = key.getBytes(StandardCharsets.UTF_8);
+      pool[2 * i + 1] = catalog.get(key).getBytes(StandardCharsets.UTF_8);
+      poolSize += pool[2 * i].length + pool[2 * i + 1].length;
+    }
+
+    ByteBuffer data = ByteBuffer.allocate(BinaryCatalog.HEADER_SIZE + count * (4 + BinaryCatalog.ENTRY_SIZE) + poolSize);
+    data.putInt(BinaryCatalog.MAGIC).put(BinaryCatalog.VERSION).putInt(count);
+    for (String key : keys)
+      data.putInt(key.hashCode());
+    int offset = 0;
+    for (byte[] bytes : pool) {
+      data.putInt(offset).putInt(bytes.length);
+      offset += bytes.length;
+    }
+    for (byte[] bytes : pool)
+      data.put(bytes);
+    data.flip();
+
+    return data;
+  }
+
+  private CatalogCompiler() {}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * A catalog loader creates the catalog of a locale on demand.
+ *
+ * @author Damien Vergnet
+ */
+@FunctionalInterface
+public interface CatalogLoader {
+  /**
+   * Loads the catalog for the given locale.
+   * 
+   * @param locale the locale
+   * @return the catalog
+   * @throws IOException if the catalog could not be loaded
+   */
+  Catalog load(Locale locale) throws IOException;
+
+  /**
+   * Returns the name of the language file for a locale: 'LOCALE.lang' with LOCALE being the
+   * locale's code (e.g.: en_US.lang).
+   * 
+   * @param locale the locale
+   * @return the file name
+   */
+  static String getFileName(Locale locale) {
+    return locale + ".lang";
+  }
+
+  /**
+   * Returns a loader that reads language files from the given classpath folder. Binary catalogs
+   * compiled by {@link CatalogCompiler} are preferred over language files; they are mapped in memory
+   * if they are plain files, or read in a single buffer otherwise (e.g. inside a jar). A plain binary
+   * catalog older than its language file, which may have been edited since, is ignored.
+   * 
+   * @param folder the folder, e.g. "/assets/lang"
+   * @return the loader
+   */
+  static CatalogLoader fromClasspath(String folder) {
+    return locale -> {
+      String name = folder + "/" + getFileName(locale);
+      URL compiled = CatalogLoader.class.getResource(folder + "/" + locale + CatalogCompiler.EXTENSION);
+
+      if (compiled != null) {
+        if ("file".equals(compiled.getProtocol())) {
+          try {
+            Path file = Paths.get(compiled.toURI());
+            URL source = CatalogLoader.class.getResource(name);
+            if (source == null || !"file".equals(source.getProtocol()) || CatalogCompiler.isUpToDate(file, Paths.get(source.toURI())))
+              return Catalog.map(locale, file);
+          }
+          catch (URISyntaxException ex) {
+            throw new IOException(ex);
+          }
+        }
+        else {
+          try (InputStream stream = compiled.openStream()) {
+            return BinaryCatalog.read(locale, stream);
+          }
+        }
+      }
+
+      try (InputStream stream = CatalogLoader.class.getResourceAsStream(name)) {
+        if (stream == null)
+          throw new FileNotFoundException(name);
+        return Catalog.load(locale, stream);
+      }
+    };
+  }
+
+  /**
+   * Returns a loader that reads language files from the given directory. Binary catalogs compiled by
+   * {@link CatalogCompiler} are preferred over language files and mapped in memory, unless the
+   * language file was modified after the binary catalog.
+   * 
+   * @param directory the directory
+   * @return the loader
+   */
+  static CatalogLoader fromDirectory(Path directory) {
+    return locale -> {
+      Path compiled = directory.resolve(locale + CatalogCompiler.EXTENSION);
+      Path source = directory.resolve(getFileName(locale));
+      if (Files.isRegularFile(compiled) && CatalogCompiler.isUpToDate(compiled, source))
+        return Catalog.map(locale, compiled);
+
+      try (InputStream stream = Files.newInputStream(source)) {
+        return Catalog.load(locale, stream);
+      }
+    };
+  }
+
+  /**
+   * Returns a loader creating catalogs that load their strings one namespace at a time, on first
+   * access. Loading such a catalog reads nothing.
+   * 
+   * @param source the segments source
+   * @return the loader
+   */
+  static CatalogLoader segmented(SegmentSource source) {
+    return locale -> new SegmentedCatalog(locale, source);
+  }
+}
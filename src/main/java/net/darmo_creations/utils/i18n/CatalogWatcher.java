@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import net.darmo_creations.utils.I18n;
+import net.darmo_creations.utils.Nullable;
+import net.darmo_creations.utils.events.EventsBus;
+
+/**
+ * This class watches a directory of language files and reloads the cached catalogs whenever their
+ * file is modified. Changes are debounced: a file is reloaded only once it has not been modified for
+ * a while. Only the modified file is parsed; the new catalog is compared with the cached one, then
+ * published through {@link I18n#updateCatalog(Catalog)} and a {@link CatalogChangedEvent} listing
+ * the changed keys is dispatched. Locales that were never loaded are ignored.
+ * <p>
+ * Events are dispatched on the watcher thread by default. As {@link EventsBus} is not thread-safe,
+ * Swing applications should provide an executor such as {@code SwingUtilities::invokeLater}.
+ * </p>
+ *
+ * @author Damien Vergnet
+ */
+public class CatalogWatcher implements Closeable {
+  /** The default debounce delay in milliseconds. */
+  public static final long DEFAULT_DELAY = 200;
+
+  private final Path directory;
+  private final EventsBus bus;
+  private final WatchService watchService;
+  private Executor executor;
+  private long delay;
+  private Thread thread;
+
+  /**
+   * Creates a watcher. Events are dispatched on the watcher thread.
+   * 
+   * @param directory the directory containing the language files
+   * @param bus the bus on which events are dispatched; may be null
+   * @throws IOException if the directory cannot be watched
+   */
+  public CatalogWatcher(Path directory, @Nullable EventsBus bus) throws IOException {
+    this.directory = directory;
+    this.bus = bus;
+    this.watchService = directory.getFileSystem().newWatchService();
+    this.executor = Runnable::run;
+    this.delay = DEFAULT_DELAY;
+    directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+  }
+
+  /**
+   * Sets the executor used to dispatch events. Must be called before {@link #start()}.
+   * 
+   * @param executor the executor
+   * @return this watcher
+   */
+  public CatalogWatcher setExecutor(Executor executor) {
+    this.executor = Objects.requireNonNull(executor);
+    return this;
+  }
+
+  /**
+   * Sets the debounce delay. Must be called before {@link #start()}.
+   * 
+   * @param delay the delay in milliseconds
+   * @return this watcher
+   */
+  public CatalogWatcher setDelay(long delay) {
+    if (delay < 0)
+      throw new IllegalArgumentException("negative delay " + delay);
+    this.delay = delay;
+    return this;
+  }
+
+  /**
+   * Starts watching in a daemon thread.
+   * 
+   * @return this watcher
+   * @throws IllegalStateException if this watcher has already been started
+   */
+  public synchronized CatalogWatcher start() {
+    if (this.thread != null)
+      throw new IllegalStateException("watcher already started");
+    this.thread = new Thread(this::run, "catalog-watcher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+    return this;
+  }
+
+  /**
+   * Stops watching.
+   */
+  @Override
+  public void close() throws IOException {
+    this.watchService.close();
+  }
+
+  private void run() {
+    // Modified files and the time when they should be reloaded.
+    Map<Path, Long> pending = new HashMap<>();
+
+    try {
+      while (true) {
+        WatchKey key;
+        if (pending.isEmpty()) {
+          key = this.watchService.take();
+        }
+        else {
+          long next = pending.values().stream().min(Long::compare).get();
+          key = this.watchService.poll(Math.max(0, next - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        if (key != null) {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              // Events were lost, reload all loaded files.
+              for (Locale locale : loadedLocales())
+                pending.put(this.directory.resolve(CatalogLoader.getFileName(locale)), System.nanoTime());
+            }
+            else {
+              Path file = this.directory.resolve((Path) event.context());
+              if (file.getFileName().toString().endsWith(".lang"))
+                pending.put(file, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.delay));
+            }
+          }
+          key.reset();
+        }
+
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator(); it.hasNext();) {
+          Map.Entry<Path, Long> entry = it.next();
+          if (entry.getValue() - now <= 0) {
+            it.remove();
+            reload(entry.getKey());
+          }
+        }
+      }
+    }
+    catch (InterruptedException | ClosedWatchServiceException ex) {
+      // Watcher closed.
+    }
+  }
+
+  private Set<Locale> loadedLocales() {
+    Set<Locale> locales = new HashSet<>();
+
+    try (Stream<Path> files = Files.list(this.directory)) {
+      files.map(CatalogWatcher::getLocale).filter(Objects::nonNull).filter(l -> I18n.getCachedCatalog(l).isPresent())
+          .forEach(locales::add);
+    }
+    catch (IOException ex) {
+      // Directory unreadable, nothing to reload.
+    }
+    return locales;
+  }
+
+  private void reload(Path file) {
+    Locale locale = getLocale(file);
+    if (locale == null || !I18n.getCachedCatalog(locale).isPresent())
+      return;
+
+    Catalog newCatalog;
+    try (InputStream in = Files.newInputStream(file)) {
+      newCatalog = Catalog.load(locale, in);
+    }
+    catch (IOException | IllegalArgumentException ex) {
+      // The file may be in the middle of being written or malformed, it will be reloaded on the next event.
+      return;
+    }
+
+    Catalog oldCatalog = I18n.getCachedCatalog(locale).get();
+    Set<String> added = new HashSet<>();
+    Set<String> removed = new HashSet<>(oldCatalog.keys());
+    Set<String> modified = new HashSet<>();
+    for (String key : newCatalog.keys()) {
+      if (!removed.remove(key))
+        added.add(key);
+      else if (!newCatalog.get(key).equals(oldCatalog.get(key)))
+        modified.add(key);
+    }
+    if (added.isEmpty() && removed.isEmpty() && modified.isEmpty())
+      return;
+
+    I18n.updateCatalog(newCatalog);
+    if (this.bus != null) {
+      CatalogChangedEvent event = new CatalogChangedEvent(oldCatalog, newCatalog, added, removed, modified);
+      this.executor.execute(() -> this.bus.dispatchEvent(event));
+    }
+  }
+
+  /**
+   * Returns the locale of a language file from its name (e.g. en_US.lang).
+   * 
+   * @return the locale or null if the file is not a language file
+   */
+  private static Locale getLocale(Path file) {
+    String name = file.getFileName().toString();
+    if (!name.endsWith(".lang"))
+      return null;
+
+    String[] parts = name.substring(0, name.length() - 5).split("_", 3);
+    switch (parts.length) {
+      case 1:
+        return new Locale(parts[0]);
+      case 2:
+        return new Locale(parts[0], parts[1]);
+      default:
+        return new Locale(parts[0], parts[1], parts[2]);
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+
+/**
+ * A date pattern compiled into a sequence of instructions. Formatting tags are the following:
+ * <ul>
+ * <li>Y - the year on 4 digits; leading zeroes are added if necessary</li>
+ * <li>M - the month on 2 digits; leading zeroes are added if necessary</li>
+ * <li>D - the day of the month on 2 digits; leading zeroes are added if necessary</li>
+ * <li>y - the last 2 digits of the year</li>
+ * <li>m - the month without leading zeroes</li>
+ * <li>d - the day of the month without leading zeroes</li>
+ * </ul>
+ * Any other character is copied as is. The pattern is read only once, values inserted in the output
+ * are thus never interpreted as tags. Instances are immutable and thread-safe.
+ *
+ * @author Damien Vergnet
+ */
+public final class DateFormatTemplate {
+  private static final int LITERAL = 0;
+  private static final int YEAR_4 = 1;
+  private static final int MONTH_2 = 2;
+  private static final int DAY_2 = 3;
+  private static final int YEAR_2 = 4;
+  private static final int MONTH = 5;
+  private static final int DAY = 6;
+
+  /**
+   * Compiles a pattern.
+   * 
+   * @param pattern the pattern
+   * @return the compiled pattern
+   */
+  public static DateFormatTemplate compile(String pattern) {
+    int[] ops = new int[pattern.length()];
+    int[] starts = new int[pattern.length()];
+    int n = 0;
+
+    for (int i = 0; i < pattern.length(); i++) {
+      int op = opcode(pattern.charAt(i));
+      if (op != LITERAL || n == 0 || ops[n - 1] != LITERAL) {
+        ops[n] = op;
+        starts[n++] = i;
+      }
+    }
+
+    return new DateFormatTemplate(pattern, Arrays.copyOf(ops, n), Arrays.copyOf(starts, n));
+  }
+
+  private static int opcode(char c) {
+    switch (c) {
+      case 'Y':
+        return YEAR_4;
+      case 'M':
+        return MONTH_2;
+      case 'D':
+        return DAY_2;
+      case 'y':
+        return YEAR_2;
+      case 'm':
+        return MONTH;
+      case 'd':
+        return DAY;
+      default:
+        return LITERAL;
+    }
+  }
+
+  private final String pattern;
+  private final int[] ops;
+  /** Start of each instruction in the pattern; literals end where the next instruction starts. */
+  private final int[] starts;
+
+  private DateFormatTemplate(String pattern, int[] ops, int[] starts) {
+    this.pattern = pattern;
+    this.ops = ops;
+    this.starts = starts;
+  }
+
+  /**
+   * @return the source pattern
+   */
+  public String getPattern() {
+    return this.pattern;
+  }
+
+  /**
+   * Formats a date.
+   * 
+   * @param year the year
+   * @param month the month
+   * @param day the day of the month
+   * @return the formatted date
+   */
+  public String format(int year, int month, int day) {
+    return appendTo(new StringBuilder(this.pattern.length() + 8), year, month, day).toString();
+  }
+
+  /**
+   * Formats a date.
+   * 
+   * @param date a date supporting the year, month of year and day of month fields
+   * @return the formatted date
+   */
+  public String format(TemporalAccessor date) {
+    return format(date.get(ChronoField.YEAR), date.get(ChronoField.MONTH_OF_YEAR), date.get(ChronoField.DAY_OF_MONTH));
+  }
+
+  /**
+   * Formats a date whose components are given as strings. Values are padded but not parsed.
+   * 
+   * @param year the year
+   * @param month the month
+   * @param day the day of the month
+   * @return the formatted date
+   */
+  public String format(CharSequence year, CharSequence month, CharSequence day) {
+    StringBuilder sb = new StringBuilder(this.pattern.length() + 8);
+
+    for (int i = 0; i < this.ops.length; i++) {
+      switch (this.ops[i]) {
+        case LITERAL:
+          sb.append(this.pattern, this.starts[i], end(i));
+          break;
+        case YEAR_4:
+          appendPadded(sb, year, 0, year.length(), 4);
+          break;
+        case MONTH_2:
+          appendPadded(sb, month, 0, month.length(), 2);
+          break;
+        case DAY_2:
+          appendPadded(sb, day, 0, day.length(), 2);
+          break;
+        case YEAR_2:
+          appendPadded(sb, year, Math.max(0, year.length() - 2), year.length(), 2);
+          break;
+        case MONTH:
+          sb.append(month);
+          break;
+        case DAY:
+          sb.append(day);
+          break;
+      }
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Appends a formatted date to the given builder.
+   * 
+   * @param sb the builder
+   * @param year the year
+   * @param month the month
+   * @param day the day of the month
+   * @return the builder
+   */
+  public StringBuilder appendTo(StringBuilder sb, int year, int month, int day) {
+    try {
+      appendTo((Appendable) sb, year, month, day);
+    }
+    catch (IOException ex) {
+      // StringBuilder never throws.
+      throw new UncheckedIOException(ex);
+    }
+    return sb;
+  }
+
+  /**
+   * Appends a formatted date to the given builder.
+   * 
+   * @param sb the builder
+   * @param date a date supporting the year, month of year and day of month fields
+   * @return the builder
+   */
+  public StringBuilder appendTo(StringBuilder sb, TemporalAccessor date) {
+    return appendTo(sb, date.get(ChronoField.YEAR), date.get(ChronoField.MONTH_OF_YEAR), date.get(ChronoField.DAY_OF_MONTH));
+  }
+
+  /**
+   * Appends a formatted date to the given output.
+   * 
+   * @param out the output
+   * @param date a date supporting the year, month of year and day of month fields
+   * @return the output
+   * @throws IOException if the output throws one
+   */
+  public <A extends Appendable> A appendTo(A out, TemporalAccessor date) throws IOException {
+    return appendTo(out, date.get(ChronoField.YEAR), date.get(ChronoField.MONTH_OF_YEAR), date.get(ChronoField.DAY_OF_MONTH));
+  }
+
+  /**
+   * Appends a formatted date to the given output. No intermediate objects are created.
+   * 
+   * @param out the output
+   * @param year the year
+   * @param month the month
+   * @param day the day of the month
+   * @return the output
+   * @throws IOException if the output throws one
+   */
+  public <A extends Appendable> A appendTo(A out, int year, int month, int day) throws IOException {
+    for (int i = 0; i < this.ops.length; i++) {
+      switch (this.ops[i]) {
+        case LITERAL:
+          out.append(this.pattern, this.starts[i], end(i));
+          break;
+        case YEAR_4:
+          appendInt(out, year, 4);
+          break;
+        case MONTH_2:
+          appendInt(out, month, 2);
+          break;
+        case DAY_2:
+          appendInt(out, day, 2);
+          break;
+        case YEAR_2:
+          appendInt(out, Math.floorMod(year, 100), 2);
+          break;
+        case MONTH:
+          appendInt(out, month, 1);
+          break;
+        case DAY:
+          appendInt(out, day, 1);
+          break;
+      }
+    }
+    return out;
+  }
+
+  private int end(int i) {
+    return i + 1 < this.starts.length ? this.starts[i + 1] : this.pattern.length();
+  }
+
+  private static void appendPadded(StringBuilder sb, CharSequence s, int start, int end, int width) {
+    for (int i = end - start; i < width; i++)
+      sb.append('0');
+    sb.append(s, start, end);
+  }
+
+  /**
+   * Appends the decimal digits of a value, padded with zeroes to the given width.
+   */
+  private static void appendInt(Appendable out, int value, int width) throws IOException {
+    long v = value;
+    if (v < 0) {
+      out.append('-');
+      v = -v;
+    }
+    int digits = 1;
+    long pow = 1;
+    while (pow * 10 <= v) {
+      pow *= 10;
+      digits++;
+    }
+    for (int i = digits; i < width; i++)
+      out.append('0');
+    for (; pow > 0; pow /= 10)
+      out.append((char) ('0' + v / pow % 10));
+  }
+
+  @Override
+  public String toString() {
+    return this.pattern;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.util.Arrays;
+
+/**
+ * A key table assigns a dense integer ID to each key of the language files. Tables are usually
+ * generated from the reference language file by the "generateLangKeys" Gradle task, along with one
+ * constant per ID. Catalogs index their strings by ID the first time a table is used so that a
+ * lookup by ID is a single array access.
+ *
+ * @author Damien Vergnet
+ * @see Catalog#getLocalizedString(KeyTable, int)
+ */
+public final class KeyTable {
+  /**
+   * Creates a table from chunks of keys separated by line feeds. This is the form used by generated
+   * classes as string constants are limited in size.
+   * 
+   * @param chunks the chunks
+   * @return the table
+   */
+  public static KeyTable fromChunks(String... chunks) {
+    String keys = String.join("\n", chunks);
+    return keys.isEmpty() ? new KeyTable() : new KeyTable(keys.split("\n", -1));
+  }
+
+  private final String[] keys;
+
+  /**
+   * Creates a table. Each key's ID is its index.
+   * 
+   * @param keys the keys
+   */
+  public KeyTable(String... keys) {
+    this.keys = Arrays.copyOf(keys, keys.length);
+  }
+
+  /**
+   * @return the number of keys
+   */
+  public int size() {
+    return this.keys.length;
+  }
+
+  /**
+   * Returns the key with the given ID.
+   * 
+   * @param id the ID
+   * @return the key
+   * @throws ArrayIndexOutOfBoundsException if the ID is invalid
+   */
+  public String getKey(int id) {
+    return this.keys[id];
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A catalog backed by a hash map.
+ *
+ * @author Damien Vergnet
+ */
+final class MapCatalog extends Catalog {
+  private final Map<String, String> strings;
+
+  /**
+   * Creates a catalog.
+   * 
+   * @param locale the catalog's locale
+   * @param strings the strings; the map is used as is and must not be modified afterwards
+   */
+  MapCatalog(Locale locale, Map<String, String> strings) {
+    super(locale);
+    this.strings = Collections.unmodifiableMap(strings);
+  }
+
+  @Override
+  public int size() {
+    return this.strings.size();
+  }
+
+  @Override
+  public Set<String> keys() {
+    return this.strings.keySet();
+  }
+
+  @Override
+  public String get(String key) {
+    return this.strings.get(key);
+  }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message pattern parsed once into a list of parts. The syntax is a subset of ICU's message
+ * format:
+ * <ul>
+ * <li>{@code {n}} inserts the argument at index n</li>
+ * <li>{@code {n,plural,=0{none} one{# file} other{# files}}} selects a sub-message using the
+ * argument at index n, which must be a number; explicit values ({@code =N}) are checked before the
+ * plural categories and {@code #} is replaced by the number</li>
+ * <li>an apostrophe quotes the following characters until the next one, but only if it is directly
+ * followed by a special character ('{', '}', '#' or another apostrophe), so texts like "l'erreur"
+ * do not need escaping; {@code ''} always inserts a single apostrophe</li>
+ * </ul>
+ * Templates are immutable and thread-safe.
+ *
+ * @author Damien Vergnet
+ */
+public final class MessageTemplate {
+  /**
+   * Compiles a pattern.
+   * 
+   * @param pattern the pattern
+   * @return the template
+   * @throws IllegalArgumentException if the pattern is malformed
+   */
+  public static MessageTemplate compile(String pattern) {
+    Parser parser = new Parser(pattern);
+    Part[] parts = parser.parse(-1);
+
+    if (parser.pos < pattern.length())
+      throw parser.error("unmatched '}'");
+    return new MessageTemplate(pattern, parts);
+  }
+
+  /**
+   * Returns a template that outputs the given text as is.
+   * 
+   * @param text the text
+   * @return the template
+   */
+  public static MessageTemplate literal(String text) {
+    return new MessageTemplate(text, new Part[]{new Literal(text)});
+  }
+
+  private final String pattern;
+  private final Part[] parts;
+
+  private MessageTemplate(String pattern, Part[] parts) {
+    this.pattern = pattern;
+    this.parts = parts;
+  }
+
+  /**
+   * @return the source pattern
+   */
+  public String getPattern() {
+    return this.pattern;
+  }
+
+  /**
+   * Formats this template.
+   * 
+   * @param rules the plural rules to use
+   * @param args the arguments
+   * @return the formatted message
+   */
+  public String format(PluralRules rules, Object... args) {
+    return appendTo(new StringBuilder(this.pattern.length() + 16), rules, args).toString();
+  }
+
+  /**
+   * Appends this template to the given builder.
+   * 
+   * @param sb the builder
+   * @param rules the plural rules to use
+   * @param args the arguments; missing ones are output as {@code {n}}
+   * @return the builder
+   * @throws IllegalArgumentException if a plural argument is not a number
+   */
+  public StringBuilder appendTo(StringBuilder sb, PluralRules rules, Object... args) {
+    appendParts(this.parts, sb, rules, args, null);
+    return sb;
+  }
+
+  private static void appendParts(Part[] parts, StringBuilder sb, PluralRules rules, Object[] args, Number pluralArg) {
+    for (Part part : parts)
+      part.appendTo(sb, rules, args, pluralArg);
+  }
+
+  private static void appendArgument(StringBuilder sb, Object arg) {
+    if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte)
+      sb.append(((Number) arg).longValue());
+    else
+      sb.append(arg);
+  }
+
+  @Override
+  public String toString() {
+    return this.pattern;
+  }
+
+  private interface Part {
+    void appendTo(StringBuilder sb, PluralRules rules, Object[] args, Number pluralArg);
+  }
+
+  private static final class Literal implements Part {
+    private final String text;
+
+    Literal(String text) {
+      this.text = text;
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb, PluralRules rules, Object[] args, Number pluralArg) {
+      sb.append(this.text);
+    }
+  }
+
+  private static final class Argument implements Part {
+    private final int index;
+
+    Argument(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb, PluralRules rules, Object[] args, Number pluralArg) {
+      if (this.index < args.length)
+        appendArgument(sb, args[this.index]);
+      else
+        sb.append('{').append(this.index).append('}');
+    }
+  }
+
+  /** The '#' sign in a plural sub-message. */
+  private static final class PluralNumber implements Part {
+    static final PluralNumber INSTANCE = new PluralNumber();
+
+    @Override
+    public void appendTo(StringBuilder sb, PluralRules rules, Object[] args, Number pluralArg) {
+      appendArgument(sb, pluralArg);
+    }
+  }
+
+  private static final class Plural implements Part {
+    private final int index;
+    private final long[] explicitValues;
+    private final Part[][] explicitMessages;
+    private final Map<PluralRules.Category, Part[]> messages;
+
+    Plural(int index, long[] explicitValues, Part[][] explicitMessages, Map<PluralRules.Category, Part[]> messages) {
+      this.index = index;
+      this.explicitValues = explicitValues;
+      this.explicitMessages = explicitMessages;
+      this.messages = messages;
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb, PluralRules rules, Object[] args, Number pluralArg) {
+      if (this.index >= args.length) {
+        sb.append('{').append(this.index).append('}');
+        return;
+      }
+      if (!(args[this.index] instanceof Number))
+        throw new IllegalArgumentException("argument " + this.index + " is not a number: " + args[this.index]);
+
+      Number n = (Number) args[this.index];
+      boolean integer = n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+      if (integer) {
+        long value = n.longValue();
+        for (int i = 0; i < this.explicitValues.length; i++) {
+          if (this.explicitValues[i] == value) {
+            appendParts(this.explicitMessages[i], sb, rules, args, n);
+            return;
+          }
+        }
+      }
+
+      PluralRules.Category category = integer ? rules.select(n.longValue()) : rules.select(n.doubleValue());
+      Part[] message = this.messages.get(category);
+      appendParts(message != null ? message : this.messages.get(PluralRules.Category.OTHER), sb, rules, args, n);
+    }
+  }
+
+  private static final class Parser {
+    private final String pattern;
+    private int pos;
+
+    Parser(String pattern) {
+      this.pattern = pattern;
+    }
+
+    /**
+     * Parses parts until the end of the pattern or an unmatched '}'.
+     * 
+     * @param pluralIndex the index of the enclosing plural argument; -1 if none
+     */
+    Part[] parse(int pluralIndex) {
+      List<Part> parts = new ArrayList<>();
+      StringBuilder text = new StringBuilder();
+
+      while (this.pos < this.pattern.length()) {
+        char c = this.pattern.charAt(this.pos);
+
+        if (c == '\'' && this.pos + 1 < this.pattern.length() && isSpecial(this.pattern.charAt(this.pos + 1), pluralIndex)) {
+          if (this.pattern.charAt(this.pos + 1) == '\'') {
+            text.append('\'');
+            this.pos += 2;
+          }
+          else {
+            int end = this.pattern.indexOf('\'', this.pos + 1);
+            if (end < 0)
+              end = this.pattern.length();
+            text.append(this.pattern, this.pos + 1, end);
+            this.pos = end + 1;
+          }
+        }
+        else if (c == '{' || c == '}' || c == '#' && pluralIndex >= 0) {
+          if (text.length() > 0) {
+            parts.add(new Literal(text.toString()));
+            text.setLength(0);
+          }
+          if (c == '}')
+            break;
+          this.pos++;
+          parts.add(c == '#' ? PluralNumber.INSTANCE : parseArgument());
+        }
+        else {
+          text.append(c);
+          this.pos++;
+        }
+      }
+      if (text.length() > 0)
+        parts.add(new Literal(text.toString()));
+
+      return parts.toArray(new Part[parts.size()]);
+    }
+
+    private Part parseArgument() {
+      int index = parseInt();
+      skipSpaces();
+      if (consume('}'))
+        return new Argument(index);
+      expect(',');
+
+      String type = parseWord();
+      if (!"plural".equals(type))
+        throw error("unsupported argument type '" + type + "'");
+      expect(',');
+
+      List<Long> explicitValues = new ArrayList<>();
+      List<Part[]> explicitMessages = new ArrayList<>();
+      Map<PluralRules.Category, Part[]> messages = new EnumMap<>(PluralRules.Category.class);
+      skipSpaces();
+      while (!consume('}')) {
+        if (consume('=')) {
+          explicitValues.add((long) parseInt());
+          expect('{');
+          explicitMessages.add(parse(index));
+        }
+        else {
+          String keyword = parseWord();
+          PluralRules.Category category = PluralRules.Category.fromKeyword(keyword);
+          if (category == null)
+            throw error("unknown plural category '" + keyword + "'");
+          expect('{');
+          messages.put(category, parse(index));
+        }
+        expect('}');
+        skipSpaces();
+      }
+      if (!messages.containsKey(PluralRules.Category.OTHER))
+        throw error("missing 'other' plural category");
+
+      long[] values = new long[explicitValues.size()];
+      for (int i = 0; i < values.length; i++)
+        values[i] = explicitValues.get(i);
+      return new Plural(index, values, explicitMessages.toArray(new Part[values.length][]), messages);
+    }
+
+    private static boolean isSpecial(char c, int pluralIndex) {
+      return c == '\'' || c == '{' || c == '}' || c == '#' && pluralIndex >= 0;
+    }
+
+    private int parseInt() {
+      skipSpaces();
+      int start = this.pos;
+      while (this.pos < this.pattern.length() && this.pos - start < 9 && Character.isDigit(this.pattern.charAt(this.pos)))
+        this.pos++;
+      if (start == this.pos)
+        throw error("number expected");
+      return Integer.parseInt(this.pattern.substring(start, this.pos));
+    }
+
+    private String parseWord() {
+      skipSpaces();
+      int start = this.pos;
+      while (this.pos < this.pattern.length() && Character.isLetter(this.pattern.charAt(this.pos)))
+        this.pos++;
+      if (start == this.pos)
+        throw error("word expected");
+      return this.pattern.substring(start, this.pos);
+    }
+
+    private boolean consume(char c) {
+      skipSpaces();
+      if (this.pos < this.pattern.length() && this.pattern.charAt(this.pos) == c) {
+        this.pos++;
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(char c) {
+      if (!consume(c))
+        throw error("'" + c + "' expected");
+    }
+
+    private void skipSpaces() {
+      while (this.pos < this.pattern.length() && Character.isWhitespace(this.pattern.charAt(this.pos)))
+        this.pos++;
+    }
+
+    IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at index " + this.pos + " in \"" + this.pattern + "\"");
+    }
+  }
+}
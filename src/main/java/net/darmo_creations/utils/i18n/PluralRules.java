@@ -0,0 +1,265 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.util.Locale;
+
+/**
+ * Plural rules select the CLDR plural category of a number for a given language. Rules are
+ * implemented for the most common languages; languages without specific rules always use
+ * {@link Category#OTHER}.
+ *
+ * @author Damien Vergnet
+ */
+public abstract class PluralRules {
+  /**
+   * CLDR plural categories.
+   *
+   * @author Damien Vergnet
+   */
+  public enum Category {
+    ZERO,
+    ONE,
+    TWO,
+    FEW,
+    MANY,
+    OTHER;
+
+    /**
+     * Returns the category with the given CLDR keyword.
+     * 
+     * @param keyword the keyword, e.g. "one"
+     * @return the category or null if the keyword is unknown
+     */
+    public static Category fromKeyword(String keyword) {
+      for (Category c : values()) {
+        if (c.name().equalsIgnoreCase(keyword))
+          return c;
+      }
+      return null;
+    }
+  }
+
+  /** Rules for languages without plural forms (e.g. Japanese, Chinese). */
+  private static final PluralRules OTHER_ONLY = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      return Category.OTHER;
+    }
+  };
+
+  /** one: i = 1 and v = 0 (e.g. English, German, Italian). */
+  private static final PluralRules ONE_OTHER = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      return i == 1 && integer ? Category.ONE : Category.OTHER;
+    }
+  };
+
+  /** one: i = 0,1; many: large round numbers (e.g. French). */
+  private static final PluralRules FRENCH = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      if (i == 0 || i == 1)
+        return Category.ONE;
+      if (integer && i % 1000000 == 0)
+        return Category.MANY;
+      return Category.OTHER;
+    }
+  };
+
+  /** one: i = 0,1 (Portuguese). */
+  private static final PluralRules PORTUGUESE = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      return i == 0 || i == 1 ? Category.ONE : Category.OTHER;
+    }
+  };
+
+  /** East Slavic languages (Russian, Ukrainian, Belarusian). */
+  private static final PluralRules EAST_SLAVIC = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      if (!integer)
+        return Category.OTHER;
+      long mod10 = i % 10, mod100 = i % 100;
+      if (mod10 == 1 && mod100 != 11)
+        return Category.ONE;
+      if (mod10 >= 2 && mod10 <= 4 && (mod100 < 12 || mod100 > 14))
+        return Category.FEW;
+      return Category.MANY;
+    }
+  };
+
+  /** Polish. */
+  private static final PluralRules POLISH = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      if (!integer)
+        return Category.OTHER;
+      if (i == 1)
+        return Category.ONE;
+      long mod10 = i % 10, mod100 = i % 100;
+      if (mod10 >= 2 && mod10 <= 4 && (mod100 < 12 || mod100 > 14))
+        return Category.FEW;
+      return Category.MANY;
+    }
+  };
+
+  /** Czech and Slovak. */
+  private static final PluralRules CZECH = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      if (!integer)
+        return Category.MANY;
+      if (i == 1)
+        return Category.ONE;
+      if (i >= 2 && i <= 4)
+        return Category.FEW;
+      return Category.OTHER;
+    }
+  };
+
+  /** Romanian. */
+  private static final PluralRules ROMANIAN = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      if (!integer)
+        return Category.FEW;
+      if (i == 1)
+        return Category.ONE;
+      long mod100 = i % 100;
+      if (i == 0 || mod100 >= 1 && mod100 <= 19)
+        return Category.FEW;
+      return Category.OTHER;
+    }
+  };
+
+  /** Arabic. */
+  private static final PluralRules ARABIC = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      if (!integer)
+        return Category.OTHER;
+      if (i <= 2)
+        return i == 0 ? Category.ZERO : i == 1 ? Category.ONE : Category.TWO;
+      long mod100 = i % 100;
+      if (mod100 >= 3 && mod100 <= 10)
+        return Category.FEW;
+      if (mod100 >= 11)
+        return Category.MANY;
+      return Category.OTHER;
+    }
+  };
+
+  /** Hebrew. */
+  private static final PluralRules HEBREW = new PluralRules() {
+    @Override
+    protected Category select(long i, boolean integer) {
+      if (i == 1 && integer || i == 0 && !integer)
+        return Category.ONE;
+      if (i == 2 && integer)
+        return Category.TWO;
+      return Category.OTHER;
+    }
+  };
+
+  /**
+   * Returns the plural rules for the given locale's language.
+   * 
+   * @param locale the locale
+   * @return the rules
+   */
+  public static PluralRules forLocale(Locale locale) {
+    switch (locale.getLanguage()) {
+      case "en":
+      case "de":
+      case "nl":
+      case "sv":
+      case "da":
+      case "nb":
+      case "nn":
+      case "no":
+      case "fi":
+      case "et":
+      case "it":
+      case "es":
+      case "ca":
+      case "el":
+      case "hu":
+      case "bg":
+      case "tr":
+        return ONE_OTHER;
+      case "fr":
+        return FRENCH;
+      case "pt":
+        return PORTUGUESE;
+      case "ru":
+      case "uk":
+      case "be":
+        return EAST_SLAVIC;
+      case "pl":
+        return POLISH;
+      case "cs":
+      case "sk":
+        return CZECH;
+      case "ro":
+        return ROMANIAN;
+      case "ar":
+        return ARABIC;
+      case "he":
+      case "iw":
+        return HEBREW;
+      default:
+        return OTHER_ONLY;
+    }
+  }
+
+  /**
+   * Returns the category of an integer.
+   * 
+   * @param n the number
+   * @return its category
+   */
+  public Category select(long n) {
+    return select(Math.abs(n), true);
+  }
+
+  /**
+   * Returns the category of a number. Numbers with a fractional part are considered to have visible
+   * fraction digits.
+   * 
+   * @param n the number
+   * @return its category
+   */
+  public Category select(double n) {
+    double abs = Math.abs(n);
+    long i = (long) abs;
+    return select(i, i == abs);
+  }
+
+  /**
+   * Returns the category of a positive number.
+   * 
+   * @param i the integer part of the number
+   * @param integer true if the number has no visible fraction digits
+   * @return the category
+   */
+  protected abstract Category select(long i, boolean integer);
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A segment source loads the strings of a catalog one namespace at a time. The namespace of a key is
+ * the part before its first dot (e.g. "button" for "button.ok.text"), or the whole key if it has
+ * none. Segments are stored as language files named 'NAMESPACE.lang' in a folder named after the
+ * locale (e.g. en_US/button.lang); keys keep their full name inside the files.
+ *
+ * @author Damien Vergnet
+ * @see CatalogLoader#segmented(SegmentSource)
+ */
+public interface SegmentSource {
+  /**
+   * Loads a segment.
+   * 
+   * @param locale the locale
+   * @param namespace the namespace
+   * @return the strings of the segment; keys outside of the namespace are ignored
+   * @throws FileNotFoundException if the segment does not exist
+   * @throws IOException if the segment could not be read
+   */
+  Map<String, String> load(Locale locale, String namespace) throws IOException;
+
+  /**
+   * Lists the namespaces available for a locale.
+   * 
+   * @param locale the locale
+   * @return the namespaces
+   * @throws IOException if the namespaces could not be listed
+   */
+  Set<String> namespaces(Locale locale) throws IOException;
+
+  /**
+   * Returns the namespace of a key.
+   * 
+   * @param key the key
+   * @return the part before the first dot, or the whole key
+   */
+  static String getNamespace(String key) {
+    int i = key.indexOf('.');
+    return i < 0 ? key : key.substring(0, i);
+  }
+
+  /**
+   * Returns a source reading segments from the given directory.
+   * 
+   * @param directory the directory containing one folder per locale
+   * @return the source
+   */
+  static SegmentSource fromDirectory(Path directory) {
+    return new SegmentSource() {
+      @Override
+      public Map<String, String> load(Locale locale, String namespace) throws IOException {
+        try (InputStream in = Files.newInputStream(directory.resolve(locale.toString()).resolve(namespace + ".lang"))) {
+          return read(in);
+        }
+        catch (NoSuchFileException ex) {
+          throw new FileNotFoundException(ex.getFile());
+        }
+      }
+
+      @Override
+      public Set<String> namespaces(Locale locale) throws IOException {
+        Set<String> namespaces = new HashSet<>();
+        try (Stream<Path> files = Files.list(directory.resolve(locale.toString()))) {
+          files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".lang"))
+              .forEach(n -> namespaces.add(n.substring(0, n.length() - 5)));
+        }
+        return namespaces;
+      }
+    };
+  }
+
+  /**
+   * Returns a source reading segments from the given classpath folder. As a classpath folder cannot
+   * be listed, its namespaces must be given.
+   * 
+   * @param folder the folder containing one folder per locale, e.g. "/assets/lang"
+   * @param namespaces all available namespaces
+   * @return the source
+   */
+  static SegmentSource fromClasspath(String folder, Set<String> namespaces) {
+    Set<String> copy = new HashSet<>(namespaces);
+
+    return new SegmentSource() {
+      @Override
+      public Map<String, String> load(Locale locale, String namespace) throws IOException {
+        String name = folder + "/" + locale + "/" + namespace + ".lang";
+        try (InputStream in = SegmentSource.class.getResourceAsStream(name)) {
+          if (in == null)
+            throw new FileNotFoundException(name);
+          return read(in);
+        }
+      }
+
+      @Override
+      public Set<String> namespaces(Locale locale) {
+        return copy;
+      }
+    };
+  }
+
+  /**
+   * Reads a language file.
+   * 
+   * @param in the stream; it is not closed
+   * @return the strings
+   * @throws IOException if the stream could not be read
+   */
+  static Map<String, String> read(InputStream in) throws IOException {
+    Properties properties = new Properties();
+    properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+    Map<String, String> map = new HashMap<>((int) (properties.size() / 0.75f) + 1);
+    for (String key : properties.stringPropertyNames())
+      map.put(key, properties.getProperty(key));
+    return map;
+  }
+
+  /**
+   * Splits a catalog into segment files readable by {@link #fromDirectory(Path)}.
+   * 
+   * @param catalog the catalog
+   * @param directory the directory in which to create the locale's folder
+   * @throws IOException if a file could not be written
+   */
+  static void split(Catalog catalog, Path directory) throws IOException {
+    Map<String, Properties> segments = new HashMap<>();
+    for (String key : catalog.keys())
+      segments.computeIfAbsent(getNamespace(key), k -> new Properties()).setProperty(key, catalog.get(key));
+
+    Path folder = directory.resolve(catalog.getLocale().toString());
+    Files.createDirectories(folder);
+    for (Map.Entry<String, Properties> segment : segments.entrySet()) {
+      try (Writer writer = Files.newBufferedWriter(folder.resolve(segment.getKey() + ".lang"), StandardCharsets.UTF_8)) {
+        segment.getValue().store(writer, null);
+      }
+    }
+  }
+}
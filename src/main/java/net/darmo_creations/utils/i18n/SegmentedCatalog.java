@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A catalog whose segments are loaded on first access. Segments are held through soft references so
+ * that rarely used ones can be reclaimed under memory pressure; they are reloaded transparently if
+ * needed again. Missing segments are remembered as empty.
+ *
+ * @author Damien Vergnet
+ */
+final class SegmentedCatalog extends Catalog {
+  /** The empty map is always strongly reachable, this reference is never cleared. */
+  private static final SoftReference<Map<String, String>> MISSING = new SoftReference<>(Collections.emptyMap());
+
+  private final SegmentSource source;
+  private final ConcurrentHashMap<String, SoftReference<Map<String, String>>> segments;
+  /** The lock of each namespace, held while loading it. */
+  private final ConcurrentHashMap<String, Object> locks;
+
+  /**
+   * Creates a catalog. No segments are loaded.
+   * 
+   * @param locale the catalog's locale
+   * @param source the segments source
+   */
+  SegmentedCatalog(Locale locale, SegmentSource source) {
+    super(locale);
+    this.source = source;
+    this.segments = new ConcurrentHashMap<>();
+    this.locks = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the number of keys. All segments are loaded.
+   */
+  @Override
+  public int size() {
+    return keys().size();
+  }
+
+  /**
+   * Returns all keys. All segments are loaded.
+   */
+  @Override
+  public Set<String> keys() {
+    Set<String> keys = new HashSet<>();
+
+    try {
+      for (String namespace : this.source.namespaces(getLocale()))
+        keys.addAll(segment(namespace).keySet());
+    }
+    catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return Collections.unmodifiableSet(keys);
+  }
+
+  @Override
+  public String get(String key) {
+    return segment(SegmentSource.getNamespace(key)).get(key);
+  }
+
+  /**
+   * Loads the given namespace in the common fork-join pool if it is not loaded yet.
+   */
+  @Override
+  public CompletableFuture<Void> preload(String namespace) {
+    return CompletableFuture.runAsync(() -> segment(namespace));
+  }
+
+  /**
+   * Returns the segment for a namespace, loading it if needed. Each segment is loaded by only one
+   * thread at a time. If it could not be read, an empty segment is returned but not cached.
+   */
+  private Map<String, String> segment(String namespace) {
+    Map<String, String> segment = cached(namespace);
+
+    if (segment == null) {
+      // The segment is read outside of the map's locks so that other namespaces are not blocked.
+      synchronized (this.locks.computeIfAbsent(namespace, ns -> new Object())) {
+        segment = cached(namespace);
+        if (segment == null) {
+          segment = load(namespace);
+          if (segment != null)
+            this.segments.put(namespace, segment.isEmpty() ? MISSING : new SoftReference<>(segment));
+        }
+      }
+    }
+    return segment != null ? segment : Collections.emptyMap();
+  }
+
+  private Map<String, String> cached(String namespace) {
+    SoftReference<Map<String, String>> ref = this.segments.get(namespace);
+    return ref != null ? ref.get() : null;
+  }
+
+  /**
+   * @return the segment, an empty map if it does not exist or null if it could not be read
+   */
+  private Map<String, String> load(String namespace) {
+    try {
+      Map<String, String> strings = new HashMap<>(this.source.load(getLocale(), namespace));
+      strings.keySet().removeIf(key -> !namespace.equals(SegmentSource.getNamespace(key)));
+      return strings;
+    }
+    catch (FileNotFoundException ex) {
+      return Collections.emptyMap();
+    }
+    catch (IOException ex) {
+      return null;
+    }
+  }
+}
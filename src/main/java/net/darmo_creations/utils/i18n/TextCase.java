@@ -0,0 +1,279 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class provides case conversion methods working on code points. All methods read any
+ * {@link CharSequence} and can write to a caller-supplied {@link Appendable}. ASCII characters are
+ * converted directly without looking up Unicode tables; other characters are converted by the JDK
+ * according to the given locale (e.g. 'ß' becomes "SS" in upper case). Turkic locales are handled
+ * for dotted and dotless 'i' in ASCII text as well.
+ *
+ * @author Damien Vergnet
+ */
+public final class TextCase {
+  /**
+   * Converts the given text to title case: the first letter after each space is converted to title
+   * case, other characters are left unchanged.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @return the text in title case
+   */
+  public static String toTitleCase(CharSequence input, Locale locale) {
+    return toTitleCase(input, locale, new StringBuilder(input.length())).toString();
+  }
+
+  /**
+   * Converts the given text to title case and appends it to the given builder.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @param sb the builder
+   * @return the builder
+   * @see #toTitleCase(CharSequence, Locale)
+   */
+  public static StringBuilder toTitleCase(CharSequence input, Locale locale, StringBuilder sb) {
+    try {
+      toTitleCase(input, locale, (Appendable) sb);
+      return sb;
+    }
+    catch (IOException ex) {
+      // StringBuilder never throws.
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Converts the given text to title case and appends it to the given output.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @param out the output
+   * @return the output
+   * @throws IOException if the output throws one
+   * @see #toTitleCase(CharSequence, Locale)
+   */
+  public static <A extends Appendable> A toTitleCase(CharSequence input, Locale locale, A out) throws IOException {
+    boolean turkic = isTurkic(locale);
+    boolean nextTitleCase = true;
+    int length = input.length();
+
+    for (int i = 0; i < length;) {
+      char c = input.charAt(i);
+
+      if (c < 0x80) {
+        if (c == ' ') {
+          nextTitleCase = true;
+        }
+        else if (nextTitleCase) {
+          if (c >= 'a' && c <= 'z')
+            c = turkic && c == 'i' ? '\u0130' : (char) (c - 32);
+          nextTitleCase = false;
+        }
+        out.append(c);
+        i++;
+      }
+      else {
+        int cp = Character.codePointAt(input, i);
+        int n = Character.charCount(cp);
+
+        if (Character.isSpaceChar(cp)) {
+          nextTitleCase = true;
+          out.append(input, i, i + n);
+        }
+        else if (nextTitleCase) {
+          appendCodePoint(out, Character.toTitleCase(cp));
+          nextTitleCase = false;
+        }
+        else {
+          out.append(input, i, i + n);
+        }
+        i += n;
+      }
+    }
+
+    return out;
+  }
+
+  /**
+   * Converts the given text to upper case.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @return the text in upper case
+   */
+  public static String toUpperCase(CharSequence input, Locale locale) {
+    return toUpperCase(input, locale, new StringBuilder(input.length())).toString();
+  }
+
+  /**
+   * Converts the given text to upper case and appends it to the given builder.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @param sb the builder
+   * @return the builder
+   */
+  public static StringBuilder toUpperCase(CharSequence input, Locale locale, StringBuilder sb) {
+    try {
+      return convert(input, locale, sb, true);
+    }
+    catch (IOException ex) {
+      // StringBuilder never throws.
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Converts the given text to upper case and appends it to the given output.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @param out the output
+   * @return the output
+   * @throws IOException if the output throws one
+   */
+  public static <A extends Appendable> A toUpperCase(CharSequence input, Locale locale, A out) throws IOException {
+    return convert(input, locale, out, true);
+  }
+
+  /**
+   * Converts the given text to lower case.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @return the text in lower case
+   */
+  public static String toLowerCase(CharSequence input, Locale locale) {
+    return toLowerCase(input, locale, new StringBuilder(input.length())).toString();
+  }
+
+  /**
+   * Converts the given text to lower case and appends it to the given builder.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @param sb the builder
+   * @return the builder
+   */
+  public static StringBuilder toLowerCase(CharSequence input, Locale locale, StringBuilder sb) {
+    try {
+      return convert(input, locale, sb, false);
+    }
+    catch (IOException ex) {
+      // StringBuilder never throws.
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Converts the given text to lower case and appends it to the given output.
+   * 
+   * @param input the text
+   * @param locale the locale
+   * @param out the output
+   * @return the output
+   * @throws IOException if the output throws one
+   */
+  public static <A extends Appendable> A toLowerCase(CharSequence input, Locale locale, A out) throws IOException {
+    return convert(input, locale, out, false);
+  }
+
+  /**
+   * Converts all given texts to title case in parallel, using the common fork-join pool.
+   * 
+   * @param inputs the texts
+   * @param locale the locale
+   * @return a new array with the converted texts
+   */
+  public static String[] toTitleCase(String[] inputs, Locale locale) {
+    String[] result = new String[inputs.length];
+    Arrays.parallelSetAll(result, i -> toTitleCase(inputs[i], locale));
+    return result;
+  }
+
+  /**
+   * Converts all given texts to title case in parallel, using the given fork-join pool.
+   * 
+   * @param inputs the texts
+   * @param locale the locale
+   * @param pool the pool
+   * @return a new array with the converted texts
+   */
+  public static String[] toTitleCase(String[] inputs, Locale locale, ForkJoinPool pool) {
+    // Parallel streams and arrays use the pool of the task they are run from.
+    return pool.submit(() -> toTitleCase(inputs, locale)).join();
+  }
+
+  /**
+   * Converts ASCII characters directly and delegates runs of other characters to the JDK.
+   */
+  private static <A extends Appendable> A convert(CharSequence input, Locale locale, A out, boolean upper) throws IOException {
+    boolean turkic = isTurkic(locale);
+    int length = input.length();
+
+    for (int i = 0; i < length;) {
+      char c = input.charAt(i);
+
+      if (c < 0x80) {
+        if (upper && c >= 'a' && c <= 'z')
+          out.append(turkic && c == 'i' ? '\u0130' : (char) (c - 32));
+        else if (!upper && c >= 'A' && c <= 'Z')
+          out.append(turkic && c == 'I' ? '\u0131' : (char) (c + 32));
+        else
+          out.append(c);
+        i++;
+      }
+      else {
+        int end = i + 1;
+        while (end < length && input.charAt(end) >= 0x80)
+          end++;
+        String run = input.subSequence(i, end).toString();
+        out.append(upper ? run.toUpperCase(locale) : run.toLowerCase(locale));
+        i = end;
+      }
+    }
+
+    return out;
+  }
+
+  private static void appendCodePoint(Appendable out, int cp) throws IOException {
+    if (Character.isBmpCodePoint(cp)) {
+      out.append((char) cp);
+    }
+    else {
+      out.append(Character.highSurrogate(cp));
+      out.append(Character.lowSurrogate(cp));
+    }
+  }
+
+  private static boolean isTurkic(Locale locale) {
+    String language = locale.getLanguage();
+    return "tr".equals(language) || "az".equals(language);
+  }
+
+  private TextCase() {}
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.profiling;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class records a timeline of the startup of an application. Code is split into named phases,
+ * which follow each other, and spans, which may be nested. Events are stored in a preallocated
+ * {@code long} array along with the number of classes loaded so far, then dumped as a Chrome trace
+ * (JSON) that can be opened in chrome://tracing or https://ui.perfetto.dev.
+ * <p>
+ * The profiler is disabled by default; it costs a single volatile read per span then. It can be
+ * enabled with {@link #enable(int)} or by setting the system property {@value #OUTPUT_PROPERTY} to
+ * the path of the trace file, which is written when the JVM exits. The library's subsystems record
+ * their own spans (I18n initialization, events registration, etc.).
+ * </p>
+ * 
+ * <pre>
+ * StartupProfiler.phase("ui");
+ * StartupProfiler.Span span = StartupProfiler.begin("MainFrame");
+ * try {
+ *   new MainFrame();
+ * }
+ * finally {
+ *   span.end();
+ * }
+ * </pre>
+ *
+ * @author Damien Vergnet
+ */
+public final class StartupProfiler {
+  /** The system property enabling the profiler; its value is the path of the trace file. */
+  public static final String OUTPUT_PROPERTY = "net.darmo_creations.profiler.output";
+  /** The default maximum number of events. */
+  public static final int DEFAULT_CAPACITY = 1 << 14;
+
+  private static final int BEGIN = 0, END = 1, INSTANT = 2;
+  /** The number of longs per event: time, thread, name and kind, loaded classes. */
+  private static final int SLOT = 4;
+  /** The pseudo-thread holding phases. */
+  private static final long PHASES_THREAD = 0;
+  private static final Span NO_OP = new Span(null, 0, 0);
+  private static final Logger LOGGER = LoggerFactory.getLogger(StartupProfiler.class);
+
+  private static volatile Recorder recorder;
+
+  static {
+    String output = System.getProperty(OUTPUT_PROPERTY);
+    if (output != null) {
+      enable(DEFAULT_CAPACITY);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          dump(Paths.get(output));
+        }
+        catch (IOException e) {
+          LOGGER.error("Could not write the startup trace to {}", output, e);
+        }
+      }, "profiler-dump"));
+    }
+  }
+
+  /**
+   * Enables the profiler. Previously recorded events are discarded.
+   * 
+   * @param capacity the maximum number of events; further events are dropped
+   */
+  public static void enable(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("capacity must be positive");
+    recorder = new Recorder(capacity);
+  }
+
+  /**
+   * Disables the profiler and discards the recorded events.
+   */
+  public static void disable() {
+    recorder = null;
+  }
+
+  /**
+   * @return true if the profiler is enabled
+   */
+  public static boolean isEnabled() {
+    return recorder != null;
+  }
+
+  /**
+   * Starts a span in the current thread. It ends when {@link Span#end()} is called, which should be
+   * done in a finally block.
+   * 
+   * @param name the span's name
+   * @return the span
+   */
+  public static Span begin(String name) {
+    Recorder r = recorder;
+    if (r == null)
+      return NO_OP;
+    long thread = Thread.currentThread().getId();
+    int id = r.nameId(name);
+    r.record(BEGIN, id, thread);
+    return new Span(r, id, thread);
+  }
+
+  /**
+   * Ends the current phase, if any, and starts a new one.
+   * 
+   * @param name the phase's name
+   */
+  public static void phase(String name) {
+    Recorder r = recorder;
+    if (r != null)
+      r.phase(r.nameId(name));
+  }
+
+  /**
+   * Ends the current phase, if any.
+   */
+  public static void endPhase() {
+    Recorder r = recorder;
+    if (r != null)
+      r.phase(-1);
+  }
+
+  /**
+   * Records an instant event, e.g. when the first window is shown.
+   * 
+   * @param name the event's name
+   */
+  public static void mark(String name) {
+    Recorder r = recorder;
+    if (r != null)
+      r.record(INSTANT, r.nameId(name), Thread.currentThread().getId());
+  }
+
+  /**
+   * @return the number of events that were dropped because the buffer was full
+   */
+  public static int getDroppedCount() {
+    Recorder r = recorder;
+    return r != null ? r.dropped.get() : 0;
+  }
+
+  /**
+   * Writes the recorded events to a file in the Chrome trace format. It should be called once the
+   * startup is over; events recorded concurrently may be missing.
+   * 
+   * @param file the file
+   * @throws IOException if the file could not be written
+   * @throws IllegalStateException if the profiler is disabled
+   */
+  public static void dump(Path file) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      dump(writer);
+    }
+  }
+
+  /**
+   * Writes the recorded events in the Chrome trace format. Matching begin and end events are written
+   * as complete events whose arguments give the number of classes loaded during the span.
+   * 
+   * @param writer the writer; it is not closed
+   * @throws IOException if an I/O error occurs
+   * @throws IllegalStateException if the profiler is disabled
+   */
+  public static void dump(Writer writer) throws IOException {
+    Recorder r = recorder;
+    if (r == null)
+      throw new IllegalStateException("profiler disabled");
+    r.dump(writer instanceof BufferedWriter ? writer : new BufferedWriter(writer));
+  }
+
+  private StartupProfiler() {}
+
+  /**
+   * A span, ended by {@link #end()}.
+   *
+   * @author Damien Vergnet
+   */
+  public static final class Span {
+    private final Recorder recorder;
+    private final int nameId;
+    private final long thread;
+
+    private Span(Recorder recorder, int nameId, long thread) {
+      this.recorder = recorder;
+      this.nameId = nameId;
+      this.thread = thread;
+    }
+
+    /**
+     * Ends this span. Spans must be ended in the thread that started them.
+     */
+    public void end() {
+      if (this.recorder != null)
+        this.recorder.record(END, this.nameId, this.thread);
+    }
+  }
+
+  /**
+   * The event buffer of an enabled profiler.
+   *
+   * @author Damien Vergnet
+   */
+  private static class Recorder {
+    private final long[] events;
+    private final int capacity;
+    /** The number of reserved slots, never above the capacity. */
+    private final AtomicInteger next;
+    /** Tells which slots are fully written; the others are skipped by dumps. */
+    private final AtomicIntegerArray written;
+    private final AtomicInteger dropped;
+    private final long origin;
+    private final ClassLoadingMXBean classLoading;
+    private final Map<String, Integer> nameIds;
+    private final List<String> names;
+    private final Map<Long, String> threadNames;
+    /** The name ID of the current phase; -1 if none. */
+    private int phase;
+
+    Recorder(int capacity) {
+      this.events = new long[capacity * SLOT];
+      this.capacity = capacity;
+      this.next = new AtomicInteger();
+      this.written = new AtomicIntegerArray(capacity);
+      this.dropped = new AtomicInteger();
+      this.origin = System.nanoTime();
+      this.classLoading = ManagementFactory.getClassLoadingMXBean();
+      this.nameIds = new ConcurrentHashMap<>();
+      this.names = new ArrayList<>();
+      this.threadNames = new ConcurrentHashMap<>();
+      this.phase = -1;
+    }
+
+    int nameId(String name) {
+      Integer id = this.nameIds.get(name);
+      if (id != null)
+        return id;
+      synchronized (this.names) {
+        return this.nameIds.computeIfAbsent(name, n -> {
+          this.names.add(n);
+          return this.names.size() - 1;
+        });
+      }
+    }
+
+    synchronized void phase(int nameId) {
+      if (this.phase >= 0)
+        record(END, this.phase, PHASES_THREAD);
+      this.phase = nameId;
+      if (nameId >= 0)
+        record(BEGIN, nameId, PHASES_THREAD);
+    }
+
+    void record(int kind, int nameId, long thread) {
+      int i;
+      do {
+        i = this.next.get();
+        if (i >= this.capacity) {
+          this.dropped.incrementAndGet();
+          return;
+        }
+      } while (!this.next.compareAndSet(i, i + 1));
+      if (thread != PHASES_THREAD && !this.threadNames.containsKey(thread))
+        this.threadNames.put(thread, Thread.currentThread().getName());
+
+      int base = i * SLOT;
+      this.events[base] = System.nanoTime() - this.origin;
+      this.events[base + 1] = thread;
+      this.events[base + 2] = (long) nameId << 2 | kind;
+      this.events[base + 3] = this.classLoading.getTotalLoadedClassCount();
+      this.written.set(i, 1);
+    }
+
+    void dump(Writer writer) throws IOException {
+      int count = this.next.get();
+      List<String> names;
+      synchronized (this.names) {
+        names = new ArrayList<>(this.names);
+      }
+      // Indices of the open begin events of each thread
+      Map<Long, Deque<Integer>> open = new HashMap<>();
+
+      writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+      writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"Phases\"}}");
+      for (Map.Entry<Long, String> e : this.threadNames.entrySet()) {
+        writer.write(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + e.getKey() + ",\"args\":{\"name\":");
+        writeString(writer, e.getValue());
+        writer.write("}}");
+      }
+
+      for (int i = 0; i < count; i++) {
+        // The slot is reserved but the event is still being written.
+        if (this.written.get(i) == 0)
+          continue;
+        int base = i * SLOT;
+        long thread = this.events[base + 1];
+        int kind = (int) (this.events[base + 2] & 3);
+        if (kind == BEGIN) {
+          open.computeIfAbsent(thread, t -> new ArrayDeque<>()).push(i);
+        }
+        else if (kind == INSTANT) {
+          writeEvent(writer, names, base, "i", ",\"s\":\"t\"");
+        }
+        else {
+          Deque<Integer> stack = open.get(thread);
+          if (stack == null || stack.isEmpty())
+            continue;
+          int begin = stack.pop() * SLOT;
+          long duration = this.events[base] - this.events[begin];
+          long classes = this.events[base + 3] - this.events[begin + 3];
+          writeEvent(writer, names, begin, "X", ",\"dur\":" + micros(duration) + ",\"args\":{\"classesLoaded\":" + classes + "}");
+        }
+      }
+      // Spans still open
+      for (Deque<Integer> stack : open.values()) {
+        for (int i : stack)
+          writeEvent(writer, names, i * SLOT, "B", "");
+      }
+
+      writer.write("\n]}\n");
+      writer.flush();
+    }
+
+    private void writeEvent(Writer writer, List<String> names, int base, String phase, String extra) throws IOException {
+      writer.write(",\n{\"name\":");
+      writeString(writer, names.get((int) (this.events[base + 2] >>> 2)));
+      writer.write(",\"ph\":\"" + phase + "\",\"pid\":1,\"tid\":" + this.events[base + 1] + ",\"ts\":" + micros(this.events[base])
+          + extra + "}");
+    }
+
+    private static String micros(long nanos) {
+      return nanos / 1000 + "." + String.format("%03d", nanos % 1000);
+    }
+
+    private static void writeString(Writer writer, String s) throws IOException {
+      writer.write('"');
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c == '"' || c == '\\')
+          writer.write('\\');
+        if (c < 0x20)
+          writer.write(String.format("\\u%04x", (int) c));
+        else
+          writer.write(c);
+      }
+      writer.write('"');
+    }
+  }
+}
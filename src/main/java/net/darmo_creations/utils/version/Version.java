@@ -18,9 +18,10 @@
  */
 package net.darmo_creations.utils.version;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class represents a version number of the following format:
@@ -35,25 +36,244 @@ import java.util.regex.Pattern;
  * <li>{@code d}: indicates that this is a development version</li>
  * </ul>
  * E.g.: {@code 1.2}, {@code 2.0.6d}, {@code 3.4d}, {@code 1.0.6}…
+ * <p>
+ * Parsing is done in a single pass without allocating anything but the returned version. Parsed
+ * versions are interned: equal versions usually share the same instance, though this is not
+ * guaranteed so they should still be compared using {@link #equals(Object)}.
+ * </p>
  *
  * @author Damien Vergnet
  */
 public final class Version implements Comparable<Version> {
-  private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+)\\.(\\d+)(?:\\.(\\d+))?(d)?");
+  /** Number of interned versions, must be a power of 2. */
+  private static final int CACHE_SIZE = 1024;
+  private static final AtomicReferenceArray<Version> CACHE = new AtomicReferenceArray<>(CACHE_SIZE);
 
+  /**
+   * Parses a version.
+   * 
+   * @param version the version
+   * @return the version
+   * @throws ParseException if the string is not a valid version
+   * @see #parse(CharSequence)
+   */
   public static Version fromString(String version) throws ParseException {
-    Matcher m = VERSION_PATTERN.matcher(version);
+    return parse(version);
+  }
+
+  /**
+   * Parses a version. Numbers must fit in an int.
+   * 
+   * @param version the version
+   * @return the version
+   * @throws ParseException if the text is not a valid version; the error offset is the position of the
+   *           first invalid character
+   */
+  public static Version parse(CharSequence version) throws ParseException {
+    return parse(version, 0, version.length(), true);
+  }
+
+  /**
+   * Parses a version encoded in ASCII or UTF-8.
+   * 
+   * @param version the encoded version
+   * @param offset index of the first byte
+   * @param length number of bytes
+   * @return the version
+   * @throws ParseException if the bytes are not a valid version; the error offset is relative to
+   *           {@code offset}
+   */
+  public static Version parse(byte[] version, int offset, int length) throws ParseException {
+    checkRange(version.length, offset, length);
+    return parse(version, offset, offset + length, true);
+  }
+
+  /**
+   * Parses the remaining bytes of a buffer, encoded in ASCII or UTF-8. The buffer's position is not
+   * modified.
+   * 
+   * @param version the encoded version
+   * @return the version
+   * @throws ParseException if the bytes are not a valid version; the error offset is relative to the
+   *           buffer's position
+   */
+  public static Version parse(ByteBuffer version) throws ParseException {
+    return parse(version, version.position(), version.limit(), true);
+  }
+
+  /**
+   * Parses a version without throwing any exception. This should be preferred when invalid versions
+   * are expected.
+   * 
+   * @param version the version
+   * @return the version or null if the text is not a valid version
+   */
+  public static Version tryParse(CharSequence version) {
+    return parseQuietly(version, 0, version.length());
+  }
+
+  /**
+   * Parses a version encoded in ASCII or UTF-8 without throwing any exception.
+   * 
+   * @param version the encoded version
+   * @param offset index of the first byte
+   * @param length number of bytes
+   * @return the version or null if the bytes are not a valid version
+   */
+  public static Version tryParse(byte[] version, int offset, int length) {
+    checkRange(version.length, offset, length);
+    return parseQuietly(version, offset, offset + length);
+  }
+
+  /**
+   * Parses the remaining bytes of a buffer, encoded in ASCII or UTF-8, without throwing any exception.
+   * The buffer's position is not modified.
+   * 
+   * @param version the encoded version
+   * @return the version or null if the bytes are not a valid version
+   */
+  public static Version tryParse(ByteBuffer version) {
+    return parseQuietly(version, version.position(), version.limit());
+  }
+
+  /**
+   * Returns the interned version with the given components.
+   * 
+   * @param major major version
+   * @param minor minor version
+   * @param patch patch version
+   * @param indev is it in development?
+   * @return the version
+   */
+  public static Version of(int major, int minor, int patch, boolean indev) {
+    int hash = hash(major, minor, patch, indev);
+    int slot = (hash ^ hash >>> 16) & (CACHE_SIZE - 1);
+    Version v = CACHE.get(slot);
+
+    if (v == null || v.major != major || v.minor != minor || v.patch != patch || v.indev != indev) {
+      v = new Version(major, minor, patch, indev);
+      // A concurrent parser may replace it, the cache only has to be right, not complete.
+      CACHE.lazySet(slot, v);
+    }
+
+    return v;
+  }
+
+  private static Version parseQuietly(Object source, int start, int end) {
+    try {
+      return parse(source, start, end, false);
+    }
+    catch (ParseException e) {
+      // Not thrown when quiet.
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Parses a version from a CharSequence, a byte array or a ByteBuffer.
+   * 
+   * @param source the source
+   * @param start index of the first character
+   * @param end index after the last character
+   * @param throwing if true, errors throw an exception; otherwise null is returned
+   */
+  private static Version parse(Object source, int start, int end, boolean throwing) throws ParseException {
+    int i = start;
 
-    if (m.matches()) {
-      int major = Integer.parseInt(m.group(1));
-      int minor = Integer.parseInt(m.group(2));
-      int patch = m.group(3) != null ? Integer.parseInt(m.group(3)) : 0;
-      boolean indev = "d".equals(m.group(4));
+    long major = readNumber(source, i, end);
+    if (major < 0)
+      return fail(source, start, end, i, throwing);
+    i = (int) major;
+    if (i == end || charAt(source, i) != '.')
+      return fail(source, start, end, i, throwing);
+    i++;
 
-      return new Version(major, minor, patch, indev);
+    long minor = readNumber(source, i, end);
+    if (minor < 0)
+      return fail(source, start, end, i, throwing);
+    i = (int) minor;
+
+    long patch = 0;
+    if (i < end && charAt(source, i) == '.') {
+      i++;
+      patch = readNumber(source, i, end);
+      if (patch < 0)
+        return fail(source, start, end, i, throwing);
+      i = (int) patch;
     }
 
-    throw new ParseException(version, -1);
+    boolean indev = i < end && charAt(source, i) == 'd';
+    if (indev)
+      i++;
+    if (i != end)
+      return fail(source, start, end, i, throwing);
+
+    return of((int) (major >>> 32), (int) (minor >>> 32), (int) (patch >>> 32), indev);
+  }
+
+  /**
+   * Reads a decimal number.
+   * 
+   * @return the value in the upper 32 bits and the index after the number in the lower ones or -1 if
+   *         there are no digits or the value does not fit in an int
+   */
+  private static long readNumber(Object source, int start, int end) {
+    int value = 0;
+    int i = start;
+
+    for (; i < end; i++) {
+      int digit = charAt(source, i) - '0';
+      if (digit < 0 || digit > 9)
+        break;
+      if (value > (Integer.MAX_VALUE - digit) / 10)
+        return -1;
+      value = value * 10 + digit;
+    }
+
+    return i == start ? -1 : (long) value << 32 | i;
+  }
+
+  private static int charAt(Object source, int i) {
+    if (source instanceof byte[])
+      return ((byte[]) source)[i];
+    if (source instanceof ByteBuffer)
+      return ((ByteBuffer) source).get(i);
+    return ((CharSequence) source).charAt(i);
+  }
+
+  private static Version fail(Object source, int start, int end, int index, boolean throwing) throws ParseException {
+    if (!throwing)
+      return null;
+
+    String text;
+    if (source instanceof CharSequence) {
+      text = ((CharSequence) source).subSequence(start, end).toString();
+    }
+    else {
+      byte[] bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; i++)
+        bytes[i] = (byte) charAt(source, start + i);
+      text = new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    throw new ParseException(text, index - start);
+  }
+
+  private static void checkRange(int size, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > size - length)
+      throw new IndexOutOfBoundsException(String.format("offset %d, length %d, size %d", offset, length, size));
+  }
+
+  private static int hash(int major, int minor, int patch, boolean indev) {
+    final int prime = 31;
+    int result = 1;
+
+    result = prime * result + (indev ? 1231 : 1237);
+    result = prime * result + major;
+    result = prime * result + minor;
+    result = prime * result + patch;
+
+    return result;
   }
 
   private final int major, minor, patch;
@@ -142,15 +362,7 @@ public final class Version implements Comparable<Version> {
 
   @Override
   public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-
-    result = prime * result + (this.indev ? 1231 : 1237);
-    result = prime * result + this.major;
-    result = prime * result + this.minor;
-    result = prime * result + this.patch;
-
-    return result;
+    return hash(this.major, this.minor, this.patch, this.indev);
   }
 
   @Override
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class compares the read throughput of {@link ConcurrentUndoRedoManager} with a manager
+ * guarded by a lock while a writer keeps modifying it.
+ *
+ * @author Damien Vergnet
+ */
+public class ConcurrentUndoRedoManagerBenchmark {
+  private static final int READERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+  private static final long DURATION = 2000;
+
+  public static void main(String[] args) throws InterruptedException {
+    for (int i = 0; i < 2; i++) {
+      run("synchronized", new SynchronizedUndoRedoManager<>());
+      run("concurrent", new ConcurrentUndoRedoManager<>());
+    }
+  }
+
+  private static void run(String name, UndoRedoManager<Integer> manager) throws InterruptedException {
+    LongAdder reads = new LongAdder();
+    LongAdder writes = new LongAdder();
+    CountDownLatch start = new CountDownLatch(1);
+    long[] end = new long[1];
+    Thread[] threads = new Thread[READERS + 1];
+
+    manager.addEdit(0);
+    for (int i = 0; i < READERS; i++) {
+      threads[i] = new Thread(() -> {
+        await(start);
+        long n = 0;
+        while (System.currentTimeMillis() < end[0]) {
+          manager.getEdit();
+          n++;
+        }
+        reads.add(n);
+      });
+    }
+    threads[READERS] = new Thread(() -> {
+      await(start);
+      long n = 0;
+      while (System.currentTimeMillis() < end[0]) {
+        if (manager.canUndo() && (n & 3) == 0)
+          manager.undo();
+        else
+          manager.addEdit((int) n);
+        n++;
+      }
+      writes.add(n);
+    });
+
+    for (Thread t : threads)
+      t.start();
+    end[0] = System.currentTimeMillis() + DURATION;
+    start.countDown();
+    for (Thread t : threads)
+      t.join();
+
+    System.out.printf("%-12s %d readers: %,d reads/s, %,d writes/s%n", name, READERS, reads.sum() * 1000 / DURATION,
+        writes.sum() * 1000 / DURATION);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class SynchronizedUndoRedoManager<T> extends UndoRedoManager<T> {
+    @Override
+    public synchronized void addEdit(T edit) {
+      super.addEdit(edit);
+    }
+
+    @Override
+    public synchronized T getEdit() {
+      return super.getEdit();
+    }
+
+    @Override
+    public synchronized void undo() {
+      super.undo();
+    }
+
+    @Override
+    public synchronized boolean canUndo() {
+      return super.canUndo();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentUndoRedoManagerTest {
+  private ConcurrentUndoRedoManager<Integer> manager;
+
+  @Before
+  public void setUp() {
+    this.manager = new ConcurrentUndoRedoManager<>();
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetEditEmpty() {
+    this.manager.getEdit();
+  }
+
+  @Test
+  public void testStatePublished() {
+    this.manager.addEdit(0);
+    this.manager.addEdit(1);
+    this.manager.undo();
+    ConcurrentUndoRedoManager.State<Integer> state = this.manager.getState();
+    assertEquals(Integer.valueOf(0), state.getEdit());
+    assertFalse(state.canUndo());
+    assertTrue(state.canRedo());
+    assertEquals(2, state.size());
+  }
+
+  @Test
+  public void testClearPublished() {
+    this.manager.addEdit(0);
+    this.manager.clear();
+    assertEquals(-1, this.manager.getCurrentNode());
+    assertFalse(this.manager.canUndo());
+  }
+
+  /**
+   * Each edit is its depth in the history. Readers check that the published states are consistent
+   * while a writer randomly adds and undoes edits.
+   */
+  @Test
+  public void testReadersSeeConsistentStates() throws InterruptedException {
+    AtomicBoolean stop = new AtomicBoolean();
+    AtomicReference<String> failure = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+
+    this.manager.addEdit(0);
+    for (int i = 0; i < 4; i++) {
+      Thread reader = new Thread(() -> {
+        while (!stop.get() && failure.get() == null) {
+          ConcurrentUndoRedoManager.State<Integer> state = this.manager.getState();
+          int depth = state.getEdit();
+          if (state.canUndo() != depth > 0 || state.size() <= depth)
+            failure.set("inconsistent state: depth " + depth + ", canUndo " + state.canUndo() + ", size " + state.size());
+        }
+      });
+      readers.add(reader);
+      reader.start();
+    }
+
+    Random random = new Random(0);
+    long end = System.currentTimeMillis() + 300;
+    while (System.currentTimeMillis() < end && failure.get() == null) {
+      if (this.manager.canUndo() && random.nextInt(3) == 0)
+        this.manager.undo();
+      else
+        this.manager.addEdit(this.manager.getEdit() + 1);
+    }
+    stop.set(true);
+    for (Thread reader : readers)
+      reader.join();
+
+    assertNull(failure.get());
+  }
+}
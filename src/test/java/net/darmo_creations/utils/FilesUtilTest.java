@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class FilesUtilTest {
+  @Test
+  public void testGetExtension() {
+    assertEquals(Optional.of("txt"), FilesUtil.getExtension((CharSequence) "dir/file.txt"));
+    assertEquals(Optional.of("gz"), FilesUtil.getExtension(Paths.get("dir", "archive.tar.gz")));
+  }
+
+  @Test
+  public void testGetExtensionNoDot() {
+    assertEquals(Optional.empty(), FilesUtil.getExtension((CharSequence) "Makefile"));
+    assertEquals(Optional.empty(), FilesUtil.getExtension((CharSequence) "some.dir/Makefile"));
+    assertEquals(Optional.empty(), FilesUtil.getExtension(Paths.get("some.dir", "Makefile")));
+  }
+
+  @Test
+  public void testHasExtension() {
+    assertTrue(FilesUtil.hasExtension((CharSequence) "image.PNG", "png"));
+    assertTrue(FilesUtil.hasExtension(Paths.get("image.png"), "Png"));
+    assertFalse(FilesUtil.hasExtension((CharSequence) "image.png", "pn"));
+    assertFalse(FilesUtil.hasExtension((CharSequence) "image.pngs", "png"));
+    assertFalse(FilesUtil.hasExtension((CharSequence) "png", "png"));
+  }
+}
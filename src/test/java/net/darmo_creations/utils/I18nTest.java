@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.darmo_creations.utils.i18n.Catalog;
+import net.darmo_creations.utils.i18n.KeyTable;
+
+public class I18nTest {
+  private static final String LANG = "date.format=D/M/Y\n" + "button.ok.text=OK\n" + "button.ok.text.mnemonic=O\n"
+      + "word.cat=chat\n" + "word.cat.feminine=chatte\n";
+
+  @Before
+  public void setUp() throws IOException {
+    I18n.init(new ByteArrayInputStream(LANG.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testGetLocalizedString() {
+    assertEquals("OK", I18n.getLocalizedString("button.ok.text"));
+  }
+
+  @Test
+  public void testGetLocalizedStringMissing() {
+    assertEquals("button.cancel.text", I18n.getLocalizedString("button.cancel.text"));
+  }
+
+  @Test
+  public void testGetLocalizedWord() {
+    assertEquals("chatte", I18n.getLocalizedWord("cat", true, false));
+    assertEquals("word.cat.plural", I18n.getLocalizedWord("cat", false, true));
+  }
+
+  @Test
+  public void testGetLocalizedMnemonic() {
+    assertEquals('O', I18n.getLocalizedMnemonic("button.ok.text"));
+    assertEquals('\0', I18n.getLocalizedMnemonic("button.cancel.text"));
+  }
+
+  @Test
+  public void testGetFormattedDate() {
+    assertEquals("06/08/2017", I18n.getFormattedDate(2017, 8, 6));
+  }
+
+  @Test
+  public void testMissingKeysCounted() {
+    I18n.getLocalizedString("missing");
+    I18n.getLocalizedString("missing");
+    I18n.getLocalizedMnemonic("button.ok.text");
+    assertEquals(Long.valueOf(2), I18n.getMissingKeys().get("missing"));
+    assertEquals(1, I18n.getMissingKeys().size());
+  }
+
+  @Test
+  public void testCatalogsLoadedOnce() throws IOException {
+    AtomicInteger loads = new AtomicInteger();
+    I18n.setCatalogLoader(locale -> {
+      loads.incrementAndGet();
+      return Catalog.of(locale, Collections.singletonMap("button.ok.text", "OK " + locale));
+    });
+    Locale current = I18n.getLocale();
+
+    assertEquals("OK fr_FR", I18n.getCatalog(Locale.FRANCE).getLocalizedString("button.ok.text"));
+    I18n.setLocale(Locale.FRANCE);
+    assertEquals("OK fr_FR", I18n.getLocalizedString("button.ok.text"));
+    I18n.setLocale(current);
+    assertEquals("OK", I18n.getLocalizedString("button.ok.text"));
+    I18n.setLocale(Locale.FRANCE);
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void testGetLocalizedStringById() {
+    I18n.setKeyTable(KeyTable.fromChunks("button.ok.text\nword.cat", "missing"));
+    assertEquals("OK", I18n.getLocalizedString(0));
+    assertEquals("chat", I18n.getLocalizedString(1));
+    assertEquals("missing", I18n.getLocalizedString(2));
+    assertEquals(Long.valueOf(1), I18n.getMissingKeys().get("missing"));
+  }
+
+  @Test
+  public void testKeyTableChangeReindexes() {
+    I18n.setKeyTable(new KeyTable("button.ok.text"));
+    assertEquals("OK", I18n.getLocalizedString(0));
+    I18n.setKeyTable(new KeyTable("word.cat"));
+    assertEquals("chat", I18n.getLocalizedString(0));
+  }
+}
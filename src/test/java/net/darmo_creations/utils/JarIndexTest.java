@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JarIndexTest {
+  private Path jar;
+  private JarIndex index;
+
+  @Before
+  public void setUp() throws IOException {
+    this.jar = Files.createTempFile("index", ".jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(this.jar))) {
+      out.setComment("comment");
+      put(out, "assets/", null, false);
+      put(out, "assets/lang/en_US.lang", "button.ok.text=OK", true);
+      put(out, "assets/lang/fr_FR.lang", "button.ok.text=Valider", false);
+      put(out, "assets/lang/readme.txt", "", true);
+      put(out, "assets/langs.txt", "x", true);
+      put(out, "b.txt", String.join("", Collections.nCopies(1000, "compressible ")), true);
+    }
+    this.index = JarIndex.open(this.jar);
+  }
+
+  @After
+  public void tearDown() {
+    // Mapped files cannot be deleted on Windows.
+    this.jar.toFile().deleteOnExit();
+  }
+
+  @Test
+  public void testEntries() {
+    assertEquals(6, this.index.size());
+    assertTrue(this.index.getEntry("assets/").get().isDirectory());
+    assertTrue(this.index.getEntry("assets/lang/fr_FR.lang").get().isStored());
+    assertFalse(this.index.getEntry("missing").isPresent());
+  }
+
+  @Test
+  public void testList() {
+    assertEquals(Arrays.asList("assets/lang/en_US.lang", "assets/lang/fr_FR.lang", "assets/lang/readme.txt"),
+        this.index.list("assets/lang/"));
+    assertEquals(Arrays.asList("assets/lang/en_US.lang", "assets/lang/fr_FR.lang"), this.index.list("assets/lang/", ".lang"));
+    assertEquals(Collections.emptyList(), this.index.list("c"));
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    assertEquals("button.ok.text=OK", new String(this.index.getBytes("assets/lang/en_US.lang"), StandardCharsets.UTF_8));
+    assertEquals("button.ok.text=Valider", new String(this.index.getBytes("assets/lang/fr_FR.lang"), StandardCharsets.UTF_8));
+    assertEquals(13000, this.index.getBytes("b.txt").length);
+    assertEquals(0, this.index.getBytes("assets/lang/readme.txt").length);
+  }
+
+  @Test
+  public void testStoredBufferIsReadOnlyView() throws IOException {
+    ByteBuffer buffer = this.index.getBuffer("assets/lang/fr_FR.lang");
+    assertTrue(buffer.isReadOnly());
+    assertTrue(buffer.isDirect());
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    for (String name : Arrays.asList("assets/lang/fr_FR.lang", "b.txt")) {
+      try (InputStream in = this.index.openStream(name)) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int n;
+        while ((n = in.read(buffer)) >= 0)
+          out.write(buffer, 0, n);
+        assertArrayEquals(this.index.getBytes(name), out.toByteArray());
+      }
+    }
+  }
+
+  @Test(expected = ZipException.class)
+  public void testMissingEntry() throws IOException {
+    this.index.getBytes("missing");
+  }
+
+  @Test(expected = ZipException.class)
+  public void testInvalidCentralDirectoryOffset() throws IOException {
+    // Offset of the central directory in the end record
+    JarIndex.open(corrupt(0x06054b50, 16, 0xf0000000));
+  }
+
+  @Test(expected = ZipException.class)
+  public void testInvalidLocalHeaderOffset() throws IOException {
+    // Offset of the local header in the last central directory header
+    JarIndex index = JarIndex.open(corrupt(0x02014b50, 42, 0xfffffff0));
+    index.getBytes("b.txt");
+  }
+
+  /**
+   * Copies the jar, replacing an int field of the last record having the given signature.
+   */
+  private Path corrupt(int signature, int field, int value) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.jar)).order(ByteOrder.LITTLE_ENDIAN);
+    int i = buffer.limit() - 4;
+    while (buffer.getInt(i) != signature)
+      i--;
+    buffer.putInt(i + field, value);
+
+    Path copy = Files.createTempFile("corrupt", ".jar");
+    copy.toFile().deleteOnExit();
+    return Files.write(copy, buffer.array());
+  }
+
+  private static void put(JarOutputStream out, String name, String content, boolean deflated) throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    byte[] data = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+    if (!deflated) {
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(data.length);
+      entry.setCrc(crc.getValue());
+    }
+    out.putNextEntry(entry);
+    out.write(data);
+    out.closeEntry();
+  }
+}
@@ -18,8 +18,16 @@
  */
 package net.darmo_creations.utils;
 
+import static org.junit.Assert.*;
+
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -30,4 +38,97 @@ public class JarUtilTest {
   public void testRestartApplication() throws IOException, URISyntaxException {
     JarUtil.restartApplication(".jar");
   }
+
+  @Test
+  public void testBuildCommandPlain() throws IOException {
+    Path jar = Files.createTempFile("app", ".jar");
+    try {
+      List<String> command = JarUtil.buildCommand("java", jar, new RestartOptions(), Arrays.asList("-Xmx1g"), 17, null);
+      assertEquals("java", command.get(0));
+      assertFalse(command.contains("-Xmx1g"));
+      assertTrue(command.contains("-D" + JarUtil.RESTART_MODE_PROPERTY + "=plain"));
+      assertEquals(Arrays.asList("-jar", jar.toString()), command.subList(command.size() - 2, command.size()));
+    }
+    finally {
+      Files.delete(jar);
+    }
+  }
+
+  @Test
+  public void testBuildCommandFast() throws IOException {
+    Path jar = Files.createTempFile("app", ".jar");
+    Path dir = jar.getParent();
+    try {
+      List<String> args = Arrays.asList("-Xmx1g", "-Dfoo=bar", "-agentlib:jdwp=transport=dt_socket", "-XX:SharedArchiveFile=x.jsa");
+      List<String> command = JarUtil.buildCommand("java", jar, RestartOptions.fast().setArchiveDirectory(dir), args, 17, null);
+      assertEquals(Arrays.asList("java", "-Xmx1g", "-Dfoo=bar"), command.subList(0, 3));
+      assertTrue(command.get(3).startsWith("-XX:ArchiveClassesAtExit=" + dir));
+      assertTrue(command.contains("-D" + JarUtil.RESTART_MODE_PROPERTY + "=fast"));
+
+      Path archive = Files.createFile(dir.resolve(command.get(3).substring(command.get(3).indexOf('=') + 1)));
+      try {
+        command = JarUtil.buildCommand("java", jar, RestartOptions.fast().setArchiveDirectory(dir), args, 17, null);
+        assertEquals("-XX:SharedArchiveFile=" + archive, command.get(3));
+      }
+      finally {
+        Files.delete(archive);
+      }
+    }
+    finally {
+      Files.delete(jar);
+    }
+  }
+
+  @Test
+  public void testBuildCommandDeletesOldArchives() throws IOException {
+    Path dir = Files.createTempDirectory("archives");
+    Path jar = Files.createFile(dir.resolve("app.jar"));
+    Path old = Files.createFile(dir.resolve("app-1234abcd.jsa"));
+    Path otherJar = Files.createFile(dir.resolve("app-extra-1234abcd.jsa"));
+    try {
+      List<String> command = JarUtil.buildCommand("java", jar, new RestartOptions().setClassDataSharing(true).setArchiveDirectory(dir),
+          Collections.emptyList(), 17, null);
+      assertTrue(command.get(1).startsWith("-XX:ArchiveClassesAtExit=" + dir));
+      assertFalse(Files.exists(old));
+      assertTrue(Files.exists(otherJar));
+    }
+    finally {
+      Files.deleteIfExists(old);
+      Files.delete(otherJar);
+      Files.delete(jar);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void testBuildCommandArchiveDirectoryNotWritable() throws IOException {
+    Path jar = Files.createTempFile("app", ".jar");
+    try {
+      // A file cannot be used as a directory.
+      RestartOptions options = RestartOptions.fast().setArchiveDirectory(jar.resolve("archives"));
+      List<String> command = JarUtil.buildCommand("java", jar, options, Collections.emptyList(), 17, null);
+      assertFalse(command.stream().anyMatch(arg -> arg.startsWith("-XX:")));
+      assertEquals(Arrays.asList("-jar", jar.toString()), command.subList(command.size() - 2, command.size()));
+    }
+    finally {
+      Files.delete(jar);
+    }
+  }
+
+  @Test
+  public void testDefaultArchiveDirectory() {
+    assertTrue(JarUtil.getDefaultArchiveDirectory().endsWith(Paths.get("darmo_creations", "cds")));
+  }
+
+  @Test
+  public void testBuildCommandNoClassDataSharingBeforeJava13() throws IOException {
+    Path jar = Files.createTempFile("app", ".jar");
+    try {
+      List<String> command = JarUtil.buildCommand("java", jar, RestartOptions.fast(), Collections.emptyList(), 8, null);
+      assertFalse(command.stream().anyMatch(arg -> arg.startsWith("-XX:")));
+    }
+    finally {
+      Files.delete(jar);
+    }
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class UndoRedoManagerIOTest {
+  private static final EditCodec<String> CODEC = new EditCodec<String>() {
+    @Override
+    public ByteBuffer encode(String edit) {
+      return ByteBuffer.wrap(edit.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String decode(ByteBuffer data) {
+      byte[] bytes = new byte[data.remaining()];
+      data.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  };
+
+  @Test
+  public void testLinearRoundTrip() throws IOException {
+    UndoRedoManager<String> manager = new UndoRedoManager<>();
+    manager.addEdit("a");
+    manager.addEdit("b");
+    manager.addEdit("c");
+    manager.undo();
+
+    UndoRedoManager<String> loaded = UndoRedoManagerIO.load(new UndoRedoManager<>(), CODEC, saveAndReopen(manager));
+    assertEquals("b", loaded.getEdit());
+    assertEquals(3, loaded.size());
+    loaded.redo();
+    assertEquals("c", loaded.getEdit());
+    loaded.undo();
+    loaded.undo();
+    assertEquals("a", loaded.getEdit());
+    assertFalse(loaded.canUndo());
+  }
+
+  @Test
+  public void testBranchingRoundTrip() throws IOException {
+    UndoRedoManager<String> manager = new UndoRedoManager<>(true);
+    manager.addEdit("a");
+    manager.addEdit("b");
+    int b = manager.getCurrentNode();
+    manager.undo();
+    manager.addEdit("c");
+
+    ConcurrentUndoRedoManager<String> loaded = UndoRedoManagerIO.load(new ConcurrentUndoRedoManager<>(true), CODEC,
+        saveAndReopen(manager));
+    assertEquals("c", loaded.getEdit());
+    assertEquals(manager.getCurrentNode(), loaded.getCurrentNode());
+    loaded.jumpTo(b);
+    assertEquals("b", loaded.getEdit());
+    loaded.addEdit("d");
+    assertEquals(manager.getLatestNode() + 1, loaded.getCurrentNode());
+  }
+
+  @Test
+  public void testEmptyRoundTrip() throws IOException {
+    UndoRedoManager<String> loaded = UndoRedoManagerIO.load(new UndoRedoManager<>(), CODEC, saveAndReopen(new UndoRedoManager<>()));
+    assertEquals(0, loaded.size());
+    assertEquals(-1, loaded.getCurrentNode());
+  }
+
+  @Test(expected = IOException.class)
+  public void testModeMismatch() throws IOException {
+    UndoRedoManager<String> manager = new UndoRedoManager<>(true);
+    manager.addEdit("a");
+    UndoRedoManagerIO.load(new UndoRedoManager<>(), CODEC, saveAndReopen(manager));
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidData() throws IOException {
+    byte[] data = "not an undo history".getBytes(StandardCharsets.UTF_8);
+    UndoRedoManagerIO.load(new UndoRedoManager<>(), CODEC, Channels.newChannel(new ByteArrayInputStream(data)));
+  }
+
+  private static ReadableByteChannel saveAndReopen(UndoRedoManager<String> manager) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    UndoRedoManagerIO.save(manager, CODEC, Channels.newChannel(out));
+    return Channels.newChannel(new ByteArrayInputStream(out.toByteArray()));
+  }
+}
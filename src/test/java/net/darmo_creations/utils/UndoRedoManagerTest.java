@@ -148,6 +148,90 @@ public class UndoRedoManagerTest {
     assertFalse(this.manager.canRedo());
   }
 
+  @Test
+  public void testAddEditAfterUndoDiscardsRedo() {
+    this.manager.addEdit(this.o1.clone());
+    this.manager.addEdit(this.o2.clone());
+    this.manager.undo();
+    this.manager.addEdit(this.o3.clone());
+    assertEquals(2, this.manager.size());
+    assertFalse(this.manager.canRedo());
+    this.manager.undo();
+    assertEquals(this.o1, this.manager.getEdit());
+  }
+
+  @Test
+  public void testBranchingKeepsPreviousBranch() {
+    UndoRedoManager<TestObject> tree = new UndoRedoManager<>(true);
+    tree.addEdit(this.o1.clone());
+    tree.addEdit(this.o2.clone());
+    int node2 = tree.getCurrentNode();
+    tree.undo();
+    tree.addEdit(this.o3.clone());
+    assertEquals(3, tree.size());
+    tree.jumpTo(node2);
+    assertEquals(this.o2, tree.getEdit());
+    tree.undo();
+    tree.redo();
+    assertEquals(this.o2, tree.getEdit());
+  }
+
+  @Test
+  public void testBranchingRedoFollowsLastBranch() {
+    UndoRedoManager<TestObject> tree = new UndoRedoManager<>(true);
+    tree.addEdit(this.o1.clone());
+    tree.addEdit(this.o2.clone());
+    tree.undo();
+    tree.addEdit(this.o3.clone());
+    tree.undo();
+    tree.redo();
+    assertEquals(this.o3, tree.getEdit());
+  }
+
+  @Test
+  public void testJumpToLatest() {
+    UndoRedoManager<TestObject> tree = new UndoRedoManager<>(true);
+    tree.addEdit(this.o1.clone());
+    tree.addEdit(this.o2.clone());
+    tree.undo();
+    tree.addEdit(this.o3.clone());
+    tree.jumpTo(tree.getParentNode(tree.getCurrentNode()));
+    tree.jumpToLatest();
+    assertEquals(this.o3, tree.getEdit());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testJumpToUnknownNode() {
+    this.manager.addEdit(this.o1.clone());
+    this.manager.jumpTo(42);
+  }
+
+  @Test
+  public void testPruneColdBranches() {
+    UndoRedoManager<TestObject> tree = new UndoRedoManager<>(true);
+    tree.setMaxEdits(4);
+    tree.addEdit(new TestObject(0));
+    int root = tree.getCurrentNode();
+    for (int i = 1; i <= 4; i++) {
+      tree.jumpTo(root);
+      tree.addEdit(new TestObject(i));
+    }
+    assertTrue(tree.size() <= 4);
+    assertEquals(new TestObject(4), tree.getEdit());
+    tree.undo();
+    assertEquals(root, tree.getCurrentNode());
+    assertFalse(tree.canUndo());
+  }
+
+  @Test
+  public void testPruneKeepsActivePath() {
+    UndoRedoManager<TestObject> tree = new UndoRedoManager<>(true);
+    for (int i = 0; i < 10; i++)
+      tree.addEdit(new TestObject(i));
+    tree.setMaxEdits(4);
+    assertEquals(10, tree.size());
+  }
+
   private static class TestObject implements Cloneable {
     private final int id;
 
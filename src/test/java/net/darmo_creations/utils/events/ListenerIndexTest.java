@@ -0,0 +1,265 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.events;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.darmo_creations.utils.JarIndex;
+
+public class ListenerIndexTest {
+  private static final List<Class<?>> CLASSES = Arrays.asList(Listener.class, Event.class, Plain.class, AbstractListener.class,
+      Invalid.class, Inheriting.class, Overriding.class);
+
+  private Path directory;
+  private Path jar;
+  private Path cache;
+
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("listeners");
+    this.jar = this.directory.resolve("app.jar");
+    this.cache = this.directory.resolve("cache");
+    writeJar();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    // Mapped files cannot be deleted on Windows.
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      files.forEach(p -> p.toFile().deleteOnExit());
+    }
+  }
+
+  @Test
+  public void testScanJar() throws IOException {
+    ListenerIndex index = ListenerIndex.scanJar(JarIndex.open(this.jar));
+    assertEquals(Arrays.asList(Inheriting.class.getName(), Invalid.class.getName(), Listener.class.getName(), Overriding.class.getName()),
+        sorted(index));
+    List<String> onEvent = Arrays.asList("onEvent(Lnet/darmo_creations/utils/events/ListenerIndexTest$Event;)V");
+    assertEquals(onEvent, index.getMethods(Listener.class.getName()));
+    assertEquals(onEvent, index.getMethods(Inheriting.class.getName()));
+    assertEquals(Collections.emptyList(), index.getMethods(Plain.class.getName()));
+  }
+
+  @Test
+  public void testScanDirectory() throws IOException, URISyntaxException {
+    Path root = Paths.get(ListenerIndexTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    ListenerIndex index = ListenerIndex.scanDirectory(root);
+    assertTrue(index.getClassNames().contains(Listener.class.getName()));
+    assertFalse(index.getClassNames().contains(AbstractListener.class.getName()));
+    assertFalse(index.getClassNames().contains(Plain.class.getName()));
+  }
+
+  @Test
+  public void testLoadCachesIndex() throws IOException {
+    ListenerIndex index = ListenerIndex.load(this.jar, this.cache);
+    List<Path> files = list(this.cache);
+    assertEquals(1, files.size());
+
+    Files.write(this.jar, new byte[0]); // Different hash, invalid jar
+    try {
+      ListenerIndex.load(this.jar, this.cache);
+      fail();
+    }
+    catch (IOException e) {
+      // Expected, the jar was scanned again.
+    }
+
+    // Put the original content back, the index must be read from the cache.
+    writeJar();
+    Path cached = files.get(0);
+    Files.write(cached, Arrays.asList("# listener index v2", "a.B onX(La/E;)V"));
+    ListenerIndex fromCache = ListenerIndex.load(this.jar, this.cache);
+    assertEquals(Collections.singleton("a.B"), fromCache.getClassNames());
+    assertEquals(Arrays.asList("onX(La/E;)V"), fromCache.getMethods("a.B"));
+
+    Files.write(cached, Arrays.asList("garbage"));
+    assertEquals(sorted(index), sorted(ListenerIndex.load(this.jar, this.cache)));
+  }
+
+  @Test
+  public void testLoadReplacesOldCaches() throws IOException {
+    Files.createDirectories(this.cache);
+    Files.write(this.cache.resolve("listeners-app-0123.idx"), Arrays.asList("# listener index v1"));
+    Files.write(this.cache.resolve("listeners-app-extra-0123.idx"), Arrays.asList("# listener index v1"));
+    ListenerIndex.load(this.jar, this.cache);
+    List<String> files = list(this.cache).stream().map(p -> p.getFileName().toString()).collect(Collectors.toList());
+    assertEquals(2, files.size());
+    assertFalse(files.contains("listeners-app-0123.idx"));
+    // The index of another jar is kept.
+    assertTrue(files.contains("listeners-app-extra-0123.idx"));
+  }
+
+  @Test
+  public void testRegisterAll() throws IOException {
+    EventsBus bus = new EventsBus();
+    ListenerIndex index = ListenerIndex.scanJar(JarIndex.open(this.jar));
+    List<Object> instances = index.registerAll(bus, getClass().getClassLoader(),
+        type -> type == Listener.class ? new Listener() : null);
+    assertEquals(1, instances.size());
+
+    bus.dispatchEvent(new Event());
+    assertEquals(1, ((Listener) instances.get(0)).count);
+  }
+
+  @Test
+  public void testRegisterAllInherited() throws IOException {
+    EventsBus bus = new EventsBus();
+    ListenerIndex index = ListenerIndex.scanJar(JarIndex.open(this.jar));
+    List<Object> instances = index.registerAll(bus, getClass().getClassLoader(),
+        type -> type == Inheriting.class || type == Overriding.class ? newInstance(type) : null);
+    assertEquals(2, instances.size());
+
+    bus.dispatchEvent(new Event());
+    // Same as EventsBus.register(Object): the override is not annotated so it does not receive events.
+    for (Object instance : instances)
+      assertEquals(instance instanceof Inheriting ? 1 : 0, ((Counter) instance).getCount());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testRegisterAllInvalidMethod() throws IOException {
+    ListenerIndex.scanJar(JarIndex.open(this.jar)).registerAll(new EventsBus(), getClass().getClassLoader());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadInvalidClassFile() {
+    ClassFileReader.read(ByteBuffer.wrap(new byte[]{(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0}));
+  }
+
+  private void writeJar() throws IOException {
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(this.jar))) {
+      for (Class<?> c : CLASSES) {
+        ZipEntry entry = new ZipEntry(c.getName().replace('.', '/') + ".class");
+        entry.setTime(0); // Same content, same hash.
+        out.putNextEntry(entry);
+        out.write(classFile(c));
+      }
+    }
+  }
+
+  private static Object newInstance(Class<?> type) {
+    try {
+      return type.newInstance();
+    }
+    catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static List<String> sorted(ListenerIndex index) {
+    return index.getClassNames().stream().sorted().collect(Collectors.toList());
+  }
+
+  private static List<Path> list(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  private static byte[] classFile(Class<?> c) throws IOException {
+    String name = c.getName();
+    try (InputStream in = c.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int n;
+      while ((n = in.read(buffer)) != -1)
+        out.write(buffer, 0, n);
+      return out.toByteArray();
+    }
+  }
+
+  public static class Event extends AbstractEvent {
+    public Event() {
+      super(false);
+    }
+  }
+
+  public static class Listener {
+    int count;
+
+    @Deprecated
+    @SubscribeEvent
+    public void onEvent(Event e) {
+      this.count++;
+    }
+
+    public void other(Event e) {}
+  }
+
+  public static class Invalid {
+    @SubscribeEvent
+    public void onEvent(String s) {}
+  }
+
+  public interface Counter {
+    int getCount();
+  }
+
+  public static abstract class AbstractListener implements Counter {
+    int count;
+
+    @SubscribeEvent
+    public void onEvent(Event e) {
+      this.count++;
+    }
+
+    @Override
+    public int getCount() {
+      return this.count;
+    }
+  }
+
+  public static class Inheriting extends AbstractListener {}
+
+  public static class Overriding extends Listener implements Counter {
+    @Override
+    public void onEvent(Event e) {
+      super.onEvent(e);
+    }
+
+    @Override
+    public int getCount() {
+      return this.count;
+    }
+  }
+
+  public static class Plain {
+    public void onEvent(Event e) {}
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AtomicFileWriterTest {
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    this.dir = Files.createTempDirectory("atomic");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.list(this.dir)) {
+      files.forEach(p -> p.toFile().delete());
+    }
+    Files.delete(this.dir);
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    Path file = Files.write(this.dir.resolve("doc"), bytes("old"));
+    new AtomicFileWriter(Durability.FULL).write(file, bytes("new"));
+    assertEquals("new", read(file));
+    assertEquals(1, count());
+  }
+
+  @Test
+  public void testWriteFailureLeavesFileUntouched() throws IOException {
+    Path file = Files.write(this.dir.resolve("doc"), bytes("old"));
+    try {
+      new AtomicFileWriter(Durability.CONTENT).write(file, out -> {
+        out.write(bytes("partial"));
+        throw new IOException("crash");
+      });
+      fail();
+    }
+    catch (IOException e) {
+      assertEquals("crash", e.getMessage());
+    }
+    assertEquals("old", read(file));
+    assertEquals(1, count());
+  }
+
+  @Test
+  public void testBatch() throws IOException {
+    AtomicFileWriter writer = new AtomicFileWriter(Durability.FULL);
+    try (AtomicFileWriter.Batch batch = writer.newBatch()) {
+      for (int i = 0; i < 10; i++)
+        batch.add(this.dir.resolve("f" + i), out -> out.write(bytes("content")));
+      assertEquals(10, count());
+      assertFalse(Files.exists(this.dir.resolve("f0")));
+      batch.commit();
+    }
+    assertEquals(10, count());
+    assertEquals("content", read(this.dir.resolve("f9")));
+  }
+
+  @Test
+  public void testBatchRollback() throws IOException {
+    try (AtomicFileWriter.Batch batch = new AtomicFileWriter(Durability.NONE).newBatch()) {
+      batch.add(this.dir.resolve("f"), out -> out.write(bytes("content")));
+    }
+    assertEquals(0, count());
+  }
+
+  private long count() throws IOException {
+    try (Stream<Path> files = Files.list(this.dir)) {
+      return files.count();
+    }
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.darmo_creations.utils.events.EventsBus;
+import net.darmo_creations.utils.events.SubscribeEvent;
+
+public class DirectoryWatcherTest {
+  private static final long DELAY = 100;
+  private static final long TIMEOUT = 10;
+
+  private Path root;
+  private Collector collector;
+  private DirectoryWatcher watcher;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("watcher").toRealPath();
+    Files.createDirectories(this.root.resolve("d"));
+    Files.write(this.root.resolve("d").resolve("x"), new byte[]{1});
+    Files.write(this.root.resolve("d").resolve("y"), new byte[]{2});
+    this.collector = new Collector();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (this.watcher != null)
+      this.watcher.close();
+    try (Stream<Path> paths = Files.walk(this.root)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testCreateThenModify() throws IOException, InterruptedException {
+    start(path -> true);
+    Path file = this.root.resolve("a");
+    Files.write(file, new byte[]{1});
+    Files.write(file, new byte[]{1, 2, 3});
+
+    DirectoryChangedEvent event = this.collector.next();
+    assertEquals(set(file), event.getCreated());
+    assertTrue(event.getModified().isEmpty());
+    assertTrue(event.getDeleted().isEmpty());
+  }
+
+  @Test
+  public void testCreateThenDeleteNotReported() throws IOException, InterruptedException {
+    start(path -> true);
+    Path file = this.root.resolve("a");
+    Files.write(file, new byte[]{1});
+    Files.delete(file);
+    Thread.sleep(2 * DELAY);
+    Path marker = this.root.resolve("marker");
+    Files.write(marker, new byte[]{1});
+
+    DirectoryChangedEvent event = this.collector.next();
+    assertEquals(set(marker), event.getCreated());
+    assertTrue(event.getDeleted().isEmpty());
+  }
+
+  @Test
+  public void testFilesInNewDirectory() throws IOException, InterruptedException {
+    start(path -> true);
+    Path dir = this.root.resolve("new");
+    Path file = dir.resolve("f");
+    Files.createDirectories(dir);
+    Files.write(file, new byte[]{1});
+
+    assertEquals(set(dir, file), this.collector.created(set(dir, file)));
+  }
+
+  @Test
+  public void testDeleteDirectoryReportsChildren() throws IOException, InterruptedException {
+    start(path -> true);
+    Path dir = this.root.resolve("d");
+    Set<Path> expected = set(dir, dir.resolve("x"), dir.resolve("y"));
+    Files.delete(dir.resolve("x"));
+    Files.delete(dir.resolve("y"));
+    Files.delete(dir);
+
+    assertEquals(expected, this.collector.deleted(expected));
+  }
+
+  @Test
+  public void testRecreatedDirectoryWatched() throws IOException, InterruptedException {
+    start(path -> true);
+    Path dir = this.root.resolve("d");
+    Files.delete(dir.resolve("x"));
+    Files.delete(dir.resolve("y"));
+    Files.delete(dir);
+    Files.createDirectory(dir);
+    Thread.sleep(2 * DELAY);
+    this.collector.events.clear();
+
+    Path file = dir.resolve("z");
+    Files.write(file, new byte[]{1});
+    assertEquals(set(file), this.collector.created(set(file)));
+  }
+
+  @Test
+  public void testFilter() throws IOException, InterruptedException {
+    start(ExtensionMatcher.of("txt"));
+    Files.write(this.root.resolve("b.png"), new byte[]{1});
+    Path file = this.root.resolve("a.txt");
+    Files.write(file, new byte[]{1});
+
+    assertEquals(set(file), this.collector.created(set(file)));
+  }
+
+  private void start(Predicate<Path> filter) throws IOException {
+    EventsBus bus = new EventsBus();
+    bus.register(this.collector);
+    this.watcher = new DirectoryWatcher(this.root, bus).setDelay(DELAY).setFilter(filter).start();
+  }
+
+  private static Set<Path> set(Path... paths) {
+    return new HashSet<>(Arrays.asList(paths));
+  }
+
+  public static class Collector {
+    final BlockingQueue<DirectoryChangedEvent> events = new LinkedBlockingQueue<>();
+
+    @SubscribeEvent
+    public void onDirectoryChanged(DirectoryChangedEvent e) {
+      this.events.add(e);
+    }
+
+    DirectoryChangedEvent next() throws InterruptedException {
+      DirectoryChangedEvent event = this.events.poll(TIMEOUT, TimeUnit.SECONDS);
+      assertNotNull("no event received", event);
+      return event;
+    }
+
+    /**
+     * Merges the created paths of the next events until they contain the expected ones.
+     */
+    Set<Path> created(Set<Path> expected) throws InterruptedException {
+      Set<Path> created = new HashSet<>();
+      while (!created.containsAll(expected))
+        created.addAll(next().getCreated());
+      return created;
+    }
+
+    /**
+     * Merges the deleted paths of the next events until they contain the expected ones.
+     */
+    Set<Path> deleted(Set<Path> expected) throws InterruptedException {
+      Set<Path> deleted = new HashSet<>();
+      while (!deleted.containsAll(expected))
+        deleted.addAll(next().getDeleted());
+      return deleted;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ExtensionMatcherTest {
+  @Test
+  public void testMatches() {
+    ExtensionMatcher matcher = ExtensionMatcher.of("png", "JPG", "jpeg", "gif", "tar.gz");
+    assertTrue(matcher.matches("a.png"));
+    assertTrue(matcher.matches("dir/a.jpg"));
+    assertTrue(matcher.matches("a.JPEG"));
+    assertTrue(matcher.matches(Paths.get("dir", "a.Gif")));
+    assertFalse(matcher.matches("a.bmp"));
+    assertFalse(matcher.matches("a.pn"));
+    assertFalse(matcher.matches("png"));
+    assertFalse(matcher.matches("png.d/file"));
+    assertFalse(matcher.matches("a.tar.gz"));
+  }
+
+  @Test
+  public void testEmpty() {
+    ExtensionMatcher matcher = ExtensionMatcher.of(Collections.emptyList());
+    assertFalse(matcher.matches("a.png"));
+    assertFalse(matcher.matches("a."));
+  }
+
+  @Test
+  public void testEmptyExtension() {
+    assertTrue(ExtensionMatcher.of("").matches("a."));
+    assertFalse(ExtensionMatcher.of("").matches("a"));
+  }
+}
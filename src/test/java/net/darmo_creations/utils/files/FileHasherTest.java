@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileHasherTest {
+  private Path dir;
+  private FileHasher hasher;
+
+  @Before
+  public void setUp() throws IOException {
+    this.dir = Files.createTempDirectory("hasher");
+    this.hasher = new FileHasher();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    this.hasher.close();
+    try (Stream<Path> files = Files.list(this.dir)) {
+      files.forEach(p -> p.toFile().delete());
+    }
+    Files.delete(this.dir);
+  }
+
+  @Test
+  public void testFindDuplicates() throws IOException {
+    byte[] large = new byte[3 << 20];
+    new Random(1).nextBytes(large);
+    Path a = write("a", new byte[]{1, 2, 3});
+    Path b = write("b", new byte[]{1, 2, 4});
+    Path c = write("c", new byte[]{1, 2, 3});
+    Path d = write("d", new byte[]{1});
+    Path e = write("e", large);
+    Path f = write("f", large);
+
+    List<List<Path>> duplicates = this.hasher.findDuplicates(Arrays.asList(a, b, c, d, e, f));
+    assertEquals(Arrays.asList(Arrays.asList(a, c), Arrays.asList(e, f)), duplicates);
+  }
+
+  @Test
+  public void testFindDuplicatesSkipsMissingFiles() throws IOException {
+    Path a = write("a", new byte[]{1, 2, 3});
+    Path b = write("b", new byte[]{1, 2, 3});
+    Path missing = this.dir.resolve("missing");
+    Path dangling = Files.createSymbolicLink(this.dir.resolve("link"), missing);
+
+    List<List<Path>> duplicates = this.hasher.findDuplicates(Arrays.asList(a, missing, dangling, b));
+    assertEquals(Arrays.asList(Arrays.asList(a, b)), duplicates);
+  }
+
+  @Test
+  public void testHashLargeAndSmall() throws IOException {
+    byte[] data = new byte[(1 << 20) + 1];
+    new Random(2).nextBytes(data);
+    Path large = write("large", data);
+    Path small = write("small", Arrays.copyOf(data, 1000));
+    assertEquals(32, this.hasher.hash(large).length);
+    assertFalse(Arrays.equals(this.hasher.hash(large), this.hasher.hash(small)));
+  }
+
+  @Test
+  public void testCacheInvalidated() throws IOException {
+    Path a = write("a", new byte[]{1, 2, 3});
+    byte[] hash = this.hasher.hash(a);
+    assertArrayEquals(hash, this.hasher.hashAll(Collections.singletonList(a)).get(a));
+    Files.write(a, new byte[]{3, 2, 1});
+    Files.setLastModifiedTime(a, FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis() + 10000));
+    assertFalse(Arrays.equals(hash, this.hasher.hash(a)));
+  }
+
+  private Path write(String name, byte[] data) throws IOException {
+    return Files.write(this.dir.resolve(name), data);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * This class compares the throughput of {@link FileTransfer} with a plain stream copy loop, for a
+ * large file and for many small files.
+ *
+ * @author Damien Vergnet
+ */
+public class FileTransferBenchmark {
+  private static final int LARGE_SIZE = 128 << 20;
+  private static final int SMALL_FILES = 2000;
+  private static final int SMALL_SIZE = 16 << 10;
+  private static final int RUNS = 5;
+
+  public static void main(String[] args) throws IOException {
+    Path dir = Files.createTempDirectory("transfer");
+    try {
+      Random random = new Random();
+      byte[] data = new byte[SMALL_SIZE];
+      Path large = dir.resolve("large");
+      try (OutputStream out = Files.newOutputStream(large)) {
+        for (int i = 0; i < LARGE_SIZE / SMALL_SIZE; i++) {
+          random.nextBytes(data);
+          out.write(data);
+        }
+      }
+      Map<Path, Path> small = new HashMap<>();
+      for (int i = 0; i < SMALL_FILES; i++) {
+        random.nextBytes(data);
+        small.put(Files.write(dir.resolve("s" + i), data), dir.resolve("t" + i));
+      }
+      FileTransfer transfer = new FileTransfer().setReplaceExisting(true);
+
+      for (int i = 0; i < RUNS; i++) {
+        long start = System.nanoTime();
+        streamCopy(large, dir.resolve("copy"));
+        print("streams", "large file", LARGE_SIZE, start);
+        start = System.nanoTime();
+        transfer.copy(large, dir.resolve("copy"));
+        print("transfer", "large file", LARGE_SIZE, start);
+
+        start = System.nanoTime();
+        for (Map.Entry<Path, Path> copy : small.entrySet())
+          streamCopy(copy.getKey(), copy.getValue());
+        print("streams", "small files", (long) SMALL_FILES * SMALL_SIZE, start);
+        start = System.nanoTime();
+        transfer.copyAll(small);
+        print("transfer", "small files", (long) SMALL_FILES * SMALL_SIZE, start);
+      }
+    }
+    finally {
+      try (Stream<Path> files = Files.list(dir)) {
+        files.forEach(p -> p.toFile().delete());
+      }
+      Files.delete(dir);
+    }
+  }
+
+  private static void streamCopy(Path source, Path target) throws IOException {
+    byte[] buffer = new byte[8192];
+    try (InputStream in = Files.newInputStream(source); OutputStream out = Files.newOutputStream(target)) {
+      int n;
+      while ((n = in.read(buffer)) >= 0)
+        out.write(buffer, 0, n);
+    }
+  }
+
+  private static void print(String name, String what, long bytes, long start) {
+    long time = System.nanoTime() - start;
+    System.out.printf("%-9s %-12s %,6d MB/s%n", name, what, bytes * 1000 / Math.max(1, time));
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileTransferTest {
+  private Path dir;
+  private byte[] data;
+  private Path source;
+
+  @Before
+  public void setUp() throws IOException {
+    this.dir = Files.createTempDirectory("transfer");
+    this.data = new byte[100000];
+    new Random(1).nextBytes(this.data);
+    this.source = Files.write(this.dir.resolve("source"), this.data);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.list(this.dir)) {
+      files.forEach(p -> p.toFile().delete());
+    }
+    Files.delete(this.dir);
+  }
+
+  @Test
+  public void testCopy() throws IOException {
+    Path target = this.dir.resolve("target");
+    AtomicLong done = new AtomicLong();
+    long n = new FileTransfer().setProgressListener((d, total) -> {
+      assertEquals(this.data.length, total);
+      done.set(d);
+    }).copy(this.source, target);
+    assertEquals(this.data.length, n);
+    assertEquals(this.data.length, done.get());
+    assertArrayEquals(this.data, Files.readAllBytes(target));
+  }
+
+  @Test(expected = FileAlreadyExistsException.class)
+  public void testCopyExisting() throws IOException {
+    Path target = Files.write(this.dir.resolve("target"), new byte[]{1});
+    try {
+      new FileTransfer().copy(this.source, target);
+    }
+    finally {
+      assertArrayEquals(new byte[]{1}, Files.readAllBytes(target));
+    }
+  }
+
+  @Test
+  public void testCopyStream() throws IOException {
+    Path target = this.dir.resolve("target");
+    assertEquals(this.data.length, new FileTransfer().copy(new ByteArrayInputStream(this.data), target, -1));
+    assertArrayEquals(this.data, Files.readAllBytes(target));
+  }
+
+  @Test
+  public void testMove() throws IOException {
+    Path target = this.dir.resolve("target");
+    new FileTransfer().move(this.source, target);
+    assertFalse(Files.exists(this.source));
+    assertArrayEquals(this.data, Files.readAllBytes(target));
+  }
+
+  @Test
+  public void testMoveDoesNotReplace() throws IOException {
+    Path target = Files.write(this.dir.resolve("target"), new byte[]{1});
+    try {
+      new FileTransfer().move(this.source, target);
+      fail();
+    }
+    catch (FileAlreadyExistsException e) {
+      // Expected
+    }
+    assertArrayEquals(this.data, Files.readAllBytes(this.source));
+    assertArrayEquals(new byte[]{1}, Files.readAllBytes(target));
+  }
+
+  @Test
+  public void testConcat() throws IOException {
+    Path other = Files.write(this.dir.resolve("other"), new byte[]{1, 2, 3});
+    Path target = this.dir.resolve("target");
+    assertEquals(this.data.length + 3, new FileTransfer().concat(Arrays.asList(this.source, other), target));
+    byte[] result = Files.readAllBytes(target);
+    assertArrayEquals(this.data, Arrays.copyOf(result, this.data.length));
+    assertArrayEquals(new byte[]{1, 2, 3}, Arrays.copyOfRange(result, this.data.length, result.length));
+  }
+
+  @Test
+  public void testCopyAll() throws IOException {
+    Map<Path, Path> copies = new HashMap<>();
+    for (int i = 0; i < 10; i++)
+      copies.put(Files.write(this.dir.resolve("s" + i), new byte[]{(byte) i}), this.dir.resolve("t" + i));
+    copies.put(this.source, this.dir.resolve("target"));
+    assertEquals(this.data.length + 10, new FileTransfer().copyAll(copies));
+    for (int i = 0; i < 10; i++)
+      assertArrayEquals(new byte[]{(byte) i}, Files.readAllBytes(this.dir.resolve("t" + i)));
+  }
+
+  @Test
+  public void testCancel() throws IOException {
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+    Path target = this.dir.resolve("target");
+    try {
+      new FileTransfer().setCancellationToken(token).copy(this.source, target);
+      fail();
+    }
+    catch (CancellationException e) {
+      assertFalse(Files.exists(target));
+    }
+  }
+
+  @Test
+  public void testCancelReplacingKeepsOriginal() throws IOException {
+    Path target = this.dir.resolve("target");
+    byte[] original = {1, 2, 3};
+    Files.write(target, original);
+
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+    try {
+      new FileTransfer().setReplaceExisting(true).setCancellationToken(token).copy(this.source, target);
+      fail();
+    }
+    catch (CancellationException e) {
+      assertArrayEquals(original, Files.readAllBytes(target));
+    }
+
+    // Cancelled once part of the data has been written.
+    CancellationToken token2 = new CancellationToken();
+    FileTransfer transfer = new FileTransfer().setReplaceExisting(true).setCancellationToken(token2).setProgressInterval(0)
+        .setProgressListener((done, total) -> token2.cancel());
+    try {
+      transfer.copy(new ByteArrayInputStream(this.data), target, this.data.length);
+      fail();
+    }
+    catch (CancellationException e) {
+      assertArrayEquals(original, Files.readAllBytes(target));
+    }
+
+    try (Stream<Path> files = Files.list(this.dir)) {
+      assertEquals(2, files.count()); // No temporary file left
+    }
+  }
+
+  @Test
+  public void testReplace() throws IOException {
+    Path target = this.dir.resolve("target");
+    Files.write(target, new byte[]{1, 2, 3});
+    new FileTransfer().setReplaceExisting(true).copy(this.source, target);
+    assertArrayEquals(this.data, Files.readAllBytes(target));
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileTypeDetectorTest {
+  private FileTypeDetector detector;
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    this.detector = FileTypeDetector.withDefaults();
+    this.dir = Files.createTempDirectory("types");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.list(this.dir)) {
+      files.forEach(p -> p.toFile().delete());
+    }
+    Files.delete(this.dir);
+  }
+
+  @Test
+  public void testDetectByContent() throws IOException {
+    Path file = write("image.txt", 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0);
+    assertEquals(Optional.of(FileType.PNG), this.detector.detect(file));
+  }
+
+  @Test
+  public void testWildcards() throws IOException {
+    assertEquals(Optional.of(FileType.WEBP), this.detector.detect(write("a", 'R', 'I', 'F', 'F', 1, 2, 3, 4, 'W', 'E', 'B', 'P')));
+    assertEquals(Optional.of(FileType.GIF), this.detector.detect(write("b", 'G', 'I', 'F', '8', '9', 'a')));
+  }
+
+  @Test
+  public void testLongestMatchWins() throws IOException {
+    this.detector.addMagic(new FileType("RIFF", "application/octet-stream"), "52 49 46 46");
+    assertEquals(Optional.of(FileType.WEBP), this.detector.detect(write("a", 'R', 'I', 'F', 'F', 1, 2, 3, 4, 'W', 'E', 'B', 'P')));
+    assertEquals("RIFF", this.detector.detect(write("b", 'R', 'I', 'F', 'F', 1, 2, 3, 4, 'W', 'A', 'V', 'E')).get().getName());
+  }
+
+  @Test
+  public void testLongestMatchAcrossWildcards() throws IOException {
+    this.detector.addMagic(new FileType("SHORT", "application/octet-stream"), "00 01");
+    this.detector.addMagic(new FileType("LONG", "application/octet-stream"), "?? 01 02 03");
+    assertEquals("LONG", this.detector.detect(write("a", 0, 1, 2, 3)).get().getName());
+    assertEquals("SHORT", this.detector.detect(write("b", 0, 1, 2, 4)).get().getName());
+  }
+
+  @Test
+  public void testExtensionFallback() throws IOException {
+    assertEquals(Optional.of(FileType.TEXT), this.detector.detect(write("notes.TXT", 'h', 'i')));
+    assertEquals(Optional.empty(), this.detector.detect(write("notes", 'h', 'i')));
+    assertEquals(Optional.of(FileType.JPEG), this.detector.detectByExtension(this.dir.resolve("missing.jpeg")));
+  }
+
+  @Test
+  public void testCacheInvalidated() throws IOException {
+    Path file = write("a", 'B', 'M');
+    assertEquals(Optional.of(FileType.BMP), this.detector.detect(file));
+    Files.write(file, new byte[]{0x1F, (byte) 0x8B, 8});
+    Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10000));
+    assertEquals(Optional.of(FileType.GZIP), this.detector.detect(file));
+  }
+
+  @Test
+  public void testDetectAll() throws IOException {
+    Path pdf = write("a", '%', 'P', 'D', 'F', '-', '1');
+    Path zip = write("b", 'P', 'K', 3, 4);
+    Path unknown = write("c", 0);
+    Map<Path, FileType> types = this.detector.detectAll(Arrays.asList(pdf, zip, unknown, this.dir.resolve("missing")));
+    assertEquals(2, types.size());
+    assertEquals(FileType.PDF, types.get(pdf));
+    assertEquals(FileType.ZIP, types.get(zip));
+  }
+
+  private Path write(String name, int... bytes) throws IOException {
+    byte[] data = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++)
+      data[i] = (byte) bytes[i];
+    return Files.write(this.dir.resolve(name), data);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import net.darmo_creations.utils.FilesUtil;
+
+/**
+ * This class compares {@link FileWalker} with {@link Files#walk(Path, java.nio.file.FileVisitOption...)}
+ * when looking for files with given extensions. The tree to scan can be passed as the first argument;
+ * otherwise a temporary one is generated.
+ *
+ * @author Damien Vergnet
+ */
+public class FileWalkerBenchmark {
+  private static final int DIRECTORIES = 200;
+  private static final int FILES_PER_DIRECTORY = 250;
+  private static final String[] EXTENSIONS = {"png", "txt", "jpg", "lang", "json"};
+  private static final int RUNS = 5;
+
+  public static void main(String[] args) throws IOException {
+    Path root = args.length > 0 ? Paths.get(args[0]) : createTree();
+    ExtensionMatcher matcher = ExtensionMatcher.of("png", "jpg");
+
+    for (int i = 0; i < RUNS; i++) {
+      long start = System.nanoTime();
+      long count;
+      try (Stream<Path> paths = Files.walk(root)) {
+        count = paths.filter(p -> Files.isRegularFile(p) && (FilesUtil.hasExtension(p, "png") || FilesUtil.hasExtension(p, "jpg")))
+            .count();
+      }
+      print("Files.walk", count, start);
+
+      start = System.nanoTime();
+      LongAdder matches = new LongAdder();
+      new FileWalker(root).setFilter(matcher).walk(p -> matches.increment());
+      print("FileWalker", matches.sum(), start);
+
+      start = System.nanoTime();
+      try (Stream<Path> paths = FilesUtil.find(root, matcher)) {
+        count = paths.count();
+      }
+      print("stream", count, start);
+    }
+  }
+
+  private static void print(String name, long count, long start) {
+    System.out.printf("%-12s %,d files in %,d ms%n", name, count, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  private static Path createTree() throws IOException {
+    Path root = Files.createTempDirectory("walker");
+    for (int i = 0; i < DIRECTORIES; i++) {
+      Path dir = root.resolve("d" + i % 10).resolve("d" + i);
+      Files.createDirectories(dir);
+      for (int j = 0; j < FILES_PER_DIRECTORY; j++)
+        Files.createFile(dir.resolve("f" + j + "." + EXTENSIONS[j % EXTENSIONS.length]));
+    }
+    System.out.println("Generated tree in " + root);
+    return root;
+  }
+}
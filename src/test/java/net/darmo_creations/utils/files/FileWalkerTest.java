@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileWalkerTest {
+  private Path root;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("walker");
+    for (String name : Arrays.asList("a.png", "b.txt", "d1/c.png", "d1/d2/e.PNG", "d1/d2/f.jpg", "d3.png/g.txt")) {
+      Path file = this.root.resolve(name);
+      Files.createDirectories(file.getParent());
+      Files.createFile(file);
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(this.root)) {
+      paths.sorted((p1, p2) -> p2.compareTo(p1)).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testWalk() throws IOException {
+    Set<String> names = ConcurrentHashMap.newKeySet();
+    new FileWalker(this.root).setFilter(ExtensionMatcher.of("png")).walk(p -> names.add(name(p)));
+    assertEquals(set("a.png", "d1/c.png", "d1/d2/e.PNG"), names);
+  }
+
+  @Test
+  public void testMaxDepth() throws IOException {
+    Set<String> names = ConcurrentHashMap.newKeySet();
+    new FileWalker(this.root).setMaxDepth(2).walk(p -> names.add(name(p)));
+    assertEquals(set("a.png", "b.txt", "d1/c.png", "d3.png/g.txt"), names);
+  }
+
+  @Test
+  public void testStream() {
+    try (Stream<Path> paths = new FileWalker(this.root).setFilter(ExtensionMatcher.of("jpg", "txt")).stream()) {
+      assertEquals(set("b.txt", "d1/d2/f.jpg", "d3.png/g.txt"), paths.map(this::name).collect(Collectors.toSet()));
+    }
+  }
+
+  @Test
+  public void testCancel() throws IOException {
+    CancellationToken token = new CancellationToken();
+    AtomicInteger count = new AtomicInteger();
+    new FileWalker(this.root).setPool(new ForkJoinPool(1)).walk(p -> {
+      count.incrementAndGet();
+      token.cancel();
+    }, token);
+    assertEquals(1, count.get());
+  }
+
+  @Test(expected = NoSuchFileException.class)
+  public void testMissingRoot() throws IOException {
+    new FileWalker(this.root.resolve("missing")).walk(p -> {});
+  }
+
+  private String name(Path path) {
+    return this.root.relativize(path).toString().replace('\\', '/');
+  }
+
+  private static Set<String> set(String... names) {
+    return Arrays.stream(names).collect(Collectors.toSet());
+  }
+}
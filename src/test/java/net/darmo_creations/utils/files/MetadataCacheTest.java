@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.files;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetadataCacheTest {
+  private Path dir;
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    this.dir = Files.createTempDirectory("metadata");
+    this.file = Files.write(this.dir.resolve("file"), new byte[10]);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+    Files.delete(this.dir);
+  }
+
+  @Test
+  public void testHits() throws IOException {
+    MetadataCache cache = new MetadataCache(10, 60000);
+    assertEquals(10, cache.size(this.file));
+    assertTrue(cache.isRegularFile(this.file));
+    assertTrue(cache.isDirectory(this.dir));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testStaleUntilInvalidated() throws IOException {
+    MetadataCache cache = new MetadataCache(10, 60000);
+    assertEquals(10, cache.size(this.file));
+    Files.write(this.file, new byte[20]);
+    assertEquals(10, cache.size(this.file));
+    cache.invalidate(this.file);
+    assertEquals(20, cache.size(this.file));
+  }
+
+  @Test
+  public void testPathsNormalized() throws IOException {
+    MetadataCache cache = new MetadataCache(10, 60000);
+    Path other = this.dir.resolve("sub").resolve("..").resolve(this.file.getFileName());
+    assertEquals(10, cache.size(other));
+    assertEquals(10, cache.size(this.file));
+    assertEquals(1, cache.getHitCount());
+
+    Files.write(this.file, new byte[20]);
+    cache.invalidate(other);
+    assertEquals(20, cache.size(this.file));
+  }
+
+  @Test
+  public void testExpiry() throws IOException {
+    MetadataCache cache = new MetadataCache(10, 0);
+    cache.size(this.file);
+    cache.size(this.file);
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void testMissingFilesCached() {
+    MetadataCache cache = new MetadataCache(10, 60000);
+    Path missing = this.dir.resolve("missing");
+    assertFalse(cache.exists(missing));
+    assertFalse(cache.exists(missing));
+    assertEquals(1, cache.getHitCount());
+    try {
+      cache.getAttributes(missing);
+      fail();
+    }
+    catch (IOException e) {
+      assertTrue(e instanceof NoSuchFileException);
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    MetadataCache cache = new MetadataCache(1, 60000);
+    cache.size(this.file);
+    cache.isDirectory(this.dir);
+    cache.size(this.file);
+    assertEquals(2, cache.getEvictionCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void testDirectoryChangedEvent() throws IOException {
+    MetadataCache cache = new MetadataCache(10, 60000);
+    cache.size(this.file);
+    Files.delete(this.file);
+    assertTrue(cache.exists(this.file));
+    cache.onDirectoryChanged(new DirectoryChangedEvent(this.dir, Collections.emptySet(), Collections.emptySet(),
+        Collections.singleton(this.file)));
+    assertFalse(cache.exists(this.file));
+  }
+}
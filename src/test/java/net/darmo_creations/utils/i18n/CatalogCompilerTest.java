@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogCompilerTest {
+  private Catalog source;
+
+  @Before
+  public void setUp() {
+    Map<String, String> strings = new HashMap<>();
+    strings.put("button.ok.text", "OK");
+    strings.put("word.été", "summer ☀");
+    strings.put("emoji.😀", "smile");
+    // "Aa" and "BB" have the same hash code.
+    strings.put("Aa", "first");
+    strings.put("BB", "second");
+    strings.put("empty", "");
+    this.source = Catalog.of(Locale.FRANCE, strings);
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Catalog compiled = Catalog.wrap(Locale.FRANCE, CatalogCompiler.compile(this.source));
+
+    assertEquals(this.source.size(), compiled.size());
+    assertEquals(this.source.keys(), compiled.keys());
+    for (String key : this.source.keys())
+      assertEquals(this.source.get(key), compiled.get(key));
+  }
+
+  @Test
+  public void testMissingKeys() throws IOException {
+    Catalog compiled = Catalog.wrap(Locale.FRANCE, CatalogCompiler.compile(this.source));
+
+    assertNull(compiled.get("button.cancel.text"));
+    assertNull(compiled.get("Ab"));
+    assertNull(compiled.get("button.ok"));
+    assertNull(compiled.get("button.ok.text.mnemonic"));
+  }
+
+  @Test
+  public void testMappedFile() throws IOException {
+    Path file = Files.createTempFile("catalog", CatalogCompiler.EXTENSION);
+    // Mapped files cannot be deleted on Windows until they are unmapped.
+    file.toFile().deleteOnExit();
+    CatalogCompiler.compile(this.source, file);
+    assertEquals("summer ☀", Catalog.map(Locale.FRANCE, file).get("word.été"));
+  }
+
+  @Test
+  public void testLoaderIgnoresStaleBinaryCatalog() throws IOException {
+    Path directory = Files.createTempDirectory("catalogs");
+    // Deleted on exit in reverse order, mapped files cannot be deleted on Windows until they are unmapped.
+    directory.toFile().deleteOnExit();
+    Path compiled = directory.resolve("fr_FR" + CatalogCompiler.EXTENSION);
+    compiled.toFile().deleteOnExit();
+    CatalogCompiler.compile(this.source, compiled);
+    Path lang = Files.write(directory.resolve(CatalogLoader.getFileName(Locale.FRANCE)), Collections.singletonList("button.ok.text=Valider"));
+    lang.toFile().deleteOnExit();
+    CatalogLoader loader = CatalogLoader.fromDirectory(directory);
+
+    Files.setLastModifiedTime(lang, FileTime.fromMillis(Files.getLastModifiedTime(compiled).toMillis() - 10000));
+    assertEquals("OK", loader.load(Locale.FRANCE).get("button.ok.text"));
+    Files.setLastModifiedTime(lang, FileTime.fromMillis(Files.getLastModifiedTime(compiled).toMillis() + 10000));
+    assertEquals("Valider", loader.load(Locale.FRANCE).get("button.ok.text"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidData() throws IOException {
+    Catalog.wrap(Locale.FRANCE, ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}));
+  }
+}
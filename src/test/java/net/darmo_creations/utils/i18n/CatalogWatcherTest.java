@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.darmo_creations.utils.I18n;
+import net.darmo_creations.utils.events.EventsBus;
+import net.darmo_creations.utils.events.SubscribeEvent;
+
+public class CatalogWatcherTest {
+  // Locales used by no other test as I18n's cache is global.
+  private static final Locale WATCHED = new Locale("xa");
+  private static final Locale MARKER = new Locale("xb");
+  private static final Locale NOT_CACHED = new Locale("xc");
+
+  private Path directory;
+  private Collector collector;
+  private CatalogWatcher watcher;
+
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("catalogs");
+    write(WATCHED, "a=1", "b=2", "c=3");
+    write(MARKER, "m=1");
+    I18n.updateCatalog(Catalog.of(WATCHED, map("a", "1", "b", "2", "c", "3")));
+    I18n.updateCatalog(Catalog.of(MARKER, map("m", "1")));
+
+    EventsBus bus = new EventsBus();
+    this.collector = new Collector();
+    bus.register(this.collector);
+    this.watcher = I18n.watch(this.directory, bus).setDelay(20).start();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    this.watcher.close();
+    try (Stream<Path> files = Files.list(this.directory)) {
+      for (Path file : (Iterable<Path>) files::iterator)
+        Files.delete(file);
+    }
+    Files.delete(this.directory);
+  }
+
+  @Test
+  public void testModifiedFileReplacesCatalog() throws IOException, InterruptedException {
+    Catalog old = I18n.getCachedCatalog(WATCHED).get();
+    write(WATCHED, "a=1", "b=two", "d=4");
+
+    CatalogChangedEvent event = this.collector.next();
+    assertEquals(WATCHED, event.getLocale());
+    assertSame(old, event.getOldCatalog());
+    assertSame(event.getNewCatalog(), I18n.getCachedCatalog(WATCHED).get());
+    assertEquals("two", I18n.getCachedCatalog(WATCHED).get().get("b"));
+    assertEquals(Collections.singleton("d"), event.getAddedKeys());
+    assertEquals(Collections.singleton("c"), event.getRemovedKeys());
+    assertEquals(Collections.singleton("b"), event.getModifiedKeys());
+    assertTrue(event.hasChanged("b"));
+    assertFalse(event.hasChanged("a"));
+  }
+
+  @Test
+  public void testNotCachedLocaleIgnored() throws IOException, InterruptedException {
+    write(NOT_CACHED, "x=1");
+    // Lets the first file be reloaded before the marker's one.
+    Thread.sleep(200);
+    write(MARKER, "m=2");
+
+    assertEquals(MARKER, this.collector.next().getLocale());
+    assertFalse(I18n.getCachedCatalog(NOT_CACHED).isPresent());
+    assertTrue(this.collector.events.isEmpty());
+  }
+
+  @Test
+  public void testMalformedFileKeepsCatalog() throws IOException, InterruptedException {
+    Catalog old = I18n.getCachedCatalog(WATCHED).get();
+    write(WATCHED, "a=\\u12");
+    Thread.sleep(200);
+    write(MARKER, "m=3");
+
+    assertEquals(MARKER, this.collector.next().getLocale());
+    assertSame(old, I18n.getCachedCatalog(WATCHED).get());
+    assertTrue(this.collector.events.isEmpty());
+  }
+
+  private void write(Locale locale, String... lines) throws IOException {
+    Files.write(this.directory.resolve(locale + ".lang"), Arrays.asList(lines), StandardCharsets.UTF_8);
+  }
+
+  private static Map<String, String> map(String... keysAndValues) {
+    Map<String, String> map = new HashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2)
+      map.put(keysAndValues[i], keysAndValues[i + 1]);
+    return map;
+  }
+
+  public static class Collector {
+    final BlockingQueue<CatalogChangedEvent> events = new LinkedBlockingQueue<>();
+
+    @SubscribeEvent
+    public void onCatalogChanged(CatalogChangedEvent e) {
+      this.events.add(e);
+    }
+
+    CatalogChangedEvent next() throws InterruptedException {
+      CatalogChangedEvent event = this.events.poll(10, TimeUnit.SECONDS);
+      assertNotNull("no event received", event);
+      return event;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class DateFormatTemplateTest {
+  @Test
+  public void testFormatInts() {
+    assertEquals("05/03/2017", DateFormatTemplate.compile("D/M/Y").format(2017, 3, 5));
+    assertEquals("5/3/17", DateFormatTemplate.compile("d/m/y").format(2017, 3, 5));
+    assertEquals("0987-12-31", DateFormatTemplate.compile("Y-M-D").format(987, 12, 31));
+  }
+
+  @Test
+  public void testFormatStrings() {
+    assertEquals("05/03/2017", DateFormatTemplate.compile("D/M/Y").format("2017", "3", "5"));
+    assertEquals("5/3/17", DateFormatTemplate.compile("d/m/y").format("2017", "3", "5"));
+    assertEquals("05", DateFormatTemplate.compile("y").format("5", "1", "1"));
+  }
+
+  @Test
+  public void testValuesAreNotReinterpreted() {
+    assertEquals("2017 d", DateFormatTemplate.compile("Y m").format("2017", "d", "1"));
+  }
+
+  @Test
+  public void testLiterals() {
+    assertEquals("[5] (3) 2017", DateFormatTemplate.compile("[d] (m) Y").format(2017, 3, 5));
+  }
+
+  @Test
+  public void testAppendTemporal() throws IOException {
+    StringBuilder sb = new StringBuilder("date: ");
+    DateFormatTemplate.compile("Y.M.D").appendTo((Appendable) sb, LocalDate.of(2017, 8, 6));
+    assertEquals("date: 2017.08.06", sb.toString());
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class MessageTemplateTest {
+  private static final PluralRules EN = PluralRules.forLocale(Locale.ENGLISH);
+  private static final String FILES = "{0,plural,=0{no files} one{# file} other{# files}} in {1}";
+
+  @Test
+  public void testArguments() {
+    assertEquals("Hello Bob, you are 42", MessageTemplate.compile("Hello {0}, you are {1}").format(EN, "Bob", 42));
+  }
+
+  @Test
+  public void testMissingArgument() {
+    assertEquals("a {1}", MessageTemplate.compile("{0} {1}").format(EN, "a"));
+  }
+
+  @Test
+  public void testPlural() {
+    MessageTemplate t = MessageTemplate.compile(FILES);
+    assertEquals("no files in dir", t.format(EN, 0, "dir"));
+    assertEquals("1 file in dir", t.format(EN, 1, "dir"));
+    assertEquals("3 files in dir", t.format(EN, 3L, "dir"));
+    assertEquals("1.5 files in dir", t.format(EN, 1.5, "dir"));
+  }
+
+  @Test
+  public void testPluralFrench() {
+    MessageTemplate t = MessageTemplate.compile("{0,plural,one{# fichier} other{# fichiers}}");
+    PluralRules fr = PluralRules.forLocale(Locale.FRENCH);
+    assertEquals("0 fichier", t.format(fr, 0));
+    assertEquals("2 fichiers", t.format(fr, 2));
+  }
+
+  @Test
+  public void testPluralRussian() {
+    PluralRules ru = PluralRules.forLocale(new Locale("ru"));
+    assertEquals(PluralRules.Category.ONE, ru.select(21));
+    assertEquals(PluralRules.Category.FEW, ru.select(23));
+    assertEquals(PluralRules.Category.MANY, ru.select(11));
+    assertEquals(PluralRules.Category.MANY, ru.select(25));
+    assertEquals(PluralRules.Category.OTHER, ru.select(1.5));
+  }
+
+  @Test
+  public void testPluralRomanian() {
+    PluralRules ro = PluralRules.forLocale(new Locale("ro"));
+    assertEquals(PluralRules.Category.ONE, ro.select(1));
+    assertEquals(PluralRules.Category.FEW, ro.select(0));
+    assertEquals(PluralRules.Category.FEW, ro.select(19));
+    assertEquals(PluralRules.Category.OTHER, ro.select(20));
+    assertEquals(PluralRules.Category.FEW, ro.select(101));
+    assertEquals(PluralRules.Category.FEW, ro.select(119));
+    assertEquals(PluralRules.Category.OTHER, ro.select(120));
+    assertEquals(PluralRules.Category.FEW, ro.select(1.5));
+  }
+
+  @Test
+  public void testApostrophes() {
+    assertEquals("l'erreur {0} '", MessageTemplate.compile("l'erreur '{0}' ''").format(EN, "x"));
+    assertEquals("# files: 2", MessageTemplate.compile("# files: {0,plural,other{#}}").format(EN, 2));
+    assertEquals("#2", MessageTemplate.compile("{0,plural,other{'#'#}}").format(EN, 2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingOther() {
+    MessageTemplate.compile("{0,plural,one{# file}}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnmatchedBrace() {
+    MessageTemplate.compile("a } b");
+  }
+
+  @Test
+  public void testAppendTo() {
+    StringBuilder sb = new StringBuilder("> ");
+    MessageTemplate.compile(FILES).appendTo(sb, EN, 2, "dir");
+    assertEquals("> 2 files in dir", sb.toString());
+  }
+}
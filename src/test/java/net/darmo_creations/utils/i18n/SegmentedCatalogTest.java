@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentedCatalogTest {
+  private Map<String, String> strings;
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    this.strings = new HashMap<>();
+    this.strings.put("button.ok.text", "OK");
+    this.strings.put("button.cancel.text", "Annuler");
+    this.strings.put("word.été", "été");
+    this.strings.put("title", "Titre");
+    this.directory = Files.createTempDirectory("segments");
+    SegmentSource.split(Catalog.of(Locale.FRANCE, this.strings), this.directory);
+  }
+
+  @Test
+  public void testSplit() throws IOException {
+    Set<String> expected = new HashSet<>();
+    expected.add("button.lang");
+    expected.add("word.lang");
+    expected.add("title.lang");
+    try (Stream<Path> files = Files.list(this.directory.resolve("fr_FR"))) {
+      assertEquals(expected, files.map(p -> p.getFileName().toString()).collect(Collectors.toSet()));
+    }
+  }
+
+  @Test
+  public void testLazyLoading() throws IOException {
+    Map<String, Integer> loads = new HashMap<>();
+    SegmentSource files = SegmentSource.fromDirectory(this.directory);
+    SegmentSource counting = new SegmentSource() {
+      @Override
+      public Map<String, String> load(Locale locale, String namespace) throws IOException {
+        loads.merge(namespace, 1, Integer::sum);
+        return files.load(locale, namespace);
+      }
+
+      @Override
+      public Set<String> namespaces(Locale locale) throws IOException {
+        return files.namespaces(locale);
+      }
+    };
+    Catalog catalog = CatalogLoader.segmented(counting).load(Locale.FRANCE);
+
+    assertTrue(loads.isEmpty());
+    assertEquals("OK", catalog.get("button.ok.text"));
+    assertEquals("Annuler", catalog.get("button.cancel.text"));
+    assertEquals(Integer.valueOf(1), loads.get("button"));
+    assertEquals(1, loads.size());
+    assertEquals("été", catalog.get("word.été"));
+    assertEquals("Titre", catalog.get("title"));
+  }
+
+  @Test
+  public void testKeyTableLoadsOnlyUsedSegments() throws IOException {
+    Map<String, Integer> loads = new HashMap<>();
+    SegmentSource files = SegmentSource.fromDirectory(this.directory);
+    SegmentSource counting = new SegmentSource() {
+      @Override
+      public Map<String, String> load(Locale locale, String namespace) throws IOException {
+        loads.merge(namespace, 1, Integer::sum);
+        return files.load(locale, namespace);
+      }
+
+      @Override
+      public Set<String> namespaces(Locale locale) throws IOException {
+        return files.namespaces(locale);
+      }
+    };
+    Catalog catalog = CatalogLoader.segmented(counting).load(Locale.FRANCE);
+    KeyTable table = new KeyTable("title", "button.ok.text", "word.été");
+    KeyTable other = new KeyTable("button.cancel.text");
+
+    assertEquals("OK", catalog.getLocalizedString(table, 1));
+    assertEquals(Collections.singletonMap("button", 1), loads);
+    assertEquals("Annuler", catalog.getLocalizedString(other, 0));
+    assertEquals("OK", catalog.getLocalizedString(table, 1));
+    assertEquals(Collections.singletonMap("button", 1), loads);
+    assertEquals("Titre", catalog.getLocalizedString(table, 0));
+    assertEquals(2, loads.size());
+  }
+
+  @Test
+  public void testMissingNamespace() throws IOException {
+    Catalog catalog = CatalogLoader.segmented(SegmentSource.fromDirectory(this.directory)).load(Locale.FRANCE);
+    assertNull(catalog.get("menu.file"));
+    assertEquals("menu.file", catalog.getLocalizedString("menu.file"));
+  }
+
+  @Test
+  public void testKeys() throws IOException {
+    Catalog catalog = CatalogLoader.segmented(SegmentSource.fromDirectory(this.directory)).load(Locale.FRANCE);
+    assertEquals(this.strings.keySet(), catalog.keys());
+  }
+
+  @Test
+  public void testPreload() throws IOException {
+    Catalog catalog = CatalogLoader.segmented(SegmentSource.fromDirectory(this.directory)).load(Locale.FRANCE);
+    catalog.preload("word").join();
+    assertEquals("été", catalog.get("word.été"));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.i18n;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class TextCaseTest {
+  private static final Locale TURKISH = new Locale("tr");
+
+  @Test
+  public void testToTitleCase() {
+    assertEquals("Hello World  Again", TextCase.toTitleCase("hello world  again", Locale.ROOT));
+    assertEquals("HeLLO", TextCase.toTitleCase("heLLO", Locale.ROOT));
+    assertEquals("Élan Ǆ", TextCase.toTitleCase("élan ǆ", Locale.ROOT).replace('ǅ', 'Ǆ'));
+  }
+
+  @Test
+  public void testToTitleCaseSurrogates() {
+    // U+10428 DESERET SMALL LETTER LONG I, title case U+10400
+    assertEquals("𐐀𐐨", TextCase.toTitleCase("𐐨𐐨", Locale.ROOT));
+  }
+
+  @Test
+  public void testToTitleCaseTurkish() {
+    assertEquals("İstanbul", TextCase.toTitleCase("istanbul", TURKISH));
+  }
+
+  @Test
+  public void testToUpperCase() {
+    assertEquals("STRASSE ÉTÉ", TextCase.toUpperCase("straße été", Locale.GERMAN));
+    assertEquals("İI", TextCase.toUpperCase("iı", TURKISH));
+  }
+
+  @Test
+  public void testToLowerCase() {
+    assertEquals("hello été", TextCase.toLowerCase("HELLO ÉTÉ", Locale.ROOT));
+    assertEquals("ıi", TextCase.toLowerCase("Iİ", TURKISH));
+  }
+
+  @Test
+  public void testAppendTo() {
+    StringBuilder sb = new StringBuilder("> ");
+    assertSame(sb, TextCase.toUpperCase("abc", Locale.ROOT, sb));
+    assertEquals("> ABC", sb.toString());
+  }
+
+  @Test
+  public void testBulk() {
+    String[] inputs = {"a b", "c", "", "d e f"};
+    String[] expected = {"A B", "C", "", "D E F"};
+    assertArrayEquals(expected, TextCase.toTitleCase(inputs, Locale.ROOT));
+    assertArrayEquals(expected, TextCase.toTitleCase(inputs, Locale.ROOT, new ForkJoinPool(2)));
+  }
+}
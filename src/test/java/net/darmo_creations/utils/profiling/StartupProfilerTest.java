@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.profiling;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.darmo_creations.utils.events.EventsBus;
+
+public class StartupProfilerTest {
+  @After
+  public void tearDown() {
+    StartupProfiler.disable();
+  }
+
+  @Test
+  public void testDisabled() {
+    assertFalse(StartupProfiler.isEnabled());
+    StartupProfiler.Span span = StartupProfiler.begin("span");
+    try {
+      StartupProfiler.phase("phase");
+    }
+    finally {
+      span.end();
+    }
+    assertEquals(0, StartupProfiler.getDroppedCount());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDumpDisabled() throws IOException {
+    StartupProfiler.dump(new StringWriter());
+  }
+
+  @Test
+  public void testNestedSpans() throws IOException {
+    StartupProfiler.enable(100);
+    StartupProfiler.phase("init");
+    StartupProfiler.Span outer = StartupProfiler.begin("outer");
+    try {
+      StartupProfiler.Span inner = StartupProfiler.begin("inner \"quoted\"");
+      try {
+        StartupProfiler.mark("mark");
+      }
+      finally {
+        inner.end();
+      }
+    }
+    finally {
+      outer.end();
+    }
+    StartupProfiler.phase("ui");
+    StartupProfiler.endPhase();
+    StartupProfiler.begin("unclosed");
+
+    String json = dump();
+    assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+    assertTrue(json.contains("{\"name\":\"outer\",\"ph\":\"X\""));
+    assertTrue(json.contains("{\"name\":\"inner \\\"quoted\\\"\",\"ph\":\"X\""));
+    assertTrue(json.contains("{\"name\":\"init\",\"ph\":\"X\",\"pid\":1,\"tid\":0"));
+    assertTrue(json.contains("{\"name\":\"ui\",\"ph\":\"X\",\"pid\":1,\"tid\":0"));
+    assertTrue(json.contains("{\"name\":\"mark\",\"ph\":\"i\""));
+    assertTrue(json.contains("{\"name\":\"unclosed\",\"ph\":\"B\""));
+    assertTrue(json.contains("\"classesLoaded\":"));
+  }
+
+  @Test
+  public void testDroppedEvents() {
+    StartupProfiler.enable(2);
+    for (int i = 0; i < 3; i++)
+      StartupProfiler.mark("mark");
+    assertEquals(1, StartupProfiler.getDroppedCount());
+  }
+
+  @Test
+  public void testSubsystemSpans() throws IOException {
+    StartupProfiler.enable(100);
+    new EventsBus().register(new Object());
+    assertTrue(dump().contains("{\"name\":\"EventsBus.register\",\"ph\":\"X\""));
+  }
+
+  private static String dump() throws IOException {
+    StringWriter writer = new StringWriter();
+    StartupProfiler.dump(writer);
+    return writer.toString();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Darmo Utils.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.utils.version;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class compares {@link Version#parse(CharSequence)}, {@link Version#tryParse(CharSequence)} and
+ * the byte array parser with the former regex-based implementation of {@link Version#fromString(String)}.
+ * One version out of ten is invalid to measure the cost of errors.
+ *
+ * @author Damien Vergnet
+ */
+public class VersionBenchmark {
+  private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+)\\.(\\d+)(?:\\.(\\d+))?(d)?");
+  private static final int VERSIONS = 100_000;
+  private static final int RUNS = 10;
+
+  public static void main(String[] args) throws ParseException {
+    String[] versions = new String[VERSIONS];
+    byte[][] bytes = new byte[VERSIONS][];
+    for (int i = 0; i < VERSIONS; i++) {
+      if (i % 10 == 9)
+        versions[i] = i + ".x";
+      else
+        versions[i] = (i % 7) + "." + (i % 13) + (i % 3 == 0 ? "" : "." + i % 5) + (i % 2 == 0 ? "d" : "");
+      bytes[i] = versions[i].getBytes(StandardCharsets.US_ASCII);
+    }
+
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      int count = 0;
+      for (String v : versions) {
+        try {
+          count += regex(v).getMajor();
+        }
+        catch (ParseException e) {
+          count--;
+        }
+      }
+      print("regex", count, start);
+
+      start = System.nanoTime();
+      count = 0;
+      for (String v : versions) {
+        try {
+          count += Version.parse(v).getMajor();
+        }
+        catch (ParseException e) {
+          count--;
+        }
+      }
+      print("parse", count, start);
+
+      start = System.nanoTime();
+      count = 0;
+      for (String v : versions) {
+        Version version = Version.tryParse(v);
+        count += version != null ? version.getMajor() : -1;
+      }
+      print("tryParse", count, start);
+
+      start = System.nanoTime();
+      count = 0;
+      for (byte[] v : bytes) {
+        Version version = Version.tryParse(v, 0, v.length);
+        count += version != null ? version.getMajor() : -1;
+      }
+      print("bytes", count, start);
+    }
+  }
+
+  private static Version regex(String version) throws ParseException {
+    Matcher m = VERSION_PATTERN.matcher(version);
+
+    if (m.matches()) {
+      int major = Integer.parseInt(m.group(1));
+      int minor = Integer.parseInt(m.group(2));
+      int patch = m.group(3) != null ? Integer.parseInt(m.group(3)) : 0;
+      boolean indev = "d".equals(m.group(4));
+
+      return new Version(major, minor, patch, indev);
+    }
+
+    throw new ParseException(version, -1);
+  }
+
+  private static void print(String name, int checksum, long start) {
+    System.out.printf("%-9s %,d versions in %,d us (checksum %d)%n", name, VERSIONS, (System.nanoTime() - start) / 1000, checksum);
+  }
+}
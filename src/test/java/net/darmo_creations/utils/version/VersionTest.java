@@ -2,6 +2,10 @@ package net.darmo_creations.utils.version;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
 import org.junit.Test;
 
 import net.darmo_creations.utils.version.Version;
@@ -131,4 +135,86 @@ public class VersionTest {
     Version v2 = new Version(1, 2, 3, true);
     assertTrue(v1.compareTo(v2) > 0);
   }
+
+  @Test
+  public void testFromString() throws ParseException {
+    assertEquals(new Version(1, 2, 0, false), Version.fromString("1.2"));
+    assertEquals(new Version(1, 2, 3, false), Version.fromString("1.2.3"));
+    assertEquals(new Version(1, 2, 0, true), Version.fromString("1.2d"));
+    assertEquals(new Version(10, 20, 30, true), Version.fromString("10.20.30d"));
+    assertEquals(new Version(1, 2, 3, false), Version.fromString("01.002.3"));
+  }
+
+  @Test
+  public void testFromStringInvalid() {
+    assertErrorOffset("", 0);
+    assertErrorOffset("1", 1);
+    assertErrorOffset("1.", 2);
+    assertErrorOffset("1.2.", 4);
+    assertErrorOffset("1.2.3.4", 5);
+    assertErrorOffset("1.2dd", 4);
+    assertErrorOffset("1.2 ", 3);
+    assertErrorOffset("a.2", 0);
+    assertErrorOffset("1.2.d", 4);
+    assertErrorOffset("1.99999999999", 2);
+  }
+
+  @Test
+  public void testParseBytes() throws ParseException {
+    byte[] bytes = "x1.2.3dx".getBytes(StandardCharsets.US_ASCII);
+    assertEquals(new Version(1, 2, 3, true), Version.parse(bytes, 1, 6));
+    assertNull(Version.tryParse(bytes, 0, 6));
+
+    try {
+      Version.parse(bytes, 1, 7);
+      fail();
+    }
+    catch (ParseException e) {
+      assertEquals("1.2.3dx", e.getMessage());
+      assertEquals(6, e.getErrorOffset());
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testParseBytesOutOfRange() {
+    Version.tryParse(new byte[4], 2, 3);
+  }
+
+  @Test
+  public void testParseByteBuffer() throws ParseException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+    buffer.put("xx4.5".getBytes(StandardCharsets.US_ASCII)).flip().position(2);
+    assertEquals(new Version(4, 5, 0, false), Version.parse(buffer));
+    assertEquals(2, buffer.position());
+    assertEquals(new Version(4, 5, 0, false), Version.tryParse(ByteBuffer.wrap("4.5".getBytes(StandardCharsets.US_ASCII))));
+    assertNull(Version.tryParse(ByteBuffer.allocate(0)));
+  }
+
+  @Test
+  public void testTryParse() {
+    assertEquals(new Version(1, 2, 0, true), Version.tryParse(new StringBuilder("1.2d")));
+    assertNull(Version.tryParse("1.2.3.4"));
+    assertNull(Version.tryParse("version"));
+  }
+
+  @Test
+  public void testInterning() throws ParseException {
+    assertSame(Version.fromString("3.4.5d"), Version.parse("3.4.5d".getBytes(StandardCharsets.US_ASCII), 0, 6));
+    assertSame(Version.of(3, 4, 5, true), Version.tryParse("3.4.5d"));
+    assertNotSame(Version.of(3, 4, 5, true), Version.of(3, 4, 5, false));
+    assertEquals(256, Version.of(256, 0, 0, false).getMajor());
+    assertEquals(0, Version.of(0, 0, 0, false).getMajor());
+  }
+
+  private static void assertErrorOffset(String version, int offset) {
+    try {
+      Version.fromString(version);
+      fail(version);
+    }
+    catch (ParseException e) {
+      assertEquals(version, e.getMessage());
+      assertEquals(version, offset, e.getErrorOffset());
+    }
+    assertNull(version, Version.tryParse(version));
+  }
 }